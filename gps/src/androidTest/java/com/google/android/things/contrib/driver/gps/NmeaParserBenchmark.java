@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.gps;
+
+import android.location.GnssStatus;
+import android.location.Location;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the byte based {@link NmeaParser} with the original {@link StringNmeaParser} on the
+ * recorded sample logs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NmeaParserBenchmark {
+    private static final String TAG = "NmeaParserBenchmark";
+
+    private static final float DEFAULT_ACCURACY = 1.5f;
+    private static final int WARMUP_ITERATIONS = 1000;
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    public void testParsers_SameResults() {
+        List<byte[]> frames = getFrames();
+
+        RecordingCallback expected = new RecordingCallback();
+        StringNmeaParser stringParser = new StringNmeaParser(DEFAULT_ACCURACY);
+        stringParser.setGpsModuleCallback(expected);
+        RecordingCallback actual = new RecordingCallback();
+        NmeaParser byteParser = new NmeaParser(DEFAULT_ACCURACY);
+        byteParser.setGpsModuleCallback(actual);
+        for (byte[] frame : frames) {
+            parse(stringParser, frame);
+            parse(byteParser, frame);
+        }
+
+        assertEquals(expected.mMessages, actual.mMessages);
+        assertEquals(expected.mTimestamps, actual.mTimestamps);
+
+        // NmeaParser merges the sentences of an epoch, every value of a merged fix
+        // must come from a sentence with the same time
+        assertTrue(actual.mLocations.size() <= expected.mLocations.size());
+        int matched = 0;
+        for (Location a : actual.mLocations) {
+            boolean hasAltitude = false;
+            boolean hasSpeed = false;
+            boolean hasBearing = false;
+            for (Location e : expected.mLocations) {
+                if (e.getTime() != a.getTime()) {
+                    continue;
+                }
+                matched++;
+                assertEquals(e.getLatitude(), a.getLatitude(), 1e-3);
+                assertEquals(e.getLongitude(), a.getLongitude(), 1e-3);
+                if (e.hasAltitude()) {
+                    assertEquals(e.getAltitude(), a.getAltitude(), 1e-9);
+                    hasAltitude = true;
+                }
+                if (e.hasSpeed()) {
+                    assertEquals(e.getSpeed(), a.getSpeed(), 1e-6);
+                    hasSpeed = true;
+                }
+                if (e.hasBearing()) {
+                    assertEquals(e.getBearing(), a.getBearing(), 1e-6);
+                    hasBearing = true;
+                }
+            }
+            assertEquals(hasAltitude, a.hasAltitude());
+            assertEquals(hasSpeed, a.hasSpeed());
+            assertEquals(hasBearing, a.hasBearing());
+        }
+        assertTrue(matched > 0);
+
+        assertEquals(expected.mStatuses.size(), actual.mStatuses.size());
+        for (int i = 0; i < expected.mStatuses.size(); i++) {
+            GnssStatus e = expected.mStatuses.get(i);
+            GnssStatus a = actual.mStatuses.get(i);
+            assertEquals(e.getSatelliteCount(), a.getSatelliteCount());
+            for (int j = 0; j < e.getSatelliteCount(); j++) {
+                assertEquals(e.getSvid(j), a.getSvid(j));
+                assertEquals(e.getElevationDegrees(j), a.getElevationDegrees(j), 1e-6);
+                assertEquals(e.getAzimuthDegrees(j), a.getAzimuthDegrees(j), 1e-6);
+                assertEquals(e.getCn0DbHz(j), a.getCn0DbHz(j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testParsers_Throughput() {
+        // Without a callback, only the parsing itself is measured
+        List<byte[]> frames = getFrames();
+        StringNmeaParser stringParser = new StringNmeaParser(DEFAULT_ACCURACY);
+        NmeaParser byteParser = new NmeaParser(DEFAULT_ACCURACY);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (byte[] frame : frames) {
+                parse(stringParser, frame);
+                parse(byteParser, frame);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (byte[] frame : frames) {
+                parse(stringParser, frame);
+            }
+        }
+        long stringNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (byte[] frame : frames) {
+                parse(byteParser, frame);
+            }
+        }
+        long byteNanos = System.nanoTime() - start;
+
+        long sentences = (long) ITERATIONS * frames.size();
+        Log.i(TAG, "String parser: " + (sentences * 1000000000L / stringNanos) + " sentences/s");
+        Log.i(TAG, "Byte parser: " + (sentences * 1000000000L / byteNanos) + " sentences/s");
+    }
+
+    private static void parse(StringNmeaParser parser, byte[] frame) {
+        try {
+            parser.processMessageFrame(frame);
+        } catch (ParseException e) {
+            // Same as NmeaGpsModule, skip the sentence
+        }
+    }
+
+    private static void parse(NmeaParser parser, byte[] frame) {
+        try {
+            parser.processMessageFrame(frame);
+        } catch (ParseException e) {
+            // Same as NmeaGpsModule, skip the sentence
+        }
+    }
+
+    /**
+     * Split the recorded logs into the message frames NmeaGpsModule passes to the parser,
+     * without the frame start and end characters.
+     */
+    private static List<byte[]> getFrames() {
+        List<byte[]> frames = new ArrayList<>();
+        byte[][] logs = {
+                NmeaSampleData.SAMPLE_BLOCKED_NO_FIX,
+                NmeaSampleData.SAMPLE_SAT_VIEW_NO_FIX,
+                NmeaSampleData.SAMPLE_VALID_FIX
+        };
+        for (byte[] log : logs) {
+            int start = -1;
+            for (int i = 0; i < log.length; i++) {
+                if (log[i] == '$') {
+                    start = i + 1;
+                } else if (log[i] == '\r' && start >= 0) {
+                    frames.add(Arrays.copyOfRange(log, start, i));
+                    start = -1;
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Callback keeping every reported value.
+     */
+    private static class RecordingCallback extends GpsModuleCallback {
+        final List<String> mMessages = new ArrayList<>();
+        final List<Long> mTimestamps = new ArrayList<>();
+        final List<Location> mLocations = new ArrayList<>();
+        final List<GnssStatus> mStatuses = new ArrayList<>();
+
+        @Override
+        public void onGpsSatelliteStatus(GnssStatus status) {
+            mStatuses.add(status);
+        }
+
+        @Override
+        public void onGpsTimeUpdate(long timestamp) {
+            mTimestamps.add(timestamp);
+        }
+
+        @Override
+        public void onGpsLocationUpdate(Location location) {
+            mLocations.add(location);
+        }
+
+        @Override
+        public void onNmeaMessage(String nmeaMessage) {
+            mMessages.add(nmeaMessage);
+        }
+    }
+}
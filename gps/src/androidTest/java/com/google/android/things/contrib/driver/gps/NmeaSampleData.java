@@ -44,11 +44,63 @@ public class NmeaSampleData {
             "$GPGLL,3907.360,N,12102.481,W,183730,A*33\r\n";
     public static byte[] SAMPLE_VALID_FIX = VALID_FIX.getBytes();
 
+    private static final String FRACTIONAL_TIME =
+            "$GPRMC,183729.250,A,3907.356,N,12102.482,W,000.0,360.0,080301,015.5,E*76\r\n" +
+            "$GPGGA,183729.250,3907.356,N,12102.482,W,1,05,1.6,646.4,M,-24.1,M,,*64\r\n";
+    public static byte[] SAMPLE_FRACTIONAL_TIME = FRACTIONAL_TIME.getBytes();
+
+    private static final String MIDNIGHT =
+            "$GPRMC,235959.500,A,3907.356,N,12102.482,W,000.0,360.0,311218,015.5,E*71\r\n" +
+            "$GPGGA,235959.500,3907.356,N,12102.482,W,1,05,1.6,646.4,M,-24.1,M,,*61\r\n" +
+            "$GPGGA,000000.500,3907.356,N,12102.482,W,1,05,1.6,646.4,M,-24.1,M,,*60\r\n" +
+            "$GPRMC,000000.500,A,3907.356,N,12102.482,W,000.0,360.0,010119,015.5,E*70\r\n";
+    public static byte[] SAMPLE_MIDNIGHT = MIDNIGHT.getBytes();
+
+    // The GGA of the first epoch never comes
+    private static final String FIX_LOST =
+            "$GPRMC,183729.250,A,3907.356,N,12102.482,W,000.0,360.0,080301,015.5,E*76\r\n" +
+            "$GPRMC,,V,,,,,,,,,,N*53\r\n" +
+            "$GPGGA,,,,,,0,,,,,,,,*66\r\n";
+    public static byte[] SAMPLE_FIX_LOST = FIX_LOST.getBytes();
+
+    private static final String NO_TIME =
+            "$GPGLL,3907.360,N,12102.481,W,,A*3D\r\n" +
+            "$GPGLL,3907.360,N,12102.481,W,,A*3D\r\n";
+    public static byte[] SAMPLE_NO_TIME = NO_TIME.getBytes();
+
+    private static final String MULTI_CONSTELLATION =
+            "$GNRMC,183729.00,A,3907.35600,N,12102.48200,W,1.000,90.0,080301,,,A*65\r\n" +
+            "$GNVTG,90.0,T,,M,1.000,N,1.852,K,A*25\r\n" +
+            "$GNGGA,183729.00,3907.35600,N,12102.48200,W,1,05,1.0,646.4,M,-24.1,M,,*4B\r\n" +
+            "$GNGSA,A,3,02,07,09,,,,,,,,,,1.6,1.0,1.2,1*38\r\n" +
+            "$GNGSA,A,3,70,71,,,,,,,,,,,1.6,1.0,1.2,2*36\r\n" +
+            "$GPGSV,1,1,04,02,51,062,43,07,79,048,42,09,23,313,42,33,30,200,38,1*63\r\n" +
+            "$GLGSV,1,1,03,70,40,100,40,71,20,200,35,72,10,300,,1*4A\r\n" +
+            "$GNGLL,3907.35600,N,12102.48200,W,183729.00,A,A*60\r\n";
+    public static byte[] SAMPLE_MULTI_CONSTELLATION = MULTI_CONSTELLATION.getBytes();
+
+    // NMEA 4.0 output, GSA sentences without a system ID
+    private static final String MULTI_CONSTELLATION_NO_SYSTEM_ID =
+            "$GNGSA,A,3,02,07,09,,,,,,,,,,1.6,1.0,1.2*25\r\n" +
+            "$GNGSA,A,3,70,71,,,,,,,,,,,1.6,1.0,1.2*28\r\n" +
+            "$GPGSV,1,1,04,02,51,062,43,07,79,048,42,09,23,313,42,33,30,200,38*7E\r\n" +
+            "$GLGSV,1,1,03,70,40,100,40,71,20,200,35,72,10,300,*57\r\n";
+    public static byte[] SAMPLE_MULTI_CONSTELLATION_NO_SYSTEM_ID =
+            MULTI_CONSTELLATION_NO_SYSTEM_ID.getBytes();
+
     /*
      * Expected parsed values for the above sample sentences
      */
     public static int EXPECTED_SAT_COUNT = 7;
     public static long EXPECTED_TIMESTAMP = 984076649000L;
+    public static long EXPECTED_FRACTIONAL_TIMESTAMP = 984076649250L;
+    public static long EXPECTED_MIDNIGHT_TIMESTAMP = 1546300799500L;
+    public static long EXPECTED_NEXT_DAY_TIMESTAMP = 1546300800500L;
+    // GPS 2, 7, 9, SBAS 120, GLONASS 6, 7, 8
+    public static int EXPECTED_MULTI_SAT_COUNT = 7;
+    public static float EXPECTED_SPEED = 0.514444f;
+    public static float EXPECTED_BEARING = 90.0f;
+    public static double EXPECTED_ALTITUDE = 670.5;
     public static double EXPECTED_LATITUDE = 39.1226;
     public static double EXPECTED_LONGITUDE = -121.0413;
 }
@@ -29,8 +29,11 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
@@ -113,7 +116,8 @@ public class NmeaTest {
         assertEquals(NmeaSampleData.EXPECTED_SAT_COUNT, status.getSatelliteCount());
 
         ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
-        Mockito.verify(mockCallback, times(3)).onGpsLocationUpdate(locationArgs.capture());
+        // RMC reports an earlier time, the GLL fix waits for the rest of its epoch
+        Mockito.verify(mockCallback, times(2)).onGpsLocationUpdate(locationArgs.capture());
 
         // Verify lat/lng for each report
         for (Location item : locationArgs.getAllValues()) {
@@ -122,4 +126,221 @@ public class NmeaTest {
         }
     }
 
+    @Test
+    public void testGps_SplitMessages() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data, split across several UART reads
+        byte[] buffer = NmeaSampleData.SAMPLE_VALID_FIX;
+        int[] splits = {0, 1, 40, 45, 200, buffer.length};
+        for (int i = 0; i < splits.length - 1; i++) {
+            byte[] chunk = Arrays.copyOfRange(buffer, splits[i], splits[i + 1]);
+            gpsDevice.write(chunk, chunk.length);
+        }
+
+        // Verify callback results
+        Mockito.verify(mockCallback, times(6)).onNmeaMessage(anyString());
+        Mockito.verify(mockCallback, times(2)).onGpsLocationUpdate(any(Location.class));
+        assertEquals(0, gpsModule.getFrameErrorCount());
+    }
+
+    @Test
+    public void testGps_InvalidFrames() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject long garbage lines, with and without a frame start, and a truncated sentence
+        byte[] garbage = new byte[3000];
+        Arrays.fill(garbage, (byte) 'x');
+        gpsDevice.write(garbage, garbage.length);
+        garbage[0] = '$';
+        gpsDevice.write(garbage, garbage.length);
+        byte[] truncated = "$GPGGA,183730,3907.356,N".getBytes();
+        gpsDevice.write(truncated, truncated.length);
+
+        // Inject a sentence padded with NUL characters, whole and split across reads
+        byte[] padded = ("$GPGLL,3907.360,N,\0\0" + "12102.481,W,183730,A*33\0\r\n").getBytes();
+        gpsDevice.write(padded, padded.length);
+        gpsDevice.write(padded, 20);
+        gpsDevice.write(Arrays.copyOfRange(padded, 20, padded.length), padded.length - 20);
+
+        // Verify the following sentences are still parsed
+        byte[] buffer = NmeaSampleData.SAMPLE_VALID_FIX;
+        gpsDevice.write(buffer, buffer.length);
+
+        Mockito.verify(mockCallback, times(8)).onNmeaMessage(anyString());
+        Mockito.verify(mockCallback, times(3))
+                .onNmeaMessage("GPGLL,3907.360,N,12102.481,W,183730,A");
+        assertEquals(2, gpsModule.getFrameErrorCount());
+    }
+
+    @Test
+    public void testGps_FractionalTime() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_FRACTIONAL_TIME;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify the milliseconds are kept
+        Mockito.verify(mockCallback, times(1)).onGpsTimeUpdate(NmeaSampleData.EXPECTED_FRACTIONAL_TIMESTAMP);
+
+        // RMC and GGA of the same epoch are reported as a single fix
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(locationArgs.capture());
+        Location fix = locationArgs.getValue();
+        assertEquals(NmeaSampleData.EXPECTED_FRACTIONAL_TIMESTAMP, fix.getTime());
+        assertTrue(fix.hasAltitude());
+        assertTrue(fix.hasSpeed());
+        assertTrue(fix.hasBearing());
+    }
+
+    @Test
+    public void testGps_FixLost() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_FIX_LOST;
+        gpsDevice.write(buffer, buffer.length);
+
+        // The partial epoch is reported once the fix is lost
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(locationArgs.capture());
+        Location fix = locationArgs.getValue();
+        assertEquals(NmeaSampleData.EXPECTED_FRACTIONAL_TIMESTAMP, fix.getTime());
+        assertFalse(fix.hasAltitude());
+        assertTrue(fix.hasSpeed());
+    }
+
+    @Test
+    public void testGps_NoTime() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_NO_TIME;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Sentences without a time are not merged
+        Mockito.verify(mockCallback, times(2)).onGpsLocationUpdate(any(Location.class));
+    }
+
+    @Test
+    public void testGps_Midnight() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_MIDNIGHT;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify the GGA sentence without a date moves to the next day
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(2)).onGpsLocationUpdate(locationArgs.capture());
+        assertEquals(NmeaSampleData.EXPECTED_MIDNIGHT_TIMESTAMP,
+                locationArgs.getAllValues().get(0).getTime());
+        assertEquals(NmeaSampleData.EXPECTED_NEXT_DAY_TIMESTAMP,
+                locationArgs.getAllValues().get(1).getTime());
+    }
+
+    @Test
+    public void testGps_MultiConstellation() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_MULTI_CONSTELLATION;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify callback results
+        Mockito.verify(mockCallback, times(8)).onNmeaMessage(anyString());
+        Mockito.verify(mockCallback, times(1)).onGpsTimeUpdate(NmeaSampleData.EXPECTED_TIMESTAMP);
+
+        // The whole epoch is reported as a single fix
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(locationArgs.capture());
+        Location fix = locationArgs.getValue();
+        assertEquals(NmeaSampleData.EXPECTED_TIMESTAMP, fix.getTime());
+        assertEquals(NmeaSampleData.EXPECTED_LATITUDE, fix.getLatitude(), 0.0001);
+        assertEquals(NmeaSampleData.EXPECTED_LONGITUDE, fix.getLongitude(), 0.0001);
+        assertEquals(NmeaSampleData.EXPECTED_ALTITUDE, fix.getAltitude(), 0.0001);
+        assertEquals(NmeaSampleData.EXPECTED_SPEED, fix.getSpeed(), 0.0001);
+        assertEquals(NmeaSampleData.EXPECTED_BEARING, fix.getBearing(), 0.0001);
+
+        // Status is reported after each constellation, the last one has all of them
+        ArgumentCaptor<GnssStatus> statusArgs = ArgumentCaptor.forClass(GnssStatus.class);
+        Mockito.verify(mockCallback, times(2)).onGpsSatelliteStatus(statusArgs.capture());
+        GnssStatus status = statusArgs.getValue();
+        assertEquals(NmeaSampleData.EXPECTED_MULTI_SAT_COUNT, status.getSatelliteCount());
+
+        int[] constellations = {
+                GnssStatus.CONSTELLATION_GPS, GnssStatus.CONSTELLATION_GPS,
+                GnssStatus.CONSTELLATION_GPS, GnssStatus.CONSTELLATION_SBAS,
+                GnssStatus.CONSTELLATION_GLONASS, GnssStatus.CONSTELLATION_GLONASS,
+                GnssStatus.CONSTELLATION_GLONASS
+        };
+        int[] svids = {2, 7, 9, 120, 6, 7, 8};
+        boolean[] used = {true, true, true, false, true, true, false};
+        for (int i = 0; i < status.getSatelliteCount(); i++) {
+            assertEquals(constellations[i], status.getConstellationType(i));
+            assertEquals(svids[i], status.getSvid(i));
+            assertEquals(used[i], status.usedInFix(i));
+        }
+    }
+
+    @Test
+    public void testGps_MultiConstellation_NoSystemId() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        NmeaGpsModule gpsModule = new NmeaGpsModule(gpsDevice, DEFAULT_BAUD, DEFAULT_ACCURACY, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject NMEA test data
+        byte[] buffer = NmeaSampleData.SAMPLE_MULTI_CONSTELLATION_NO_SYSTEM_ID;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Both GNGSA sentences keep their satellites
+        ArgumentCaptor<GnssStatus> statusArgs = ArgumentCaptor.forClass(GnssStatus.class);
+        Mockito.verify(mockCallback, times(2)).onGpsSatelliteStatus(statusArgs.capture());
+        GnssStatus status = statusArgs.getValue();
+        assertEquals(NmeaSampleData.EXPECTED_MULTI_SAT_COUNT, status.getSatelliteCount());
+
+        boolean[] used = {true, true, true, false, true, true, false};
+        for (int i = 0; i < status.getSatelliteCount(); i++) {
+            assertEquals(used[i], status.usedInFix(i));
+        }
+    }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.gps;
+
+import android.location.GnssStatus;
+import android.location.Location;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.android.things.pio.UartDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@RunWith(AndroidJUnit4.class)
+public class UbxTest {
+
+    private static final int DEFAULT_BAUD = 9600;
+
+    // NAV-PVT sample values
+    private static final long EXPECTED_TIMESTAMP = 984076649250L; // 2001-03-08 18:37:29.250
+    private static final double EXPECTED_LATITUDE = 39.1226;
+    private static final double EXPECTED_LONGITUDE = -121.0413;
+    private static final double EXPECTED_ALTITUDE = 622.3;
+    private static final float EXPECTED_ACCURACY = 2.5f;
+    private static final float EXPECTED_SPEED = 1.25f;
+    private static final float EXPECTED_BEARING = 90.5f;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Test
+    public void testUbx_NavPvt() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject UBX test data, after some NMEA output
+        byte[] nmea = NmeaSampleData.SAMPLE_VALID_FIX;
+        byte[] pvt = buildNavPvt(3);
+        byte[] buffer = Arrays.copyOf(nmea, nmea.length + pvt.length);
+        System.arraycopy(pvt, 0, buffer, nmea.length, pvt.length);
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify callback results
+        Mockito.verify(mockCallback, times(1)).onGpsTimeUpdate(EXPECTED_TIMESTAMP);
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(locationArgs.capture());
+        Location location = locationArgs.getValue();
+        assertEquals(EXPECTED_TIMESTAMP, location.getTime());
+        assertEquals(EXPECTED_LATITUDE, location.getLatitude(), 1e-7);
+        assertEquals(EXPECTED_LONGITUDE, location.getLongitude(), 1e-7);
+        assertTrue(location.hasAltitude());
+        assertEquals(EXPECTED_ALTITUDE, location.getAltitude(), 1e-3);
+        assertEquals(EXPECTED_ACCURACY, location.getAccuracy(), 1e-3);
+        assertEquals(EXPECTED_SPEED, location.getSpeed(), 1e-3);
+        assertEquals(EXPECTED_BEARING, location.getBearing(), 1e-3);
+        assertEquals(0, gpsModule.getFrameErrorCount());
+    }
+
+    @Test
+    public void testUbx_NavPvt_2dFix() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject UBX test data
+        byte[] buffer = buildNavPvt(2);
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify no altitude is reported
+        ArgumentCaptor<Location> locationArgs = ArgumentCaptor.forClass(Location.class);
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(locationArgs.capture());
+        assertFalse(locationArgs.getValue().hasAltitude());
+    }
+
+    @Test
+    public void testUbx_NavPvt_NoFix() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject UBX test data
+        byte[] buffer = buildNavPvt(0);
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify only the time is reported
+        Mockito.verify(mockCallback, times(1)).onGpsTimeUpdate(EXPECTED_TIMESTAMP);
+        Mockito.verify(mockCallback, never()).onGpsLocationUpdate(any(Location.class));
+    }
+
+    @Test
+    public void testUbx_SplitMessages() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject two messages, split across three UART reads
+        byte[] pvt = buildNavPvt(3);
+        byte[] buffer = Arrays.copyOf(pvt, pvt.length * 2);
+        System.arraycopy(pvt, 0, buffer, pvt.length, pvt.length);
+        int[] splits = {0, 1, pvt.length + 20, buffer.length};
+        for (int i = 0; i < splits.length - 1; i++) {
+            byte[] chunk = Arrays.copyOfRange(buffer, splits[i], splits[i + 1]);
+            gpsDevice.write(chunk, chunk.length);
+        }
+
+        // Verify callback results
+        Mockito.verify(mockCallback, times(2)).onGpsLocationUpdate(any(Location.class));
+        assertEquals(0, gpsModule.getFrameErrorCount());
+    }
+
+    @Test
+    public void testUbx_InvalidChecksum() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject a corrupted message followed by a valid one
+        byte[] pvt = buildNavPvt(3);
+        byte[] buffer = Arrays.copyOf(pvt, pvt.length * 2);
+        System.arraycopy(pvt, 0, buffer, pvt.length, pvt.length);
+        buffer[30] ^= 0x01;
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify the corrupted message is dropped
+        Mockito.verify(mockCallback, times(1)).onGpsLocationUpdate(any(Location.class));
+        assertEquals(1, gpsModule.getFrameErrorCount());
+    }
+
+    @Test
+    public void testUbx_NavSat() throws IOException {
+        // Set up fake device
+        LoopbackUartDevice gpsDevice = new LoopbackUartDevice();
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        GpsModuleCallback mockCallback = Mockito.mock(GpsModuleCallback.class);
+        gpsModule.setGpsModuleCallback(mockCallback);
+
+        // Inject UBX test data: GPS 7 (used), GLONASS 3, Galileo 11 (used)
+        ByteBuffer payload = ByteBuffer.allocate(8 + 3 * 12).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putInt(0, 67067000);
+        payload.put(4, (byte) 1);
+        payload.put(5, (byte) 3);
+        int[][] satellites = {{0, 7, 42, 79, 48, 0x08}, {6, 3, 35, 20, 200, 0}, {2, 11, 40, 45, 310, 0x0B}};
+        for (int i = 0; i < satellites.length; i++) {
+            int block = 8 + i * 12;
+            payload.put(block, (byte) satellites[i][0]);
+            payload.put(block + 1, (byte) satellites[i][1]);
+            payload.put(block + 2, (byte) satellites[i][2]);
+            payload.put(block + 3, (byte) satellites[i][3]);
+            payload.putShort(block + 4, (short) satellites[i][4]);
+            payload.putInt(block + 8, satellites[i][5]);
+        }
+        byte[] buffer = buildFrame(UbxParser.CLASS_NAV, UbxParser.ID_NAV_SAT, payload.array());
+        gpsDevice.write(buffer, buffer.length);
+
+        // Verify callback results
+        ArgumentCaptor<GnssStatus> statusArgs = ArgumentCaptor.forClass(GnssStatus.class);
+        Mockito.verify(mockCallback, times(1)).onGpsSatelliteStatus(statusArgs.capture());
+        GnssStatus status = statusArgs.getValue();
+        assertEquals(3, status.getSatelliteCount());
+        assertEquals(GnssStatus.CONSTELLATION_GPS, status.getConstellationType(0));
+        assertEquals(GnssStatus.CONSTELLATION_GLONASS, status.getConstellationType(1));
+        assertEquals(GnssStatus.CONSTELLATION_GALILEO, status.getConstellationType(2));
+        assertEquals(11, status.getSvid(2));
+        assertEquals(42, status.getCn0DbHz(0), 0.01);
+        assertEquals(200, status.getAzimuthDegrees(1), 0.01);
+        assertTrue(status.usedInFix(0));
+        assertFalse(status.usedInFix(1));
+        assertTrue(status.usedInFix(2));
+    }
+
+    @Test
+    public void testUbx_SetUbxOutput() throws IOException {
+        // Set up mock device, recording every command written
+        UartDevice gpsDevice = Mockito.mock(UartDevice.class);
+        final List<byte[]> commands = new ArrayList<>();
+        Mockito.when(gpsDevice.write(any(byte[].class), anyInt())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[0];
+                int length = (Integer) invocation.getArguments()[1];
+                commands.add(Arrays.copyOf(buffer, length));
+                return length;
+            }
+        });
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        gpsModule.setUbxOutput(10);
+
+        byte[][] expected = {
+                // CFG-MSG NAV-PVT every solution
+                buildFrame(UbxParser.CLASS_CFG, UbxParser.ID_CFG_MSG, new byte[] {0x01, 0x07, 1}),
+                // CFG-MSG NAV-SAT every 10 solutions
+                buildFrame(UbxParser.CLASS_CFG, UbxParser.ID_CFG_MSG, new byte[] {0x01, 0x35, 10}),
+                // CFG-RATE 100ms, GPS time
+                buildFrame(UbxParser.CLASS_CFG, UbxParser.ID_CFG_RATE, new byte[] {100, 0, 1, 0, 1, 0}),
+                // CFG-PRT UART1, 8N1, 9600 baud, UBX+NMEA in, UBX out
+                buildFrame(UbxParser.CLASS_CFG, UbxParser.ID_CFG_PRT, new byte[] {
+                        1, 0, 0, 0, (byte) 0xD0, 0x08, 0, 0, (byte) 0x80, 0x25, 0, 0,
+                        3, 0, 1, 0, 0, 0, 0, 0})
+        };
+        assertEquals(expected.length, commands.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Arrays.toString(expected[i]), Arrays.toString(commands.get(i)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUbx_SetUbxOutput_InvalidRate() throws IOException {
+        UartDevice gpsDevice = Mockito.mock(UartDevice.class);
+        UbxGpsModule gpsModule = new UbxGpsModule(gpsDevice, DEFAULT_BAUD, null);
+
+        gpsModule.setUbxOutput(UbxGpsModule.MAX_RATE_HZ + 1);
+    }
+
+    /**
+     * Build a NAV-PVT message with the sample values.
+     * @param fixType GNSS fix type reported in the message
+     */
+    private static byte[] buildNavPvt(int fixType) {
+        ByteBuffer payload = ByteBuffer.allocate(92).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putShort(4, (short) 2001);
+        payload.put(6, (byte) 3);
+        payload.put(7, (byte) 8);
+        payload.put(8, (byte) 18);
+        payload.put(9, (byte) 37);
+        payload.put(10, (byte) 29);
+        payload.put(11, (byte) 0x07);          // date, time, fully resolved
+        payload.putInt(16, 250000000);         // nano
+        payload.put(20, (byte) fixType);
+        payload.put(21, (byte) (fixType > 0 ? 0x01 : 0)); // gnssFixOK
+        payload.put(23, (byte) 9);             // numSV
+        payload.putInt(24, -1210413000);       // lon, 1e-7 deg
+        payload.putInt(28, 391226000);         // lat, 1e-7 deg
+        payload.putInt(32, 622300);            // height, mm
+        payload.putInt(36, 646400);            // hMSL, mm
+        payload.putInt(40, 2500);              // hAcc, mm
+        payload.putInt(44, 4000);              // vAcc, mm
+        payload.putInt(60, 1250);              // gSpeed, mm/s
+        payload.putInt(64, 9050000);           // headMot, 1e-5 deg
+        payload.putInt(68, 300);               // sAcc, mm/s
+        payload.putInt(72, 1500000);           // headAcc, 1e-5 deg
+        return buildFrame(UbxParser.CLASS_NAV, UbxParser.ID_NAV_PVT, payload.array());
+    }
+
+    /**
+     * Add the UBX framing and checksum around a payload.
+     */
+    private static byte[] buildFrame(int msgClass, int msgId, byte[] payload) {
+        byte[] frame = new byte[payload.length + 8];
+        frame[0] = (byte) 0xB5;
+        frame[1] = 0x62;
+        frame[2] = (byte) msgClass;
+        frame[3] = (byte) msgId;
+        frame[4] = (byte) payload.length;
+        frame[5] = (byte) (payload.length >> 8);
+        System.arraycopy(payload, 0, frame, 6, payload.length);
+        int a = 0;
+        int b = 0;
+        for (int i = 2; i < frame.length - 2; i++) {
+            a = (a + (frame[i] & 0xFF)) & 0xFF;
+            b = (b + a) & 0xFF;
+        }
+        frame[frame.length - 2] = (byte) a;
+        frame[frame.length - 1] = (byte) b;
+        return frame;
+    }
+}
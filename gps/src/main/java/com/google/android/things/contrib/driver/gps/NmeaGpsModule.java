@@ -25,7 +25,6 @@ import com.google.android.things.pio.UartDevice;
 import com.google.android.things.pio.UartDeviceCallback;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -108,6 +107,13 @@ public class NmeaGpsModule implements AutoCloseable {
         mParser.setGpsModuleCallback(callback);
     }
 
+    /**
+     * Return the number of sentences dropped because they were cut short or too long.
+     */
+    public int getFrameErrorCount() {
+        return mFrameErrorCount;
+    }
+
     /**
      * Close this device and any underlying resources associated with the connection.
      */
@@ -148,71 +154,107 @@ public class NmeaGpsModule implements AutoCloseable {
      * Drain the current contents of the UART buffer.
      */
     private static final int CHUNK_SIZE = 512;
+    private final byte[] mReadBuffer = new byte[CHUNK_SIZE];
     private void readUartBuffer() throws IOException {
-        byte[] buffer = new byte[CHUNK_SIZE];
         int count;
-        while ((count = mDevice.read(buffer, buffer.length)) > 0) {
-            processBuffer(buffer, count);
+        while ((count = mDevice.read(mReadBuffer, mReadBuffer.length)) > 0) {
+            processBuffer(mReadBuffer, count);
         }
     }
 
     /**
      * Traverse each buffer received from the UART, looking for
-     * a valid message frame.
+     * valid message frames. Frames received whole are parsed straight
+     * from the buffer, a frame split across reads is gathered first.
      */
+    private static final int MAX_FRAME_LENGTH = CHUNK_SIZE * 2;
+    private final byte[] mFrameBuffer = new byte[MAX_FRAME_LENGTH];
+    private int mFrameLength;
     private boolean mFrameFlag = false;
-    private ByteBuffer mMessageBuffer = ByteBuffer.allocate(CHUNK_SIZE*2);
+    private int mFrameErrorCount;
     private void processBuffer(byte[] buffer, int count) {
-        for (int i = 0; i < count; i++) {
-            if (mParser.getFrameStart() == buffer[i]) {
-                handleFrameStart();
-            } else if (mParser.getFrameEnd() == buffer[i]) {
-                handleFrameEnd();
-            } else if (buffer[i] != 0){
-                //Insert all other characters except '0's into the buffer
-                mMessageBuffer.put(buffer[i]);
+        final byte frameStart = mParser.getFrameStart();
+        final byte frameEnd = mParser.getFrameEnd();
+        int i = 0;
+        while (i < count) {
+            int start = i;
+            if (!mFrameFlag) {
+                // Skip anything outside of a frame
+                while (start < count && buffer[start] != frameStart) {
+                    start++;
+                }
+                if (start == count) {
+                    return;
+                }
+                start++;
+            }
+
+            // Drop NUL characters, compacting the frame in place
+            int end = start;
+            int length = 0;
+            while (end < count && buffer[end] != frameEnd && buffer[end] != frameStart) {
+                if (buffer[end] != 0) {
+                    buffer[start + length++] = buffer[end];
+                }
+                end++;
+            }
+
+            if (end == count) {
+                // Keep the start of the frame until the next read
+                appendFrame(buffer, start, length);
+                return;
+            }
+
+            if (buffer[end] == frameStart) {
+                // We never saw the whole message, discard
+                mFrameErrorCount++;
+                resetFrame();
+                i = end;
+            } else if (mFrameFlag) {
+                appendFrame(buffer, start, length);
+                if (mFrameFlag) {
+                    handleFrame(mFrameBuffer, 0, mFrameLength);
+                }
+                resetFrame();
+                i = end + 1;
+            } else {
+                handleFrame(buffer, start, length);
+                i = end + 1;
             }
         }
     }
 
     /**
-     * Restart the buffer when a new frame start character is detected.
+     * Gather part of a frame split across reads. Frames longer than
+     * {@link #MAX_FRAME_LENGTH} are discarded.
      */
-    private void handleFrameStart() {
-        mMessageBuffer.clear();
+    private void appendFrame(byte[] buffer, int offset, int length) {
+        if (mFrameLength + length > mFrameBuffer.length) {
+            mFrameErrorCount++;
+            resetFrame();
+            return;
+        }
+        System.arraycopy(buffer, offset, mFrameBuffer, mFrameLength, length);
+        mFrameLength += length;
         mFrameFlag = true;
     }
 
     /**
      * Parse a message once the frame end character is detected.
      */
-    private void handleFrameEnd() {
-        if (!mFrameFlag) {
-            // We never saw the whole message, discard
-            resetBuffer();
-            return;
-        }
-
-        // Gather the bytes into a single array
-        mMessageBuffer.flip();
-        byte[] raw = new byte[mMessageBuffer.limit()];
-        mMessageBuffer.get(raw);
-
+    private void handleFrame(byte[] buffer, int offset, int length) {
         try {
-            mParser.processMessageFrame(raw);
+            mParser.processMessageFrame(buffer, offset, length);
         } catch (ParseException e) {
             Log.e(TAG, "Unable to parse NMEA message", e);
         }
-
-        // Reset the buffer state
-        resetBuffer();
     }
 
     /**
-     * Reset the buffer state.
+     * Reset the frame state.
      */
-    private void resetBuffer() {
-        mMessageBuffer.clear();
+    private void resetFrame() {
+        mFrameLength = 0;
         mFrameFlag = false;
     }
 }
@@ -19,22 +19,22 @@ package com.google.android.things.contrib.driver.gps;
 import android.location.GnssStatus;
 import android.location.Location;
 import android.location.LocationManager;
-import android.text.format.DateFormat;
-import android.util.Log;
-import android.util.SparseArray;
 
 import com.google.android.things.userdriver.location.GnssStatusBuilder;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
 
 /**
  * Utility class to handle converting NMEA strings into
  * location components.
+ * <p>
+ * Sentences are parsed in place: the parser records the offsets of each field in the raw
+ * message bytes and converts the fields it needs directly from those bytes, so parsing a
+ * sentence does not allocate.
+ * <p>
+ * GGA, GLL, RMC, GSA and VTG sentences reporting the same UTC time are merged into a single
+ * fix, reported once all the sentences the module sent for the previous epoch were received.
  */
 /*package*/ class NmeaParser {
 
@@ -42,23 +42,67 @@ import java.util.TimeZone;
     private static final byte FRAME_START = 0x24;    // $
     private static final byte CHECKSUM_START = 0x2A; // *
     private static final byte FRAME_END = 0x0D;      // CR
-    private static final String DELIMITER = ",";
+    private static final byte DELIMITER = 0x2C;      // ,
+
+    // NMEA Talker IDs, packed from their two bytes
+    private static final int TALKER_GPS = ('G' << 8) | 'P';
+    private static final int TALKER_GLONASS = ('G' << 8) | 'L';
+    private static final int TALKER_GALILEO = ('G' << 8) | 'A';
+    private static final int TALKER_BEIDOU = ('G' << 8) | 'B';
+    private static final int TALKER_BEIDOU_ALT = ('B' << 8) | 'D';
+    private static final int TALKER_QZSS = ('G' << 8) | 'Q';
+    private static final int TALKER_GNSS = ('G' << 8) | 'N';
+
+    // NMEA Message Types, packed from their three bytes
+    private static final int GGA = ('G' << 16) | ('G' << 8) | 'A';
+    private static final int GSA = ('G' << 16) | ('S' << 8) | 'A';
+    private static final int GSV = ('G' << 16) | ('S' << 8) | 'V';
+    private static final int GLL = ('G' << 16) | ('L' << 8) | 'L';
+    private static final int RMC = ('R' << 16) | ('M' << 8) | 'C';
+    private static final int VTG = ('V' << 16) | ('T' << 8) | 'G';
+
+    // Fields beyond this count are ignored, no supported sentence uses them
+    private static final int MAX_FIELDS = 32;
+    // Digits that fit in the mantissa of a decimal field
+    private static final int MAX_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    // Field index used when an optional field is not available
+    private static final int NO_FIELD = -1;
 
-    // NMEA Message Types
-    private static final String GGA = "GPGGA";
-    private static final String GSV = "GPGSV";
-    private static final String GLL = "GPGLL";
-    private static final String RMC = "GPRMC";
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // Last known UTC date, in days since the epoch, and last fix time of day in milliseconds
+    private long mEpochDay;
+    private long mTimeOfDay;
 
-    private Calendar mTimestampCalendar;
     private GpsModuleCallback mGpsModuleCallback;
 
     private float mGpsAccuracy;
 
+    // Current message and the [start, end) offsets of each of its fields
+    private byte[] mMessage;
+    private final int[] mFieldStart = new int[MAX_FIELDS];
+    private final int[] mFieldEnd = new int[MAX_FIELDS];
+    private int mFieldCount;
+
+    // Result of the last parseFixedPoint() call: mMantissa / 10^mFractionDigits
+    private long mMantissa;
+    private int mFractionDigits;
+    private int mIntegerDigits;
+
     /*package*/ NmeaParser(float gpsAccuracy) {
-        // Initialize timestamp calendar to current time
-        mTimestampCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        // Initialize last known date to current time
+        mEpochDay = System.currentTimeMillis() / MILLIS_PER_DAY;
         mGpsAccuracy = gpsAccuracy;
+        for (int i = 0; i < mSatellites.length; i++) {
+            mSatellites[i] = new Satellite();
+        }
     }
 
     /*package*/ void setGpsModuleCallback(GpsModuleCallback callback) {
@@ -74,31 +118,71 @@ import java.util.TimeZone;
     }
 
     /*package*/ void processMessageFrame(byte[] message) throws ParseException {
-        if (message == null || message.length < 1) {
+        if (message == null) {
+            throw new ParseException("Invalid message frame", 0);
+        }
+        processMessageFrame(message, 0, message.length);
+    }
+
+    /**
+     * Parse a message frame, without its start and end characters.
+     * @param message Buffer holding the message
+     * @param offset Index of the first message byte
+     * @param length Length of the message
+     */
+    /*package*/ void processMessageFrame(byte[] message, int offset, int length)
+            throws ParseException {
+        if (message == null || length < 1) {
             throw new ParseException("Invalid message frame", 0);
         }
 
         // Validate the checksum
-        int index = validateChecksum(message);
+        int index = validateChecksum(message, offset, offset + length);
 
         // Report the raw, validated message
-        String nmea = new String(message, 0, index);
-        postRaw(nmea);
+        postRaw(message, offset, index - offset);
 
-        // Parse the message based on type
-        String[] tokens = nmea.split(DELIMITER);
-        switch (tokens[0]) {
+        // Parse the message based on talker and type
+        tokenize(message, offset, index);
+        if (getFieldLength(0) != 5) {
+            // Ignore proprietary messages
+            return;
+        }
+        int start = mFieldStart[0];
+        int talker = (message[start] << 8) | message[start + 1];
+        int type = (message[start + 2] << 16) | (message[start + 3] << 8) | message[start + 4];
+        switch (talker) {
+            case TALKER_GPS:
+            case TALKER_GLONASS:
+            case TALKER_GALILEO:
+            case TALKER_BEIDOU:
+            case TALKER_BEIDOU_ALT:
+            case TALKER_QZSS:
+            case TALKER_GNSS:
+                break;
+            default:
+                // Ignore other talkers
+                return;
+        }
+
+        switch (type) {
             case GGA:
-                handleFixInformation(tokens);
+                handleFixInformation();
+                break;
+            case GSA:
+                handleActiveSatellites(talker);
                 break;
             case GSV:
-                handleSatelliteData(tokens);
+                handleSatelliteData(talker);
                 break;
             case GLL:
-                handleLatLngData(tokens);
+                handleLatLngData();
                 break;
             case RMC:
-                handleRecommendedMinimum(tokens);
+                handleRecommendedMinimum();
+                break;
+            case VTG:
+                handleCourseOverGround();
                 break;
             default:
                 // Ignore the message
@@ -108,10 +192,10 @@ import java.util.TimeZone;
     /**
      * Validate the message contents against the checksum.
      */
-    private int validateChecksum(byte[] message) throws ParseException {
-        int index = 0;
+    private int validateChecksum(byte[] message, int offset, int end) throws ParseException {
+        int index = offset;
         int messageSum = message[index++];
-        while (index < message.length) {
+        while (index < end) {
             if (message[index] == CHECKSUM_START) {
                 break;
             }
@@ -120,135 +204,512 @@ import java.util.TimeZone;
         }
 
         // Index is pointing to checksum start
-        if (index >= (message.length - 2)) {
-            throw new ParseException("Checksum missing from incoming message", index);
+        if (index >= (end - 2)) {
+            throw new ParseException("Checksum missing from incoming message", index - offset);
         }
 
         int checkSum = convertAsciiByte(message[index+1], message[index+2]);
         if (messageSum != checkSum) {
-            throw new ParseException("Invalid checksum (" + messageSum + "), expected " + checkSum, index);
+            throw new ParseException("Invalid checksum (" + messageSum + "), expected " + checkSum,
+                    index - offset);
         }
 
         return index;
     }
 
     /**
-     * Parse the contents of a GPGGA sentence
-     * @param nmea Sentence tokens
+     * Record the offsets of the comma separated fields of a message.
+     * @param message Buffer holding the message
+     * @param offset Index of the first message byte
+     * @param end Index of the checksum start
+     */
+    private void tokenize(byte[] message, int offset, int end) {
+        mMessage = message;
+        mFieldCount = 0;
+        int start = offset;
+        for (int i = offset; i <= end && mFieldCount < MAX_FIELDS; i++) {
+            if (i == end || message[i] == DELIMITER) {
+                mFieldStart[mFieldCount] = start;
+                mFieldEnd[mFieldCount] = i;
+                mFieldCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Parse the contents of a GGA sentence
      */
-    private void handleFixInformation(String[] nmea) throws ParseException {
-        if (nmea.length < 12) {
-            throw new ParseException("Invalid GGA Message", nmea.length);
+    private void handleFixInformation() throws ParseException {
+        if (mFieldCount < 13) {
+            throw new ParseException("Invalid GGA Message", mFieldCount);
         }
 
-        int quality = Integer.parseInt(nmea[6]);
+        int quality = parseInt(6, -1);
         if (quality < 1) {
             // No valid fix
+            flushEpoch();
             return;
         }
 
-        long timestamp = getUpdatedTimestamp(nmea[1], null);
-        double latitude = parseCoordinate(nmea[2], nmea[3]);
-        double longitude = parseCoordinate(nmea[4], nmea[5]);
-        double altitude = parseDistance(nmea[9], nmea[10]);
-        double seaLevel = parseDistance(nmea[11], nmea[12]);
-        postLocation(timestamp, latitude, longitude, altitude - seaLevel, -1, -1);
+        long timestamp = getUpdatedTimestamp(1, NO_FIELD);
+        double latitude = parseCoordinate(2, 3);
+        double longitude = parseCoordinate(4, 5);
+        double altitude = parseDistance(9, 10);
+        double seaLevel = parseDistance(11, 12);
+        startEpoch(timestamp);
+        mergePosition(latitude, longitude);
+        if (mEpochAltitude == -1) {
+            mEpochAltitude = altitude - seaLevel;
+        }
+        completeSentence(SENTENCE_GGA);
+    }
+
+    /** Satellites used in the fix, packed as constellation << 16 | svid */
+    private final int[] mActiveSatellites = new int[MAX_SATELLITES];
+    // GSA sentence each active satellite was reported by, as talker << 8 | system ID, or
+    // talker << 8 | SOURCE_CONSTELLATION | constellation without a system ID
+    private final int[] mActiveSources = new int[MAX_SATELLITES];
+    private int mActiveCount;
+    /**
+     * Parse the contents of a GSA sentence. Multi-constellation modules send one sentence per
+     * constellation, each replacing the satellites of the previous one from the same source.
+     * @param talker Talker ID of the sentence
+     */
+    private void handleActiveSatellites(int talker) throws ParseException {
+        if (mFieldCount < 15) {
+            throw new ParseException("Invalid GSA Message", mFieldCount);
+        }
+
+        // NMEA 4.10 adds the GNSS system ID after the DOP values
+        int systemId = parseInt(18, 0);
+        int source = (talker << 8) | systemId;
+        if (systemId == 0) {
+            // NMEA 4.0 modules also send one GNGSA per constellation, tell them apart from the
+            // ID range of the satellites they list
+            source = (talker << 8) | SOURCE_CONSTELLATION | getActiveConstellation(talker);
+        }
+        switch (systemId) {
+            case 1:
+                talker = TALKER_GPS;
+                break;
+            case 2:
+                talker = TALKER_GLONASS;
+                break;
+            case 3:
+                talker = TALKER_GALILEO;
+                break;
+            case 4:
+                talker = TALKER_BEIDOU;
+                break;
+            case 5:
+                talker = TALKER_QZSS;
+                break;
+        }
+
+        // Forget the satellites previously reported by the same source
+        int count = 0;
+        for (int i = 0; i < mActiveCount; i++) {
+            if (mActiveSources[i] != source) {
+                mActiveSatellites[count] = mActiveSatellites[i];
+                mActiveSources[count] = mActiveSources[i];
+                count++;
+            }
+        }
+        mActiveCount = count;
+
+        int fixMode = parseInt(2, -1);
+        if (fixMode < FIX_MODE_2D) {
+            // No valid fix
+            flushEpoch();
+            return;
+        }
+        if (mEpochTimestamp != NO_EPOCH) {
+            m2dFix = (fixMode == FIX_MODE_2D);
+            completeSentence(SENTENCE_GSA);
+        }
+
+        for (int i = 3; i < 15 && mActiveCount < MAX_SATELLITES; i++) {
+            int svid = parseInt(i, -1);
+            if (svid < 1) {
+                continue;
+            }
+            int constellation = getConstellation(talker, svid);
+            mActiveSatellites[mActiveCount] = (constellation << 16) | getSvid(constellation, svid);
+            mActiveSources[mActiveCount] = source;
+            mActiveCount++;
+        }
+    }
+
+    // Marks a GSA source derived from the satellites it lists
+    private static final int SOURCE_CONSTELLATION = 0x80;
+
+    /**
+     * Return the constellation of the first satellite listed in the current GSA sentence.
+     * SBAS satellites are reported along with GPS, so they count as GPS.
+     */
+    private int getActiveConstellation(int talker) {
+        for (int i = 3; i < 15; i++) {
+            int svid = parseInt(i, -1);
+            if (svid < 1) {
+                continue;
+            }
+            int constellation = getConstellation(talker, svid);
+            return constellation == GnssStatus.CONSTELLATION_SBAS
+                    ? GnssStatus.CONSTELLATION_GPS : constellation;
+        }
+        return GnssStatus.CONSTELLATION_UNKNOWN;
     }
 
     /** Intermediate representation of satellite data */
-    private SparseArray<Satellite> mSatellites = new SparseArray<>();
+    private static final int MAX_SATELLITES = 64;
+    private final Satellite[] mSatellites = new Satellite[MAX_SATELLITES];
+    private int mSatelliteCount;
     private static class Satellite {
+        int talker;
+        int constellation;
         int svid;
         float elevation;
         float azimuth;
         float snr;
     }
     /**
-     * Parse the contents of a GPGSV sentence
-     * @param nmea Sentence tokens
+     * Parse the contents of a GSV sentence. The satellites of each talker are replaced when its
+     * first sentence arrives, and the status of all the constellations is reported after its
+     * last sentence.
+     * @param talker Talker ID of the sentence
      */
-    private void handleSatelliteData(String[] nmea) throws ParseException {
-        if (nmea.length < 4) {
-            throw new ParseException("Invalid GSV Message", nmea.length);
+    private void handleSatelliteData(int talker) throws ParseException {
+        if (mFieldCount < 4) {
+            throw new ParseException("Invalid GSV Message", mFieldCount);
         }
 
-        int satelliteCount = Integer.parseInt(nmea[3]);
+        int messageCount = parseInt(1, -1);
+        int messageNumber = parseInt(2, -1);
+        if (messageNumber == 1) {
+            removeSatellites(talker);
+        }
+
+        int satelliteCount = parseInt(3, -1);
         if (satelliteCount < 1) {
             // No valid fix
             return;
         }
 
         // Parse the satellites in this message
-        for (int i = 4; (i + 3) < nmea.length; i += 4) {
-            if (!nmea[i].isEmpty()) {
-                Satellite sat = new Satellite();
-                sat.svid = Integer.parseInt(nmea[i]);
-                sat.elevation = parseTrackAngle(nmea[i+1]);
-                sat.azimuth = parseTrackAngle(nmea[i+2]);
-                sat.snr = parseSignal(nmea[i+3]);
-
-                mSatellites.put(sat.svid, sat);
+        for (int i = 4; (i + 3) < mFieldCount; i += 4) {
+            int svid = parseInt(i, -1);
+            if (svid < 1) {
+                continue;
+            }
+            int constellation = getConstellation(talker, svid);
+            Satellite sat = obtainSatellite(constellation, getSvid(constellation, svid));
+            if (sat != null) {
+                sat.talker = talker;
+                sat.elevation = parseTrackAngle(i+1);
+                sat.azimuth = parseTrackAngle(i+2);
+                sat.snr = parseSignal(i+3);
             }
         }
 
-        if (mSatellites.size() < satelliteCount) {
+        if (messageNumber < messageCount) {
             // We haven't yet received all the satellite data
             return;
         }
 
-        postSatelliteStatus(mSatellites);
-        mSatellites.clear();
+        postSatelliteStatus();
+    }
+
+    /**
+     * Return the pooled entry for a satellite, keeping the entries ordered by constellation
+     * and svid.
+     * @return the entry, or null if the pool is full
+     */
+    private Satellite obtainSatellite(int constellation, int svid) {
+        int index = 0;
+        while (index < mSatelliteCount
+                && (mSatellites[index].constellation < constellation
+                || (mSatellites[index].constellation == constellation
+                && mSatellites[index].svid < svid))) {
+            index++;
+        }
+        if (index < mSatelliteCount && mSatellites[index].constellation == constellation
+                && mSatellites[index].svid == svid) {
+            return mSatellites[index];
+        }
+        if (mSatelliteCount == MAX_SATELLITES) {
+            return null;
+        }
+
+        // Move the first unused entry into place
+        Satellite sat = mSatellites[mSatelliteCount];
+        System.arraycopy(mSatellites, index, mSatellites, index + 1, mSatelliteCount - index);
+        mSatellites[index] = sat;
+        mSatelliteCount++;
+        sat.constellation = constellation;
+        sat.svid = svid;
+        return sat;
+    }
+
+    /**
+     * Return the entries reported by a talker to the pool, keeping the order of the others.
+     */
+    private void removeSatellites(int talker) {
+        int count = 0;
+        for (int i = 0; i < mSatelliteCount; i++) {
+            Satellite sat = mSatellites[i];
+            if (sat.talker != talker) {
+                mSatellites[i] = mSatellites[count];
+                mSatellites[count++] = sat;
+            }
+        }
+        mSatelliteCount = count;
+    }
+
+    /**
+     * Return the constellation of a satellite, from the talker ID of the sentence, or from the
+     * NMEA satellite ID ranges for combined GNSS sentences.
+     */
+    private static int getConstellation(int talker, int svid) {
+        switch (talker) {
+            case TALKER_GLONASS:
+                return GnssStatus.CONSTELLATION_GLONASS;
+            case TALKER_GALILEO:
+                return GnssStatus.CONSTELLATION_GALILEO;
+            case TALKER_BEIDOU:
+            case TALKER_BEIDOU_ALT:
+                return GnssStatus.CONSTELLATION_BEIDOU;
+            case TALKER_QZSS:
+                return GnssStatus.CONSTELLATION_QZSS;
+        }
+
+        if (svid <= 32) {
+            return GnssStatus.CONSTELLATION_GPS;
+        } else if (svid <= 64) {
+            return GnssStatus.CONSTELLATION_SBAS;
+        } else if (svid <= 96) {
+            return GnssStatus.CONSTELLATION_GLONASS;
+        } else if (svid >= 193 && svid <= 200) {
+            return GnssStatus.CONSTELLATION_QZSS;
+        } else if (svid >= 201 && svid <= 263) {
+            return GnssStatus.CONSTELLATION_BEIDOU;
+        } else if (svid >= 301 && svid <= 336) {
+            return GnssStatus.CONSTELLATION_GALILEO;
+        }
+        return GnssStatus.CONSTELLATION_UNKNOWN;
+    }
+
+    /**
+     * Convert an NMEA satellite ID into the svid numbering used by {@link GnssStatus}.
+     */
+    private static int getSvid(int constellation, int svid) {
+        switch (constellation) {
+            case GnssStatus.CONSTELLATION_SBAS:
+                // NMEA 33-64 are PRN 120-151
+                return svid <= 64 ? svid + 87 : svid;
+            case GnssStatus.CONSTELLATION_GLONASS:
+                // NMEA 65-96 are slots 1-32
+                return svid > 64 ? svid - 64 : svid;
+            case GnssStatus.CONSTELLATION_QZSS:
+                return svid < 193 ? svid + 192 : svid;
+            case GnssStatus.CONSTELLATION_BEIDOU:
+                return svid > 200 ? svid - 200 : svid;
+            case GnssStatus.CONSTELLATION_GALILEO:
+                return svid > 300 ? svid - 300 : svid;
+            default:
+                return svid;
+        }
+    }
+
+    /**
+     * Return true if a satellite was reported as used in the fix by a GSA sentence.
+     */
+    private boolean isActiveSatellite(int constellation, int svid) {
+        int key = (constellation << 16) | svid;
+        for (int i = 0; i < mActiveCount; i++) {
+            if (mActiveSatellites[i] == key) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Parse the contents of a GPGLL sentence
-     * @param nmea Sentence tokens
+     * Parse the contents of a GLL sentence
      */
-    private void handleLatLngData(String[] nmea) throws ParseException {
-        if (nmea.length < 7) {
-            throw new ParseException("Invalid GLL Message", nmea.length);
+    private void handleLatLngData() throws ParseException {
+        if (mFieldCount < 7) {
+            throw new ParseException("Invalid GLL Message", mFieldCount);
         }
 
-        String status = nmea[6];
-        if (status.contains("V")) {
+        if (fieldContains(6, (byte) 'V')) {
             // No valid fix
+            flushEpoch();
             return;
         }
 
-        long timestamp = getUpdatedTimestamp(nmea[5], null);
-        double latitude = parseCoordinate(nmea[1], nmea[2]);
-        double longitude = parseCoordinate(nmea[3], nmea[4]);
-        postLocation(timestamp, latitude, longitude, -1, -1, -1);
+        long timestamp = getUpdatedTimestamp(5, NO_FIELD);
+        double latitude = parseCoordinate(1, 2);
+        double longitude = parseCoordinate(3, 4);
+        startEpoch(timestamp);
+        mergePosition(latitude, longitude);
+        completeSentence(SENTENCE_GLL);
     }
 
     /**
-     * Parse the contents of a GPRMC sentence
-     * @param nmea Sentence tokens
+     * Parse the contents of a RMC sentence
      */
-    private void handleRecommendedMinimum(String[] nmea) throws ParseException {
-        if (nmea.length < 11) {
-            throw new ParseException("Invalid RMC Message", nmea.length);
+    private void handleRecommendedMinimum() throws ParseException {
+        if (mFieldCount < 11) {
+            throw new ParseException("Invalid RMC Message", mFieldCount);
         }
 
-        String status = nmea[2];
-        if (status.contains("V")) {
+        if (fieldContains(2, (byte) 'V')) {
             // No valid fix
+            flushEpoch();
             return;
         }
 
-        long timestamp = getUpdatedTimestamp(nmea[1], nmea[9]);
+        long timestamp = getUpdatedTimestamp(1, 9);
         postTime(timestamp);
 
-        double latitude = parseCoordinate(nmea[3], nmea[4]);
-        double longitude = parseCoordinate(nmea[5], nmea[6]);
-        float speed = parseSpeed(nmea[7], "N");
-        float bearing = parseTrackAngle(nmea[8]);
-        postLocation(timestamp, latitude, longitude, -1, speed, bearing);
+        double latitude = parseCoordinate(3, 4);
+        double longitude = parseCoordinate(5, 6);
+        float speed = parseSpeed(7, (byte) 'N');
+        float bearing = parseTrackAngle(8);
+        startEpoch(timestamp);
+        mergePosition(latitude, longitude);
+        mergeCourse(speed, bearing);
+        completeSentence(SENTENCE_RMC);
     }
 
-    private void postRaw(String rawNmea) {
+    /**
+     * Parse the contents of a VTG sentence
+     */
+    private void handleCourseOverGround() throws ParseException {
+        if (mFieldCount < 9) {
+            throw new ParseException("Invalid VTG Message", mFieldCount);
+        }
+
+        // VTG has no time, it belongs to the current epoch
+        if (mEpochTimestamp == NO_EPOCH) {
+            return;
+        }
+        if (!fieldContains(9, (byte) 'N')) {
+            float speed = parseSpeed(5, (byte) 'N');
+            if (speed == -1) {
+                speed = parseSpeed(7, (byte) 'K');
+            }
+            mergeCourse(speed, parseTrackAngle(1));
+        }
+        completeSentence(SENTENCE_VTG);
+    }
+
+    // Sentences merged into an epoch
+    private static final int SENTENCE_GGA = 0x01;
+    private static final int SENTENCE_GLL = 0x02;
+    private static final int SENTENCE_RMC = 0x04;
+    private static final int SENTENCE_GSA = 0x08;
+    private static final int SENTENCE_VTG = 0x10;
+    private static final long NO_EPOCH = Long.MIN_VALUE;
+    // GSA fix modes
+    private static final int FIX_MODE_2D = 2;
+
+    /** Fix assembled from the sentences sharing the same UTC time */
+    private long mEpochTimestamp = NO_EPOCH;
+    private int mEpochSentences;
+    // Sentences the module sent in the previous epoch, until known GGA and RMC carry a full fix
+    private int mExpectedSentences = SENTENCE_GGA | SENTENCE_RMC;
+    private boolean mEpochPosted;
+    private boolean mEpochHasPosition;
+    private double mEpochLatitude;
+    private double mEpochLongitude;
+    private double mEpochAltitude;
+    private float mEpochSpeed;
+    private float mEpochBearing;
+    private boolean m2dFix;
+
+    /**
+     * Start merging the sentences of the epoch with the given time. The fix of the previous
+     * epoch is reported first if it was still incomplete. Sentences without a valid time
+     * (-1) each get an epoch of their own.
+     */
+    private void startEpoch(long timestamp) {
+        if (timestamp == mEpochTimestamp && timestamp != -1) {
+            return;
+        }
+        if (mEpochTimestamp != NO_EPOCH) {
+            if (!mEpochPosted) {
+                postEpoch();
+            }
+            if (mEpochTimestamp != -1) {
+                // Wait for the same sentences in the next epochs
+                mExpectedSentences = mEpochSentences;
+            }
+        }
+
+        mEpochTimestamp = timestamp;
+        mEpochSentences = 0;
+        mEpochPosted = false;
+        mEpochHasPosition = false;
+        mEpochAltitude = -1;
+        mEpochSpeed = -1;
+        mEpochBearing = -1;
+        m2dFix = false;
+    }
+
+    private void mergePosition(double latitude, double longitude) {
+        if (!mEpochHasPosition) {
+            mEpochLatitude = latitude;
+            mEpochLongitude = longitude;
+            mEpochHasPosition = true;
+        }
+    }
+
+    private void mergeCourse(float speed, float bearing) {
+        if (mEpochSpeed == -1) {
+            mEpochSpeed = speed;
+        }
+        if (mEpochBearing == -1) {
+            mEpochBearing = bearing;
+        }
+    }
+
+    /**
+     * Record a sentence of the current epoch, and report the fix once every expected
+     * sentence was received.
+     */
+    private void completeSentence(int sentence) {
+        mEpochSentences |= sentence;
+        if (!mEpochPosted && (mEpochTimestamp == -1
+                || (mEpochSentences & mExpectedSentences) == mExpectedSentences)) {
+            postEpoch();
+        }
+    }
+
+    /**
+     * Report the fix of the current epoch when the module loses it, as the sentences still
+     * expected for that epoch will not come.
+     */
+    private void flushEpoch() {
+        if (mEpochTimestamp != NO_EPOCH && !mEpochPosted) {
+            postEpoch();
+        }
+        mEpochTimestamp = NO_EPOCH;
+    }
+
+    private void postEpoch() {
+        mEpochPosted = true;
+        if (mEpochHasPosition) {
+            postLocation(mEpochTimestamp, mEpochLatitude, mEpochLongitude,
+                    m2dFix ? -1 : mEpochAltitude, mEpochSpeed, mEpochBearing);
+        }
+    }
+
+    private void postRaw(byte[] message, int offset, int length) {
         if (mGpsModuleCallback != null) {
-            mGpsModuleCallback.onNmeaMessage(rawNmea);
+            mGpsModuleCallback.onNmeaMessage(
+                    new String(message, offset, length, StandardCharsets.US_ASCII));
         }
     }
 
@@ -258,15 +719,17 @@ import java.util.TimeZone;
         }
     }
 
-    private void postSatelliteStatus(SparseArray<Satellite> satellites) {
+    private void postSatelliteStatus() {
         if (mGpsModuleCallback != null) {
-            GnssStatusBuilder builder = new GnssStatusBuilder(satellites.size())
-                    .setFlags(0, GnssStatusBuilder.GNSS_SV_FLAGS_NONE)
-                    .setConstellation(0, GnssStatus.CONSTELLATION_GPS);
-
-            for (int i = 0; i < satellites.size(); i++) {
-                Satellite sat = satellites.valueAt(i);
-                builder.setSvid(i, sat.svid)
+            GnssStatusBuilder builder = new GnssStatusBuilder(mSatelliteCount);
+
+            for (int i = 0; i < mSatelliteCount; i++) {
+                Satellite sat = mSatellites[i];
+                builder.setFlags(i, isActiveSatellite(sat.constellation, sat.svid)
+                                ? GnssStatusBuilder.GNSS_SV_FLAGS_USED_IN_FIX
+                                : GnssStatusBuilder.GNSS_SV_FLAGS_NONE)
+                        .setConstellation(i, sat.constellation)
+                        .setSvid(i, sat.svid)
                         .setElevation(i, sat.elevation)
                         .setAzimuth(i, sat.azimuth)
                         .setCn0DbHz(i, sat.snr);
@@ -301,144 +764,161 @@ import java.util.TimeZone;
         }
     }
 
-    private static final SimpleDateFormat FORMAT = new SimpleDateFormat("ddMMyyHHmmss", Locale.US);
     /**
      * Apply the NMEA time parameters and get an updated timestamp
-     * @param timeString NMEA fix time string
-     * @param dateString NMEA date string, optional
+     * @param timeField Index of the NMEA fix time field (hhmmss.sss)
+     * @param dateField Index of the NMEA date field (ddmmyy), or {@link #NO_FIELD}
      * @return Epoch timestamp.
      */
-    private long getUpdatedTimestamp(String timeString, String dateString) {
-        if (timeString.length() < 6) {
+    private long getUpdatedTimestamp(int timeField, int dateField) {
+        int timeLength = getFieldLength(timeField);
+        if (timeLength < 6) {
             // Invalid time
             return -1;
         }
-        if (dateString != null && dateString.length() < 6) {
+        if (dateField != NO_FIELD && getFieldLength(dateField) < 6) {
             // Invalid date
             return -1;
         }
 
+        int hours = parseTwoDigits(timeField, 0);
+        int minutes = parseTwoDigits(timeField, 2);
+        int seconds = parseTwoDigits(timeField, 4);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 60) {
+            // Default to current time
+            return System.currentTimeMillis();
+        }
 
-        try {
-            // Use last known date if not supplied
-            if (dateString == null) {
-                dateString = DateFormat.format("ddMMyy", mTimestampCalendar).toString();
+        // Keep up to three digits of the fraction of second
+        int millis = 0;
+        int index = mFieldStart[timeField] + 6;
+        if (timeLength > 6 && mMessage[index++] == '.') {
+            for (int scale = 100; index < mFieldEnd[timeField] && scale > 0; index++) {
+                int digit = mMessage[index] - '0';
+                if (digit < 0 || digit > 9) {
+                    return System.currentTimeMillis();
+                }
+                millis += digit * scale;
+                scale /= 10;
             }
-            // Truncate milliseconds
-            int pointIndex = timeString.indexOf('.');
-            if (pointIndex != -1) {
-                timeString = timeString.substring(0, pointIndex);
+        }
+        long timeOfDay = ((hours * 60 + minutes) * 60 + seconds) * 1000L + millis;
+
+        if (dateField != NO_FIELD) {
+            int day = parseTwoDigits(dateField, 0);
+            int month = parseTwoDigits(dateField, 2);
+            int year = parseTwoDigits(dateField, 4);
+            if (day < 1 || day > 31 || month < 1 || month > 12 || year < 0) {
+                // Default to current time
+                return System.currentTimeMillis();
             }
+            // GPS time starts in 1980
+            year += (year < 80) ? 2000 : 1900;
+            mEpochDay = getEpochDay(year, month, day);
+        } else if (timeOfDay < mTimeOfDay - MILLIS_PER_DAY / 2) {
+            // Use last known date if not supplied, moving to the next day at midnight
+            mEpochDay++;
+        }
+        mTimeOfDay = timeOfDay;
 
-            Date date = FORMAT.parse(dateString+timeString);
-            mTimestampCalendar.setTime(date);
-            return mTimestampCalendar.getTimeInMillis();
-        } catch (ParseException e) {
-            // Default to current time
-            return System.currentTimeMillis();
+        return mEpochDay * MILLIS_PER_DAY + timeOfDay;
+    }
+
+    /**
+     * Return the number of days between 1970-01-01 and the given date of the proleptic
+     * Gregorian calendar.
+     * @param year Full year
+     * @param month Month, from 1 to 12
+     * @param day Day of month, from 1 to 31
+     */
+    /*package*/ static long getEpochDay(int year, int month, int day) {
+        // Count years from March, so the leap day is the last day of the year
+        if (month <= 2) {
+            year--;
         }
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        // 719468 days between 0000-03-01 and 1970-01-01
+        return era * 146097L + dayOfEra - 719468;
     }
 
     /**
      * Combine an NMEA coordinate tuple into a decimal value in degrees.
-     * @param degreeString Coordinate in degrees, minutes, seconds.
-     * @param hemisphere Hemisphere designation (N,S,E,W)
+     * The coordinate is converted in fixed point, so the minutes keep every digit
+     * the module reported.
+     * @param degreeField Index of the coordinate in degrees and minutes (dddmm.mmmm).
+     * @param hemisphereField Index of the hemisphere designation (N,S,E,W)
      * @return Decimal value of the coordinate.
      */
-    private double parseCoordinate(String degreeString, String hemisphere) {
-        if (degreeString.isEmpty() || hemisphere.isEmpty()) {
+    private double parseCoordinate(int degreeField, int hemisphereField) {
+        if (getFieldLength(degreeField) == 0 || getFieldLength(hemisphereField) == 0) {
             // No data
             return -1;
         }
 
         // Two digits left of decimal to the end are the minutes
-        int index = degreeString.indexOf('.') - 2;
-        if (index < 0) {
+        if (!parseFixedPoint(degreeField) || mMantissa < 0 || mIntegerDigits < 2) {
             // Invalid string
             return -1;
         }
 
-        // Parse full degrees
-        try {
-            double value = Double.parseDouble(degreeString.substring(0, index));
-            // Append the minutes
-            value += Double.parseDouble(degreeString.substring(index)) / 60.0;
-
-            // Compensate for the hemisphere
-            if (hemisphere.contains("W") || hemisphere.contains("S")) {
-                value *= -1;
-            }
+        long scale = POWERS_OF_TEN[mFractionDigits];
+        long degrees = mMantissa / (100 * scale);
+        long minutes = mMantissa - degrees * 100 * scale;
+        double value = degrees + minutes / (60.0 * scale);
 
-            return value;
-        } catch (NumberFormatException e) {
-            // Invalid value
-            return -1;
+        // Compensate for the hemisphere
+        if (fieldContains(hemisphereField, (byte) 'W')
+                || fieldContains(hemisphereField, (byte) 'S')) {
+            value *= -1;
         }
+
+        return value;
     }
 
     /**
-     * Convert a Signal-Noise Ratio string into a decimal value in dB.
-     * @param signalString Integer string of the SNR.
+     * Convert a Signal-Noise Ratio field into a decimal value in dB.
+     * @param signalField Index of the integer SNR field.
      * @return Decimal value, or -1 if null
      */
-    private float parseSignal(String signalString) {
-        if (signalString.isEmpty()) {
-            return -1;
-        }
-
-        try {
-            return Float.parseFloat(signalString);
-        } catch (NumberFormatException e) {
-            // Invalid value
-            return -1;
-        }
+    private float parseSignal(int signalField) {
+        double value = parseDecimal(signalField);
+        return Double.isNaN(value) ? -1 : (float) value;
     }
 
     /**
-     * Convert an NMEA angle string into a decimal value in true degrees.
-     * @param angleString Decimal string of the angle.
+     * Convert an NMEA angle field into a decimal value in true degrees.
+     * @param angleField Index of the decimal angle field.
      * @return Decimal value converted to true degrees.
      */
-    private float parseTrackAngle(String angleString) {
-        if (angleString.isEmpty()) {
-            return -1;
-        }
-
-        try {
-            return Float.parseFloat(angleString);
-        } catch (NumberFormatException e) {
-            // Invalid value
-            return -1;
-        }
+    private float parseTrackAngle(int angleField) {
+        double value = parseDecimal(angleField);
+        return Double.isNaN(value) ? -1 : (float) value;
     }
 
     /**
      * Combine an NMEA distance tuple into a decimal value in meters.
-     * @param distString Decimal string of the distance.
-     * @param unit Unit of measure constant.
+     * @param distField Index of the decimal distance field.
+     * @param unitField Index of the unit of measure field.
      * @return Decimal value converted to meters.
      */
-    private double parseDistance(String distString, String unit) {
-        if (distString.isEmpty() || unit.isEmpty()) {
+    private double parseDistance(int distField, int unitField) {
+        double value = parseDecimal(distField);
+        if (Double.isNaN(value) || getFieldLength(unitField) != 1) {
             // No data
             return -1;
         }
 
-        try {
-            double value = Double.parseDouble(distString);
-
-            switch (unit) {
-                case "M": // meters
-                    return value;
-                case "K": // kilometers
-                    return value / 1000f;
-                default:
-                    // Unsupported unit of measure
-                    return -1;
-            }
-        } catch (NumberFormatException e) {
-            // Invalid value
-            return -1;
+        switch (mMessage[mFieldStart[unitField]]) {
+            case 'M': // meters
+                return value;
+            case 'K': // kilometers
+                return value / 1000f;
+            default:
+                // Unsupported unit of measure
+                return -1;
         }
     }
 
@@ -446,32 +926,142 @@ import java.util.TimeZone;
     private static final float KPH = 0.277778f;
     /**
      * Combine an NMEA speed tuple into a decimal value in m/s.
-     * @param speedString Decimal string of the speed.
+     * @param speedField Index of the decimal speed field.
      * @param unit Unit of measure constant.
      * @return Decimal value converted to m/s.
      */
-    private float parseSpeed(String speedString, String unit) {
-        if (speedString.isEmpty() || unit.isEmpty()) {
+    private float parseSpeed(int speedField, byte unit) {
+        double value = parseDecimal(speedField);
+        if (Double.isNaN(value)) {
             // No data
             return -1;
         }
 
-        try {
-            float value = Float.parseFloat(speedString);
+        switch (unit) {
+            case 'N': // knots
+                return (float) value * KNOTS;
+            case 'K': // kilometers/hour
+                return (float) value * KPH;
+            default:
+                // Unsupported unit of measure
+                return -1;
+        }
+    }
+
+    /**
+     * Return the number of bytes in a field, or 0 if the message does not have it.
+     */
+    private int getFieldLength(int field) {
+        if (field >= mFieldCount) {
+            return 0;
+        }
+        return mFieldEnd[field] - mFieldStart[field];
+    }
+
+    /**
+     * Return true if a field contains the given byte.
+     */
+    private boolean fieldContains(int field, byte value) {
+        if (field >= mFieldCount) {
+            return false;
+        }
+        for (int i = mFieldStart[field]; i < mFieldEnd[field]; i++) {
+            if (mMessage[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            switch (unit) {
-                case "N": // knots
-                    return value * KNOTS;
-                case "K": // kilometers/hour
-                    return value * KPH;
-                default:
-                    // Unsupported unit of measure
-                    return -1;
+    /**
+     * Parse an unsigned integer field.
+     * @param field Index of the field.
+     * @param defaultValue Value returned if the field is empty or invalid.
+     */
+    private int parseInt(int field, int defaultValue) {
+        int length = getFieldLength(field);
+        if (length == 0 || length > 9) {
+            return defaultValue;
+        }
+        int value = 0;
+        for (int i = mFieldStart[field]; i < mFieldEnd[field]; i++) {
+            int digit = mMessage[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
             }
-        } catch (NumberFormatException e) {
-            // Invalid value
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parse two decimal digits of a field.
+     * @return the value, or -1 if the bytes are not digits.
+     */
+    private int parseTwoDigits(int field, int offset) {
+        int index = mFieldStart[field] + offset;
+        int tens = mMessage[index] - '0';
+        int units = mMessage[index + 1] - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
             return -1;
         }
+        return tens * 10 + units;
+    }
+
+    /**
+     * Parse a decimal field.
+     * @return the value, or NaN if the field is empty or invalid.
+     */
+    private double parseDecimal(int field) {
+        if (!parseFixedPoint(field)) {
+            return Double.NaN;
+        }
+        // Both operands are exact, so the result is as accurate as Double.parseDouble()
+        return (double) mMantissa / POWERS_OF_TEN[mFractionDigits];
+    }
+
+    /**
+     * Parse a decimal field into {@link #mMantissa} and {@link #mFractionDigits}.
+     * @return false if the field is empty or invalid.
+     */
+    private boolean parseFixedPoint(int field) {
+        if (getFieldLength(field) == 0) {
+            return false;
+        }
+        int index = mFieldStart[field];
+        int end = mFieldEnd[field];
+        boolean negative = false;
+        if (mMessage[index] == '-' || mMessage[index] == '+') {
+            negative = mMessage[index] == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; index < end; index++) {
+            byte b = mMessage[index];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (b < '0' || b > '9' || digits == MAX_DIGITS) {
+                return false;
+            }
+            mantissa = mantissa * 10 + (b - '0');
+            digits++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        mMantissa = negative ? -mantissa : mantissa;
+        mFractionDigits = Math.max(fractionDigits, 0);
+        mIntegerDigits = digits - mFractionDigits;
+        return true;
     }
 
     /**
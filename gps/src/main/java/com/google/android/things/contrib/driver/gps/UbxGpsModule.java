@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.gps;
+
+import android.os.Handler;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import com.google.android.things.pio.PeripheralManager;
+import com.google.android.things.pio.UartDevice;
+import com.google.android.things.pio.UartDeviceCallback;
+
+import java.io.IOException;
+
+/**
+ * u-blox peripheral that generates UBX binary navigation messages
+ * transmitted over a UART.
+ * <p>
+ * The module reports a NAV-PVT message per navigation solution, which is
+ * much more compact than the equivalent NMEA sentences at high update rates.
+ * Use {@link #setUbxOutput(int)} to switch a module from its default NMEA
+ * output to UBX.
+ */
+@SuppressWarnings("WeakerAccess")
+public class UbxGpsModule implements AutoCloseable {
+    private static final String TAG = "UbxGpsModule";
+
+    /** Highest navigation rate supported by u-blox modules, in Hz */
+    public static final int MAX_RATE_HZ = 40;
+
+    // UART1 port of the module
+    private static final int PORT_UART = 1;
+    // 8 data bits, no parity, 1 stop bit
+    private static final int MODE_8N1 = 0x08D0;
+    private static final int PROTOCOL_UBX = 0x01;
+    private static final int PROTOCOL_NMEA = 0x02;
+    private static final int TIME_REF_GPS = 1;
+
+    private static final int CFG_PRT_LENGTH = 20;
+    private static final int CFG_MSG_LENGTH = 3;
+    private static final int CFG_RATE_LENGTH = 6;
+
+    private UartDevice mDevice;
+    private UbxParser mParser;
+    private int mBaudRate;
+
+    private final byte[] mCommandBuffer = new byte[UbxParser.HEADER_LENGTH + CFG_PRT_LENGTH
+            + UbxParser.CHECKSUM_LENGTH];
+
+    /**
+     * Create a new UbxGpsModule.
+     *
+     * @param uartName UART port name where the module is attached. Cannot be null.
+     * @param baudRate Baud rate used for the module UART.
+     */
+    public UbxGpsModule(String uartName, int baudRate) throws IOException {
+        this(uartName, baudRate, null);
+    }
+
+    /**
+     * Create a new UbxGpsModule.
+     *
+     * @param uartName UART port name where the module is attached. Cannot be null.
+     * @param baudRate Baud rate used for the module UART.
+     * @param handler optional {@link Handler} for software polling and callback events.
+     */
+    public UbxGpsModule(String uartName, int baudRate, Handler handler) throws IOException {
+        try {
+            PeripheralManager manager = PeripheralManager.getInstance();
+            UartDevice device = manager.openUartDevice(uartName);
+            init(device, baudRate, handler);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Constructor invoked from unit tests.
+     */
+    @VisibleForTesting
+    /*package*/ UbxGpsModule(UartDevice device, int baudRate, Handler handler) throws IOException {
+        init(device, baudRate, handler);
+    }
+
+    /**
+     * Initialize peripheral defaults from the constructor.
+     */
+    private void init(UartDevice device, int baudRate, Handler handler) throws IOException {
+        mDevice = device;
+        mBaudRate = baudRate;
+        mParser = new UbxParser();
+        mDevice.setBaudrate(baudRate);
+        mDevice.registerUartDeviceCallback(handler, mCallback);
+    }
+
+    /**
+     * Register a callback to be invoked when the GPS module
+     * generates a new location events.
+     *
+     * @param callback The callback to invoke, or null to remove the current callback.
+     */
+    public void setGpsModuleCallback(GpsModuleCallback callback) {
+        mParser.setGpsModuleCallback(callback);
+    }
+
+    /**
+     * Return the number of messages dropped because of an invalid checksum or length.
+     */
+    public int getFrameErrorCount() {
+        return mParser.getFrameErrorCount();
+    }
+
+    /**
+     * Switch the module UART to UBX output, with a navigation solution at the given rate.
+     * NAV-PVT is reported for every solution, and NAV-SAT about once per second. NMEA output
+     * is turned off on the UART, and the baud rate is kept.
+     * <p>
+     * The configuration is not saved in the module, and is lost when it powers off.
+     *
+     * @param rateHz Navigation solutions per second, between 1 and {@link #MAX_RATE_HZ}.
+     */
+    public void setUbxOutput(int rateHz) throws IOException {
+        if (rateHz < 1 || rateHz > MAX_RATE_HZ) {
+            throw new IllegalArgumentException("rate must be between 1 and " + MAX_RATE_HZ + "Hz");
+        }
+        if (mDevice == null) {
+            throw new IllegalStateException("Device not opened");
+        }
+
+        setMessageRate(UbxParser.CLASS_NAV, UbxParser.ID_NAV_PVT, 1);
+        setMessageRate(UbxParser.CLASS_NAV, UbxParser.ID_NAV_SAT, rateHz);
+        setMeasurementRate(rateHz);
+        setOutputProtocol(PROTOCOL_UBX);
+    }
+
+    /**
+     * Send a UBX-CFG-MSG command setting how often a message is reported on the current port.
+     *
+     * @param msgClass Class of the message.
+     * @param msgId ID of the message.
+     * @param rate Number of navigation solutions per message, or 0 to disable it.
+     */
+    private void setMessageRate(int msgClass, int msgId, int rate) throws IOException {
+        int offset = UbxParser.HEADER_LENGTH;
+        mCommandBuffer[offset] = (byte) msgClass;
+        mCommandBuffer[offset + 1] = (byte) msgId;
+        mCommandBuffer[offset + 2] = (byte) rate;
+        sendCommand(UbxParser.ID_CFG_MSG, CFG_MSG_LENGTH);
+    }
+
+    /**
+     * Send a UBX-CFG-RATE command setting the navigation solution rate.
+     */
+    private void setMeasurementRate(int rateHz) throws IOException {
+        int offset = UbxParser.HEADER_LENGTH;
+        UbxParser.putU2(mCommandBuffer, offset, 1000 / rateHz); // measurement period, ms
+        UbxParser.putU2(mCommandBuffer, offset + 2, 1);         // one solution per measurement
+        UbxParser.putU2(mCommandBuffer, offset + 4, TIME_REF_GPS);
+        sendCommand(UbxParser.ID_CFG_RATE, CFG_RATE_LENGTH);
+    }
+
+    /**
+     * Send a UBX-CFG-PRT command selecting the output protocols of the UART.
+     * Both UBX and NMEA input stay enabled.
+     */
+    private void setOutputProtocol(int protocols) throws IOException {
+        int offset = UbxParser.HEADER_LENGTH;
+        for (int i = 0; i < CFG_PRT_LENGTH; i++) {
+            mCommandBuffer[offset + i] = 0;
+        }
+        mCommandBuffer[offset] = PORT_UART;
+        UbxParser.putU4(mCommandBuffer, offset + 4, MODE_8N1);
+        UbxParser.putU4(mCommandBuffer, offset + 8, mBaudRate);
+        UbxParser.putU2(mCommandBuffer, offset + 12, PROTOCOL_UBX | PROTOCOL_NMEA);
+        UbxParser.putU2(mCommandBuffer, offset + 14, protocols);
+        sendCommand(UbxParser.ID_CFG_PRT, CFG_PRT_LENGTH);
+    }
+
+    private void sendCommand(int msgId, int payloadLength) throws IOException {
+        int length = UbxParser.frameMessage(mCommandBuffer, UbxParser.CLASS_CFG, msgId,
+                payloadLength);
+        mDevice.write(mCommandBuffer, length);
+    }
+
+    /**
+     * Close this device and any underlying resources associated with the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mDevice != null) {
+            mDevice.unregisterUartDeviceCallback(mCallback);
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Callback invoked when new data arrives in the UART buffer.
+     */
+    private UartDeviceCallback mCallback = new UartDeviceCallback() {
+        @Override
+        public boolean onUartDeviceDataAvailable(UartDevice uart) {
+            try {
+                readUartBuffer();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to read UART data", e);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void onUartDeviceError(UartDevice uart, int error) {
+            Log.w(TAG, "Error receiving incoming data: " + error);
+        }
+    };
+
+    /**
+     * Drain the current contents of the UART buffer.
+     */
+    private static final int CHUNK_SIZE = 512;
+    private final byte[] mReadBuffer = new byte[CHUNK_SIZE];
+    private void readUartBuffer() throws IOException {
+        int count;
+        while ((count = mDevice.read(mReadBuffer, mReadBuffer.length)) > 0) {
+            mParser.processBuffer(mReadBuffer, count);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.gps;
+
+import android.location.GnssStatus;
+import android.location.Location;
+import android.location.LocationManager;
+
+import com.google.android.things.userdriver.location.GnssStatusBuilder;
+
+/**
+ * Utility class to frame UBX binary messages from u-blox modules
+ * and convert them into location components.
+ * <p>
+ * A message is framed by two sync bytes, a class and ID byte, a little-endian
+ * payload length, the payload and a Fletcher checksum. Messages received whole
+ * are decoded in place from the receive buffer, others are assembled in a
+ * preallocated frame buffer first.
+ */
+/*package*/ class UbxParser {
+
+    // Message framing bytes
+    /*package*/ static final byte SYNC_CHAR_1 = (byte) 0xB5;
+    /*package*/ static final byte SYNC_CHAR_2 = 0x62;
+    // Sync bytes, class, ID and payload length
+    /*package*/ static final int HEADER_LENGTH = 6;
+    /*package*/ static final int CHECKSUM_LENGTH = 2;
+    // Larger messages are dropped
+    private static final int MAX_PAYLOAD_LENGTH = 1024;
+
+    // UBX Message Classes and IDs
+    /*package*/ static final int CLASS_NAV = 0x01;
+    /*package*/ static final int CLASS_CFG = 0x06;
+    /*package*/ static final int ID_NAV_PVT = 0x07;
+    /*package*/ static final int ID_NAV_SAT = 0x35;
+    /*package*/ static final int ID_CFG_PRT = 0x00;
+    /*package*/ static final int ID_CFG_MSG = 0x01;
+    /*package*/ static final int ID_CFG_RATE = 0x08;
+
+    private static final int NAV_PVT_LENGTH = 92;
+    private static final int NAV_SAT_HEADER_LENGTH = 8;
+    private static final int NAV_SAT_BLOCK_LENGTH = 12;
+
+    // NAV-PVT fix types and flags
+    private static final int FIX_TYPE_2D = 2;
+    private static final int FIX_TYPE_3D = 3;
+    private static final int FIX_TYPE_GNSS_DEAD_RECKONING = 4;
+    private static final int VALID_DATE = 0x01;
+    private static final int VALID_TIME = 0x02;
+    private static final int FLAG_GNSS_FIX_OK = 0x01;
+    // NAV-SAT flags
+    private static final int FLAG_SV_USED = 0x08;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // Framer states
+    private static final int STATE_SYNC_1 = 0;
+    private static final int STATE_SYNC_2 = 1;
+    private static final int STATE_BODY = 2;
+
+    private GpsModuleCallback mGpsModuleCallback;
+
+    // Class, ID, length, payload and checksum of a message split across receive buffers
+    private final byte[] mFrame = new byte[HEADER_LENGTH - 2 + MAX_PAYLOAD_LENGTH + CHECKSUM_LENGTH];
+    private int mFrameLength;
+    private int mFrameIndex;
+    private int mState = STATE_SYNC_1;
+    private int mFrameErrorCount;
+
+    /*package*/ void setGpsModuleCallback(GpsModuleCallback callback) {
+        mGpsModuleCallback = callback;
+    }
+
+    /**
+     * Return the number of messages dropped because of an invalid checksum or length.
+     */
+    /*package*/ int getFrameErrorCount() {
+        return mFrameErrorCount;
+    }
+
+    /**
+     * Frame and decode the messages in a receive buffer. Bytes between messages,
+     * such as NMEA sentences, are ignored.
+     * @param buffer Received bytes
+     * @param count Number of bytes received
+     */
+    /*package*/ void processBuffer(byte[] buffer, int count) {
+        int i = 0;
+        while (i < count) {
+            if (mState == STATE_SYNC_1) {
+                int length = getWholeFrameLength(buffer, i, count);
+                if (length > 0) {
+                    // Decode straight from the receive buffer, or resync after the sync bytes
+                    i += processFrame(buffer, i + 2) ? length : 2;
+                    continue;
+                }
+            }
+            processByte(buffer[i++]);
+        }
+    }
+
+    /**
+     * Return the length of the message starting at the given index, if it was received whole.
+     * @return the message length, or 0 if it was not received whole.
+     */
+    private int getWholeFrameLength(byte[] buffer, int index, int count) {
+        if (count - index < HEADER_LENGTH
+                || buffer[index] != SYNC_CHAR_1 || buffer[index + 1] != SYNC_CHAR_2) {
+            return 0;
+        }
+        int payloadLength = getU2(buffer, index + 4);
+        if (payloadLength > MAX_PAYLOAD_LENGTH) {
+            return 0;
+        }
+        int length = HEADER_LENGTH + payloadLength + CHECKSUM_LENGTH;
+        return (count - index < length) ? 0 : length;
+    }
+
+    /**
+     * Advance the framer state by one byte.
+     */
+    private void processByte(byte b) {
+        switch (mState) {
+            case STATE_SYNC_1:
+                if (b == SYNC_CHAR_1) {
+                    mState = STATE_SYNC_2;
+                }
+                break;
+            case STATE_SYNC_2:
+                if (b == SYNC_CHAR_2) {
+                    mState = STATE_BODY;
+                    mFrameIndex = 0;
+                    mFrameLength = HEADER_LENGTH - 2;
+                } else {
+                    mState = (b == SYNC_CHAR_1) ? STATE_SYNC_2 : STATE_SYNC_1;
+                }
+                break;
+            case STATE_BODY:
+                mFrame[mFrameIndex++] = b;
+                if (mFrameIndex == HEADER_LENGTH - 2) {
+                    // Class, ID and length received
+                    int payloadLength = getU2(mFrame, 2);
+                    if (payloadLength > MAX_PAYLOAD_LENGTH) {
+                        mFrameErrorCount++;
+                        mState = STATE_SYNC_1;
+                        break;
+                    }
+                    mFrameLength = HEADER_LENGTH - 2 + payloadLength + CHECKSUM_LENGTH;
+                } else if (mFrameIndex == mFrameLength) {
+                    processFrame(mFrame, 0);
+                    mState = STATE_SYNC_1;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Validate the checksum of a message and decode it.
+     * @param frame Buffer holding the message
+     * @param offset Index of the class byte of the message
+     * @return false if the checksum is invalid
+     */
+    private boolean processFrame(byte[] frame, int offset) {
+        int payloadLength = getU2(frame, offset + 2);
+        int checksumIndex = offset + HEADER_LENGTH - 2 + payloadLength;
+        if (getChecksum(frame, offset, HEADER_LENGTH - 2 + payloadLength)
+                != getChecksumBytes(frame, checksumIndex)) {
+            mFrameErrorCount++;
+            return false;
+        }
+
+        int msgClass = frame[offset] & 0xFF;
+        int msgId = frame[offset + 1] & 0xFF;
+        int payload = offset + HEADER_LENGTH - 2;
+        if (msgClass == CLASS_NAV && msgId == ID_NAV_PVT && payloadLength >= NAV_PVT_LENGTH) {
+            handlePositionVelocityTime(frame, payload);
+        } else if (msgClass == CLASS_NAV && msgId == ID_NAV_SAT
+                && payloadLength >= NAV_SAT_HEADER_LENGTH) {
+            handleSatelliteData(frame, payload, payloadLength);
+        }
+        // Ignore any other message
+        return true;
+    }
+
+    /**
+     * Parse the contents of a NAV-PVT message
+     * @param buffer Buffer holding the message
+     * @param offset Index of the payload
+     */
+    private void handlePositionVelocityTime(byte[] buffer, int offset) {
+        int valid = getU1(buffer, offset + 11);
+        long timestamp;
+        if ((valid & (VALID_DATE | VALID_TIME)) == (VALID_DATE | VALID_TIME)) {
+            long epochDay = NmeaParser.getEpochDay(getU2(buffer, offset + 4),
+                    getU1(buffer, offset + 6), getU1(buffer, offset + 7));
+            long timeOfDay = ((getU1(buffer, offset + 8) * 60 + getU1(buffer, offset + 9)) * 60
+                    + getU1(buffer, offset + 10)) * 1000L;
+            // Fraction of second, from -1s to 1s
+            long millis = Math.floorDiv(getI4(buffer, offset + 16), 1000000);
+            timestamp = epochDay * MILLIS_PER_DAY + timeOfDay + millis;
+            postTime(timestamp);
+        } else {
+            timestamp = System.currentTimeMillis();
+        }
+
+        int fixType = getU1(buffer, offset + 20);
+        int flags = getU1(buffer, offset + 21);
+        if (fixType < FIX_TYPE_2D || fixType > FIX_TYPE_GNSS_DEAD_RECKONING
+                || (flags & FLAG_GNSS_FIX_OK) == 0) {
+            // No valid fix
+            return;
+        }
+
+        if (mGpsModuleCallback != null) {
+            Location location = new Location(LocationManager.GPS_PROVIDER);
+            location.setTime(timestamp);
+            location.setLongitude(getI4(buffer, offset + 24) * 1e-7);
+            location.setLatitude(getI4(buffer, offset + 28) * 1e-7);
+            location.setAccuracy(getU4(buffer, offset + 40) / 1000f);
+            if (fixType == FIX_TYPE_3D || fixType == FIX_TYPE_GNSS_DEAD_RECKONING) {
+                // Height above the WGS84 ellipsoid
+                location.setAltitude(getI4(buffer, offset + 32) / 1000.0);
+                location.setVerticalAccuracyMeters(getU4(buffer, offset + 44) / 1000f);
+            }
+            location.setSpeed(getI4(buffer, offset + 60) / 1000f);
+            location.setSpeedAccuracyMetersPerSecond(getU4(buffer, offset + 68) / 1000f);
+            location.setBearing(getI4(buffer, offset + 64) * 1e-5f);
+            location.setBearingAccuracyDegrees(getU4(buffer, offset + 72) * 1e-5f);
+
+            mGpsModuleCallback.onGpsLocationUpdate(location);
+        }
+    }
+
+    /**
+     * Parse the contents of a NAV-SAT message
+     * @param buffer Buffer holding the message
+     * @param offset Index of the payload
+     * @param length Length of the payload
+     */
+    private void handleSatelliteData(byte[] buffer, int offset, int length) {
+        int count = Math.min(getU1(buffer, offset + 5),
+                (length - NAV_SAT_HEADER_LENGTH) / NAV_SAT_BLOCK_LENGTH);
+        if (count < 1 || mGpsModuleCallback == null) {
+            return;
+        }
+
+        GnssStatusBuilder builder = new GnssStatusBuilder(count);
+        for (int i = 0; i < count; i++) {
+            int block = offset + NAV_SAT_HEADER_LENGTH + i * NAV_SAT_BLOCK_LENGTH;
+            int constellation = getConstellation(getU1(buffer, block));
+            int svid = getU1(buffer, block + 1);
+            if (constellation == GnssStatus.CONSTELLATION_QZSS && svid < 193) {
+                svid += 192;
+            }
+            builder.setConstellation(i, constellation)
+                    .setSvid(i, svid)
+                    .setCn0DbHz(i, getU1(buffer, block + 2))
+                    .setElevation(i, buffer[block + 3])
+                    .setAzimuth(i, (short) getU2(buffer, block + 4))
+                    .setFlags(i, (getI4(buffer, block + 8) & FLAG_SV_USED) != 0
+                            ? GnssStatusBuilder.GNSS_SV_FLAGS_USED_IN_FIX
+                            : GnssStatusBuilder.GNSS_SV_FLAGS_NONE);
+        }
+
+        mGpsModuleCallback.onGpsSatelliteStatus(builder.build());
+    }
+
+    /**
+     * Convert a UBX GNSS identifier into a {@link GnssStatus} constellation.
+     */
+    private static int getConstellation(int gnssId) {
+        switch (gnssId) {
+            case 0:
+                return GnssStatus.CONSTELLATION_GPS;
+            case 1:
+                return GnssStatus.CONSTELLATION_SBAS;
+            case 2:
+                return GnssStatus.CONSTELLATION_GALILEO;
+            case 3:
+                return GnssStatus.CONSTELLATION_BEIDOU;
+            case 5:
+                return GnssStatus.CONSTELLATION_QZSS;
+            case 6:
+                return GnssStatus.CONSTELLATION_GLONASS;
+            default:
+                return GnssStatus.CONSTELLATION_UNKNOWN;
+        }
+    }
+
+    private void postTime(long timestamp) {
+        if (mGpsModuleCallback != null) {
+            mGpsModuleCallback.onGpsTimeUpdate(timestamp);
+        }
+    }
+
+    /**
+     * Add the framing around a payload, written at {@link #HEADER_LENGTH} in the buffer.
+     * @param buffer Buffer holding the payload, with room for the checksum
+     * @param msgClass Message class
+     * @param msgId Message ID
+     * @param payloadLength Length of the payload
+     * @return the length of the message
+     */
+    /*package*/ static int frameMessage(byte[] buffer, int msgClass, int msgId, int payloadLength) {
+        buffer[0] = SYNC_CHAR_1;
+        buffer[1] = SYNC_CHAR_2;
+        buffer[2] = (byte) msgClass;
+        buffer[3] = (byte) msgId;
+        putU2(buffer, 4, payloadLength);
+        int checksumIndex = HEADER_LENGTH + payloadLength;
+        int checksum = getChecksum(buffer, 2, checksumIndex - 2);
+        buffer[checksumIndex] = (byte) (checksum >> 8);
+        buffer[checksumIndex + 1] = (byte) checksum;
+        return checksumIndex + CHECKSUM_LENGTH;
+    }
+
+    /**
+     * Compute the 8-bit Fletcher checksum of a message.
+     * @return CK_A in the high byte and CK_B in the low byte.
+     */
+    /*package*/ static int getChecksum(byte[] buffer, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = offset; i < offset + length; i++) {
+            a = (a + (buffer[i] & 0xFF)) & 0xFF;
+            b = (b + a) & 0xFF;
+        }
+        return (a << 8) | b;
+    }
+
+    private static int getChecksumBytes(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    /*
+     * Little-endian field accessors
+     */
+
+    private static int getU1(byte[] buffer, int offset) {
+        return buffer[offset] & 0xFF;
+    }
+
+    private static int getU2(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int getI4(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF)
+                | ((buffer[offset + 1] & 0xFF) << 8)
+                | ((buffer[offset + 2] & 0xFF) << 16)
+                | (buffer[offset + 3] << 24);
+    }
+
+    private static long getU4(byte[] buffer, int offset) {
+        return getI4(buffer, offset) & 0xFFFFFFFFL;
+    }
+
+    /*package*/ static void putU2(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+
+    /*package*/ static void putU4(byte[] buffer, int offset, int value) {
+        putU2(buffer, offset, value);
+        putU2(buffer, offset + 2, value >> 16);
+    }
+}
@@ -22,7 +22,7 @@ import android.text.TextUtils;
 import com.google.android.things.pio.I2cDevice;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * I2C wrapper class for 14-segment displays powered by an ht16k33 chip, providing methods for
@@ -30,7 +30,16 @@ import java.nio.ByteBuffer;
  */
 public class AlphanumericDisplay extends Ht16k33 {
 
-    private ByteBuffer mBuffer = ByteBuffer.allocate(8);
+    private static final int DIGIT_COUNT = 4;
+
+    /**
+     * The maximum number of decimals accepted by the fixed-point display methods. The decimal
+     * point must fall on one of the displayed digits.
+     */
+    public static final int MAX_DECIMALS = DIGIT_COUNT - 1;
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000};
+
+    private final short[] mColumns = new short[DIGIT_COUNT];
 
     /**
      * Create a new driver for a HT16K33 based alphanumeric display connected on the given I2C bus
@@ -66,9 +75,8 @@ public class AlphanumericDisplay extends Ht16k33 {
      * Clear the display memory.
      */
     public void clear() throws IOException {
-        for (int i = 0; i < 4; i++) {
-            writeColumn(i, (short) 0);
-        }
+        Arrays.fill(mColumns, (short) 0);
+        writeColumns(mColumns, DIGIT_COUNT);
     }
 
     /**
@@ -97,12 +105,73 @@ public class AlphanumericDisplay extends Ht16k33 {
     }
 
     /**
-     * Display an integer number.
+     * Display an integer number. Numbers that do not fit are truncated to their first 4
+     * characters.
      * @param n number value
      */
     public void display(int n) throws IOException {
-        // pad with leading space until we get 4 chars
-        display(String.format("%4s", n));
+        display((long) n, 0);
+    }
+
+    /**
+     * Display a fixed-point number. For example, {@code display(1234, 2)} shows "12.34".
+     * Numbers that do not fit are truncated to their first 4 characters.
+     * @param n number value, scaled by 10^decimals
+     * @param decimals number of digits after the decimal point
+     */
+    public void display(long n, int decimals) throws IOException {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS);
+        }
+        // Work on the negative value, so Long.MIN_VALUE does not overflow
+        boolean negative = n < 0;
+        long value = negative ? n : -n;
+        // Count the digits, with a leading zero before the decimal point
+        int digitCount = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digitCount++;
+        }
+        digitCount = Math.max(digitCount, decimals + 1);
+        // Drop the least significant digits that do not fit
+        int digit = 0;
+        for (int length = negative ? digitCount + 1 : digitCount; length > DIGIT_COUNT;
+                length--) {
+            value /= 10;
+            digit++;
+        }
+        // Fill the columns from the right: digits, then the sign, then blanks
+        for (int i = DIGIT_COUNT - 1; i >= 0; i--) {
+            short fontData = 0;
+            if (digit < digitCount) {
+                fontData = (short) Font.DATA['0' - (int) (value % 10)];
+                if (decimals > 0 && digit == decimals) {
+                    fontData |= Font.DATA['.'];
+                }
+                value /= 10;
+                digit++;
+            } else if (negative) {
+                fontData = (short) Font.DATA['-'];
+                negative = false;
+            }
+            mColumns[i] = fontData;
+        }
+        writeColumns(mColumns, DIGIT_COUNT);
+    }
+
+    /**
+     * Display a decimal number rounded to the given number of decimals. Unlike
+     * {@link #display(double)}, this does not allocate memory.
+     * @param n number value
+     * @param decimals number of digits after the decimal point
+     */
+    public void display(float n, int decimals) throws IOException {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS);
+        }
+        if (Float.isNaN(n) || Float.isInfinite(n)) {
+            throw new IllegalArgumentException("cannot display " + n);
+        }
+        display(Math.round((double) n * POWERS_OF_TEN[decimals]), decimals);
     }
 
     /**
@@ -115,33 +184,43 @@ public class AlphanumericDisplay extends Ht16k33 {
             return;
         }
 
-        mBuffer.clear();
-        mBuffer.mark();
+        int position = encode(s, mColumns, DIGIT_COUNT);
+
+        // clear the rest of the display
+        while (position < DIGIT_COUNT) {
+            mColumns[position++] = 0;
+        }
+
+        // write display memory.
+        writeColumns(mColumns, DIGIT_COUNT);
+    }
 
+    /**
+     * Convert a string to segment data, merging each dot into the preceding character.
+     * @param s string value
+     * @param out destination for the segment data of each display position
+     * @param limit maximum number of positions to fill
+     * @return the number of positions filled
+     */
+    /*package*/ static int encode(String s, short[] out, int limit) {
+        int position = 0;
+        int lastPosition = 0;
         short prevFontData = 0;
-        for (char c : s.toCharArray()) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
             short fontData = (short) Font.DATA[c];
             if (c == '.' && prevFontData != Font.DATA['.']) {
-                mBuffer.reset();
+                // merge the dot into the previous character
+                position = lastPosition;
                 fontData = (short)(prevFontData | fontData);
             }
-            if (mBuffer.position() == mBuffer.limit()) {
+            if (position == limit) {
                 break;
             }
-            mBuffer.mark();
-            mBuffer.putShort(fontData);
+            lastPosition = position;
+            out[position++] = fontData;
             prevFontData = fontData;
         }
-
-        // clear the rest of the display
-        while (mBuffer.position() < mBuffer.capacity()) {
-            mBuffer.put((byte) 0);
-        }
-
-        mBuffer.flip();
-        // write display memory.
-        for (int i = 0; i < mBuffer.limit() / 2; i++) {
-            writeColumn(i, mBuffer.getShort());
-        }
+        return position;
     }
 }
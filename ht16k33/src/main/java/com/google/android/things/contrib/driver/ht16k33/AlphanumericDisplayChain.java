@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Virtual display spanning several 4 character HT16K33 backpacks, chained left to right at
+ * different I2C addresses on the same bus.
+ * <p>
+ * Text is split across the backpacks and all of them are updated in a single pass. Each backpack
+ * keeps its own shadow of the display RAM, so backpacks whose content did not change cost no bus
+ * traffic.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class AlphanumericDisplayChain implements AutoCloseable {
+
+    private static final int DIGIT_COUNT = 4;
+
+    private Ht16k33[] mDevices;
+    private final short[] mColumns;
+
+    /**
+     * Create a new chained display from backpacks connected on the given I2C bus.
+     * @param bus I2C bus the backpacks are connected to
+     * @param i2cAddresses I2C address of each backpack, from left to right
+     * @throws IOException
+     */
+    public AlphanumericDisplayChain(String bus, int... i2cAddresses) throws IOException {
+        if (i2cAddresses.length == 0) {
+            throw new IllegalArgumentException("at least one I2C address is required");
+        }
+        mDevices = new Ht16k33[i2cAddresses.length];
+        mColumns = new short[i2cAddresses.length * DIGIT_COUNT];
+        try {
+            for (int i = 0; i < i2cAddresses.length; i++) {
+                mDevices[i] = new Ht16k33(bus, i2cAddresses[i]);
+            }
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new chained display from the given backpacks, ordered from left to right.
+     * @param devices
+     */
+    @VisibleForTesting
+    /*package*/ AlphanumericDisplayChain(Ht16k33... devices) {
+        if (devices.length == 0) {
+            throw new IllegalArgumentException("at least one device is required");
+        }
+        mDevices = devices;
+        mColumns = new short[devices.length * DIGIT_COUNT];
+    }
+
+    /**
+     * @return the number of characters the chained display can show
+     */
+    public int getLength() {
+        return mColumns.length;
+    }
+
+    /**
+     * Close all the backpacks.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mDevices != null) {
+            IOException error = null;
+            try {
+                for (Ht16k33 device : mDevices) {
+                    if (device == null) {
+                        continue;
+                    }
+                    try {
+                        device.close();
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+            } finally {
+                mDevices = null;
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Enable oscillator and LED display of all the backpacks.
+     * @throws IOException
+     */
+    public void setEnabled(boolean enabled) throws IOException {
+        for (Ht16k33 device : getDevices()) {
+            device.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Make all the backpacks blink, using their hardware blinking circuit.
+     * @param rate one of the {@link Ht16k33} BLINK constants
+     */
+    public void setBlinkRate(@Ht16k33.BlinkRate int rate) throws IOException {
+        for (Ht16k33 device : getDevices()) {
+            device.setBlinkRate(rate);
+        }
+    }
+
+    /**
+     * Set LED display brightness of all the backpacks.
+     * @param value brigthness value between 0 and 1.0f
+     */
+    public void setBrightness(float value) throws IOException {
+        for (Ht16k33 device : getDevices()) {
+            device.setBrightness(value);
+        }
+    }
+
+    /**
+     * Clear the display memory of all the backpacks.
+     */
+    public void clear() throws IOException {
+        Arrays.fill(mColumns, (short) 0);
+        flush();
+    }
+
+    /**
+     * Display a string across the chained backpacks.
+     * @param s string value
+     */
+    public void display(String s) throws IOException {
+        if (TextUtils.isEmpty(s)) {
+            clear();
+            return;
+        }
+        int position = AlphanumericDisplay.encode(s, mColumns, mColumns.length);
+        // clear the rest of the display
+        Arrays.fill(mColumns, position, mColumns.length, (short) 0);
+        flush();
+    }
+
+    /**
+     * Return the number of backpack RAM writes that were skipped because their content was
+     * unchanged.
+     */
+    public int getAvoidedWriteCount() {
+        int count = 0;
+        for (Ht16k33 device : getDevices()) {
+            count += device.getAvoidedWriteCount();
+        }
+        return count;
+    }
+
+    /**
+     * Push the content of every backpack in a single pass. Unchanged backpacks are skipped by
+     * their shadow RAM.
+     */
+    private void flush() throws IOException {
+        Ht16k33[] devices = getDevices();
+        for (int i = 0; i < devices.length; i++) {
+            devices[i].writeColumns(mColumns, i * DIGIT_COUNT, DIGIT_COUNT);
+        }
+    }
+
+    private Ht16k33[] getDevices() {
+        if (mDevices == null) {
+            throw new IllegalStateException("I2C device not opened");
+        }
+        return mDevices;
+    }
+}
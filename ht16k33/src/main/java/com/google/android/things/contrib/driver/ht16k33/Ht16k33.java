@@ -16,12 +16,15 @@
 
 package com.google.android.things.contrib.driver.ht16k33;
 
+import android.support.annotation.IntDef;
 import android.support.annotation.VisibleForTesting;
 
 import com.google.android.things.pio.I2cDevice;
 import com.google.android.things.pio.PeripheralManager;
 
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * I2C wrapper for writing to a ht16k33 chip, such as for a 14-segment LED display. Display data is
@@ -50,13 +53,49 @@ public class Ht16k33 implements AutoCloseable {
     private static final int HT16K33_CMD_DISPLAYSETUP = 0x80;
     private static final int HT16K33_DISPLAY_ON = 0b0001;
     private static final int HT16K33_DISPLAY_OFF = 0b0000;
+    private static final int HT16K33_BLINK_SHIFT = 1;
     private static final int HT16K33_CMD_BRIGHTNESS = 0xE0;
+    private static final int HT16K33_CMD_ROW_INT_SET = 0xA0;
+    private static final int HT16K33_INT_OUTPUT = 0b0001;
+    private static final int HT16K33_ROW_OUTPUT = 0b0000;
+    private static final int HT16K33_KEY_RAM = 0x40;
 
     /**
      * The maximum brightness level for this display
      */
     public static final int HT16K33_BRIGHTNESS_MAX = 0b00001111;
 
+    /**
+     * Hardware blink rate of the whole display.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({BLINK_OFF, BLINK_2HZ, BLINK_1HZ, BLINK_0_5HZ})
+    public @interface BlinkRate {}
+    public static final int BLINK_OFF = 0;
+    public static final int BLINK_2HZ = 1;
+    public static final int BLINK_1HZ = 2;
+    public static final int BLINK_0_5HZ = 3;
+
+    /**
+     * Number of 16bit columns in the display RAM.
+     */
+    public static final int COLUMN_COUNT = 8;
+
+    /**
+     * Number of key scan rows (KS0-2) in the key RAM.
+     */
+    public static final int KEY_ROW_COUNT = 3;
+
+    /**
+     * Number of keys (K1-13) per key scan row.
+     */
+    public static final int KEYS_PER_ROW = 13;
+
+    /**
+     * Number of keys the chip can scan.
+     */
+    public static final int KEY_COUNT = KEY_ROW_COUNT * KEYS_PER_ROW;
+
     /** Top segment bit. Useful for ORing together segments to display. */
     public static final short SEGMENT_TOP = 1;
     /** Right top segment bit. Useful for ORing together segments to display. */
@@ -89,6 +128,15 @@ public class Ht16k33 implements AutoCloseable {
     public static final short SEGMENT_DOT = 1 << 14;
 
     private I2cDevice mDevice;
+    private final byte[] mRamBuffer = new byte[COLUMN_COUNT * 2];
+    private final byte[] mKeyBuffer = new byte[KEY_ROW_COUNT * 2];
+    private boolean mEnabled;
+    private int mBlinkRate = BLINK_OFF;
+
+    // Last known content of the display RAM, with one valid bit per column
+    private final short[] mShadow = new short[COLUMN_COUNT];
+    private int mShadowValid;
+    private int mAvoidedWriteCount;
 
     /**
      * Create a new driver for a HT16K33 peripheral connected on the given I2C bus using the
@@ -129,6 +177,7 @@ public class Ht16k33 implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        mShadowValid = 0;
         if (mDevice != null) {
             try {
                 mDevice.close();
@@ -148,8 +197,43 @@ public class Ht16k33 implements AutoCloseable {
         }
         int oscillator_flag = enabled ? HT16K33_OSCILLATOR_ON : HT16K33_OSCILLATOR_OFF;
         mDevice.write(new byte[]{(byte) (HT16K33_CMD_SYSTEM_SETUP | oscillator_flag)}, 1);
-        int display_flag = enabled ? HT16K33_DISPLAY_ON : HT16K33_DISPLAY_OFF;
-        mDevice.write(new byte[]{(byte) (HT16K33_CMD_DISPLAYSETUP | display_flag)}, 1);
+        mEnabled = enabled;
+        writeDisplaySetup();
+    }
+
+    /**
+     * Make the whole display blink, using the blinking circuit of the chip. Once set, blinking
+     * does not require any I2C traffic. The rate is applied when the display is enabled.
+     * @param rate one of {@link #BLINK_OFF}, {@link #BLINK_2HZ}, {@link #BLINK_1HZ} or
+     *             {@link #BLINK_0_5HZ}
+     */
+    public void setBlinkRate(@BlinkRate int rate) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not opened");
+        }
+        if (rate < BLINK_OFF || rate > BLINK_0_5HZ) {
+            throw new IllegalArgumentException("Invalid blink rate: " + rate);
+        }
+        if (rate == mBlinkRate) {
+            return;
+        }
+        mBlinkRate = rate;
+        if (mEnabled) {
+            writeDisplaySetup();
+        }
+    }
+
+    /**
+     * @return the current hardware blink rate
+     */
+    public @BlinkRate int getBlinkRate() {
+        return mBlinkRate;
+    }
+
+    private void writeDisplaySetup() throws IOException {
+        int display_flag = mEnabled ? HT16K33_DISPLAY_ON : HT16K33_DISPLAY_OFF;
+        mDevice.write(new byte[]{(byte) (HT16K33_CMD_DISPLAYSETUP | display_flag
+                | mBlinkRate << HT16K33_BLINK_SHIFT)}, 1);
     }
 
     /**
@@ -176,8 +260,46 @@ public class Ht16k33 implements AutoCloseable {
         setBrightness(val);
     }
 
+    /**
+     * Configure the ROW15/INT pin. When enabled, the pin is driven low at the end of a key scan
+     * if a key is pressed, until the key RAM is read, and ROW15 can no longer drive LEDs.
+     * @param enabled true to use the pin as key interrupt output, false to use it as ROW15
+     */
+    public void setKeyInterruptEnabled(boolean enabled) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not opened");
+        }
+        int flag = enabled ? HT16K33_INT_OUTPUT : HT16K33_ROW_OUTPUT;
+        mDevice.write(new byte[]{(byte) (HT16K33_CMD_ROW_INT_SET | flag)}, 1);
+    }
+
+    /**
+     * Read the whole key RAM in a single I2C transaction. Reading the key RAM also clears the
+     * key interrupt.
+     * @param keys receives the state of K1-13, in bits 0-12, for each of the
+     *             {@link #KEY_ROW_COUNT} key scan rows
+     * @return true if any key is pressed
+     */
+    public boolean readKeys(short[] keys) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not opened");
+        }
+        if (keys.length < KEY_ROW_COUNT) {
+            throw new IllegalArgumentException("keys must hold " + KEY_ROW_COUNT + " rows");
+        }
+        mDevice.readRegBuffer(HT16K33_KEY_RAM, mKeyBuffer, mKeyBuffer.length);
+        int pressed = 0;
+        for (int i = 0; i < KEY_ROW_COUNT; i++) {
+            int value = (mKeyBuffer[i * 2] & 0xFF) | (mKeyBuffer[i * 2 + 1] & 0xFF) << 8;
+            keys[i] = (short) (value & ((1 << KEYS_PER_ROW) - 1));
+            pressed |= keys[i];
+        }
+        return pressed != 0;
+    }
+
     /***
-     * Write 16bit of LED row data to the given column.
+     * Write 16bit of LED row data to the given column. Nothing is sent if the column already
+     * holds this data.
      * @param column
      * @param data LED state for ROW0-15
      */
@@ -185,6 +307,97 @@ public class Ht16k33 implements AutoCloseable {
         if (mDevice == null) {
             throw new IllegalStateException("I2C device not opened");
         }
+        if (column < 0 || column >= COLUMN_COUNT) {
+            throw new IllegalArgumentException("column must be between 0 and " +
+                    (COLUMN_COUNT - 1));
+        }
+        if (isShadowed(column, data)) {
+            mAvoidedWriteCount++;
+            return;
+        }
         mDevice.writeRegWord(column * 2, data);
+        mShadow[column] = data;
+        mShadowValid |= 1 << column;
+    }
+
+    /**
+     * Write 16bit of LED row data to consecutive columns, starting at column 0, in a single
+     * I2C transaction. Only the span of columns that differ from the last written content is
+     * sent, and nothing is sent if the content is unchanged.
+     * @param data LED state for ROW0-15 of each column
+     * @param count number of columns to write, up to {@link #COLUMN_COUNT}
+     */
+    public void writeColumns(short[] data, int count) throws IOException {
+        writeColumns(data, 0, count);
+    }
+
+    /**
+     * Write 16bit of LED row data to consecutive columns, starting at column 0, in a single
+     * I2C transaction. Only the span of columns that differ from the last written content is
+     * sent, and nothing is sent if the content is unchanged.
+     * @param data LED state for ROW0-15 of each column
+     * @param offset index in data of the value for column 0
+     * @param count number of columns to write, up to {@link #COLUMN_COUNT}
+     */
+    public void writeColumns(short[] data, int offset, int count) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not opened");
+        }
+        if (offset < 0 || offset > data.length) {
+            throw new IllegalArgumentException("offset must be between 0 and " + data.length);
+        }
+        if (count < 0 || count > COLUMN_COUNT || count > data.length - offset) {
+            throw new IllegalArgumentException("column count must be between 0 and " +
+                    Math.min(COLUMN_COUNT, data.length - offset));
+        }
+        if (count == 0) {
+            return;
+        }
+        // Only send the span between the first and last column that changed
+        int first = 0;
+        while (first < count && isShadowed(first, data[offset + first])) {
+            first++;
+        }
+        if (first == count) {
+            mAvoidedWriteCount++;
+            return;
+        }
+        int last = count - 1;
+        while (isShadowed(last, data[offset + last])) {
+            last--;
+        }
+
+        // Display RAM is little endian: ROW0-7 at the even address, ROW8-15 at the odd one
+        for (int i = first; i <= last; i++) {
+            short value = data[offset + i];
+            int index = (i - first) * 2;
+            mRamBuffer[index] = (byte) value;
+            mRamBuffer[index + 1] = (byte) (value >> 8);
+        }
+        mDevice.writeRegBuffer(first * 2, mRamBuffer, (last - first + 1) * 2);
+        for (int i = first; i <= last; i++) {
+            mShadow[i] = data[offset + i];
+            mShadowValid |= 1 << i;
+        }
+    }
+
+    /**
+     * Return the number of display RAM writes that were skipped because the display already
+     * showed the requested content.
+     */
+    public int getAvoidedWriteCount() {
+        return mAvoidedWriteCount;
+    }
+
+    /**
+     * Forget the cached display RAM content, so the next write is sent in full. Call this if
+     * the display RAM may have been modified by another driver instance.
+     */
+    public void invalidateShadow() {
+        mShadowValid = 0;
+    }
+
+    private boolean isShadowed(int column, short data) {
+        return (mShadowValid & (1 << column)) != 0 && mShadow[column] == data;
     }
 }
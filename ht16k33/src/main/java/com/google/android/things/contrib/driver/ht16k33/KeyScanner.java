@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.IOException;
+
+/**
+ * Interrupt driven reader for the keys scanned by a HT16K33 chip.
+ * <p>
+ * The key RAM is only read when the chip pulls its INT pin low, in a single I2C transaction, and
+ * the listener is called for each key that changed since the previous read. The chip does not
+ * raise its interrupt when the last key is released, so the key RAM is also read once per key
+ * scan period while any key is held.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class KeyScanner implements AutoCloseable {
+    private static final String TAG = KeyScanner.class.getSimpleName();
+
+    /**
+     * Delay between two key RAM reads while keys are held, in milliseconds. A key scan cycle of
+     * the chip takes about 20ms.
+     */
+    @VisibleForTesting
+    /*package*/ static final long HELD_POLL_DELAY_MS = 20;
+
+    /**
+     * Interface definition for a callback to be invoked when a key changes state.
+     */
+    public interface OnKeyEventListener {
+        /**
+         * Called when a key is pressed or released.
+         * @param scanner the scanner that read the key
+         * @param key index of the key, {@code row * Ht16k33.KEYS_PER_ROW + k}, where row is the
+         *            KS line and k the K line, both starting from 0
+         * @param pressed true if the key is now pressed
+         */
+        void onKeyEvent(KeyScanner scanner, int key, boolean pressed);
+    }
+
+    private Ht16k33 mDevice;
+    private Gpio mInterruptGpio;
+    private final Handler mHandler;
+    private OnKeyEventListener mListener;
+
+    private final short[] mKeys = new short[Ht16k33.KEY_ROW_COUNT];
+    private final short[] mPreviousKeys = new short[Ht16k33.KEY_ROW_COUNT];
+
+    /**
+     * Create a new key scanner for a HT16K33 chip whose INT pin is connected to the given GPIO
+     * pin. The chip is not closed when the scanner is closed, so it can keep driving a display.
+     * Key events are delivered on the main thread.
+     * @param device chip scanning the keys
+     * @param interruptPin GPIO pin connected to the INT pin of the chip
+     * @throws IOException
+     */
+    public KeyScanner(Ht16k33 device, String interruptPin) throws IOException {
+        this(device, interruptPin, null);
+    }
+
+    /**
+     * Create a new key scanner for a HT16K33 chip whose INT pin is connected to the given GPIO
+     * pin. The chip is not closed when the scanner is closed, so it can keep driving a display.
+     * @param device chip scanning the keys
+     * @param interruptPin GPIO pin connected to the INT pin of the chip
+     * @param handler optional {@link Handler} for the key events and key RAM reads. The main
+     *                thread is used if null.
+     * @throws IOException
+     */
+    public KeyScanner(Ht16k33 device, String interruptPin, Handler handler) throws IOException {
+        this(device, PeripheralManager.getInstance().openGpio(interruptPin), handler);
+    }
+
+    @VisibleForTesting
+    /*package*/ KeyScanner(Ht16k33 device, Gpio interruptGpio, Handler handler)
+            throws IOException {
+        mDevice = device;
+        mInterruptGpio = interruptGpio;
+        mHandler = (handler != null) ? handler : new Handler(Looper.getMainLooper());
+        try {
+            mInterruptGpio.setDirection(Gpio.DIRECTION_IN);
+            mInterruptGpio.setActiveType(Gpio.ACTIVE_HIGH);
+            mInterruptGpio.setEdgeTriggerType(Gpio.EDGE_FALLING);
+            mInterruptGpio.registerGpioCallback(mHandler, mInterruptCallback);
+            mDevice.setKeyInterruptEnabled(true);
+            // Clear any pending interrupt and pick up keys held at startup
+            scan();
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Set the listener to be called when a key changes state.
+     * @param listener
+     */
+    public void setOnKeyEventListener(OnKeyEventListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Return whether the given key was pressed at the last key RAM read.
+     * @param key index of the key, {@code row * Ht16k33.KEYS_PER_ROW + k}
+     */
+    public boolean isPressed(int key) {
+        if (key < 0 || key >= Ht16k33.KEY_COUNT) {
+            throw new IllegalArgumentException("key must be between 0 and "
+                    + (Ht16k33.KEY_COUNT - 1));
+        }
+        return (mPreviousKeys[key / Ht16k33.KEYS_PER_ROW]
+                & (1 << (key % Ht16k33.KEYS_PER_ROW))) != 0;
+    }
+
+    /**
+     * Close the scanner and release the interrupt GPIO. The ROW/INT pin of the chip goes back to
+     * driving a row, unless the chip was already closed.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        mHandler.removeCallbacks(mPollRunnable);
+        try {
+            if (mDevice != null) {
+                try {
+                    mDevice.setKeyInterruptEnabled(false);
+                } catch (IllegalStateException ignored) {
+                    // The chip was closed first
+                } finally {
+                    mDevice = null;
+                }
+            }
+        } finally {
+            if (mInterruptGpio != null) {
+                mInterruptGpio.unregisterGpioCallback(mInterruptCallback);
+                try {
+                    mInterruptGpio.close();
+                } finally {
+                    mInterruptGpio = null;
+                }
+            }
+        }
+    }
+
+    @VisibleForTesting
+    /*package*/ final GpioCallback mInterruptCallback = new GpioCallback() {
+        @Override
+        public boolean onGpioEdge(Gpio gpio) {
+            mHandler.removeCallbacks(mPollRunnable);
+            scanSafely();
+            return true;
+        }
+    };
+
+    @VisibleForTesting
+    /*package*/ final Runnable mPollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scanSafely();
+        }
+    };
+
+    private void scanSafely() {
+        try {
+            scan();
+        } catch (IOException|RuntimeException e) {
+            Log.e(TAG, "Error reading key RAM", e);
+        }
+    }
+
+    /**
+     * Read the key RAM and report the keys that changed state.
+     */
+    private void scan() throws IOException {
+        if (mDevice == null) {
+            return;
+        }
+        boolean held = mDevice.readKeys(mKeys);
+        for (int row = 0; row < Ht16k33.KEY_ROW_COUNT; row++) {
+            int diff = mKeys[row] ^ mPreviousKeys[row];
+            mPreviousKeys[row] = mKeys[row];
+            while (diff != 0) {
+                int k = Integer.numberOfTrailingZeros(diff);
+                diff &= diff - 1;
+                if (mListener != null) {
+                    mListener.onKeyEvent(this, row * Ht16k33.KEYS_PER_ROW + k,
+                            (mKeys[row] & (1 << k)) != 0);
+                }
+            }
+        }
+        if (held) {
+            mHandler.postDelayed(mPollRunnable, HELD_POLL_DELAY_MS);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.support.annotation.VisibleForTesting;
+import android.view.KeyEvent;
+
+import com.google.android.things.userdriver.UserDriverManager;
+import com.google.android.things.userdriver.input.InputDriver;
+import com.google.android.things.userdriver.input.InputDriverEvent;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Framework input driver for the keys scanned by a HT16K33 chip. The driver emits a
+ * {@link KeyEvent} each time a key is pressed or released.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class KeypadInputDriver implements AutoCloseable {
+    private static final String DRIVER_NAME = "Ht16k33Keypad";
+
+    private KeyScanner mScanner;
+    private final int[] mKeycodes;
+    private InputDriver mDriver;
+    private InputDriverEvent mInputEvent;
+
+    /**
+     * Create a new framework input driver for the keys of a HT16K33 chip, whose INT pin is
+     * connected to the given GPIO pin. The chip is not closed when the driver is closed, so it can
+     * keep driving a display.
+     * @param device chip scanning the keys
+     * @param interruptPin GPIO pin connected to the INT pin of the chip
+     * @param keycodes keycode to emit for each key, indexed by
+     *                 {@code row * Ht16k33.KEYS_PER_ROW + k}, where row is the KS line and k the
+     *                 K line, both starting from 0. Use {@link KeyEvent#KEYCODE_UNKNOWN} for keys
+     *                 that are not connected.
+     * @throws IOException
+     * @see #register
+     */
+    public KeypadInputDriver(Ht16k33 device, String interruptPin, int[] keycodes)
+            throws IOException {
+        this(new KeyScanner(device, interruptPin), keycodes);
+    }
+
+    @VisibleForTesting
+    /*package*/ KeypadInputDriver(KeyScanner scanner, int[] keycodes) {
+        if (keycodes == null || keycodes.length > Ht16k33.KEY_COUNT) {
+            throw new IllegalArgumentException("at most " + Ht16k33.KEY_COUNT
+                    + " keycodes are supported");
+        }
+        mScanner = scanner;
+        mKeycodes = Arrays.copyOf(keycodes, Ht16k33.KEY_COUNT);
+        mScanner.setOnKeyEventListener(mKeyListener);
+    }
+
+    /**
+     * Close the driver and the underlying key scanner.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        unregister();
+        if (mScanner != null) {
+            try {
+                mScanner.close();
+            } finally {
+                mScanner = null;
+            }
+        }
+    }
+
+    /**
+     * Register the driver in the framework.
+     */
+    public void register() {
+        if (mScanner == null) {
+            throw new IllegalStateException("cannot register closed driver");
+        }
+        if (mDriver == null) {
+            mDriver = new InputDriver.Builder()
+                    .setName(DRIVER_NAME)
+                    .setSupportedKeys(getSupportedKeys())
+                    .build();
+            mInputEvent = new InputDriverEvent();
+            UserDriverManager.getInstance().registerInputDriver(mDriver);
+        }
+    }
+
+    /**
+     * Unregister the driver from the framework.
+     */
+    public void unregister() {
+        if (mDriver != null) {
+            UserDriverManager.getInstance().unregisterInputDriver(mDriver);
+            mDriver = null;
+        }
+    }
+
+    private int[] getSupportedKeys() {
+        int count = 0;
+        for (int keycode : mKeycodes) {
+            if (keycode != KeyEvent.KEYCODE_UNKNOWN) {
+                count++;
+            }
+        }
+        int[] keys = new int[count];
+        count = 0;
+        for (int keycode : mKeycodes) {
+            if (keycode != KeyEvent.KEYCODE_UNKNOWN) {
+                keys[count++] = keycode;
+            }
+        }
+        return keys;
+    }
+
+    private final KeyScanner.OnKeyEventListener mKeyListener =
+            new KeyScanner.OnKeyEventListener() {
+        @Override
+        public void onKeyEvent(KeyScanner scanner, int key, boolean pressed) {
+            int keycode = mKeycodes[key];
+            if (mDriver == null || keycode == KeyEvent.KEYCODE_UNKNOWN) {
+                return;
+            }
+            mInputEvent.clear();
+            mInputEvent.setKeyPressed(keycode, pressed);
+            mDriver.emit(mInputEvent);
+        }
+    };
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrolls messages longer than 4 characters across an {@link AlphanumericDisplay}.
+ * <p>
+ * The message is converted to segment data once, when it is set. Each scroll step then copies a
+ * 4 character window of that data to the display in a single RAM write, on a background thread.
+ * <p>
+ * The display must not be drawn to from other threads while the marquee is running. Once
+ * {@link #stop()} returns, the marquee no longer writes to the display.
+ * <pre>
+ * Marquee marquee = new Marquee(display);
+ * marquee.setMessage("HELLO ANDROID THINGS");
+ * marquee.start();
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class Marquee implements AutoCloseable {
+    private static final String TAG = Marquee.class.getSimpleName();
+
+    private static final int DIGIT_COUNT = 4;
+
+    /**
+     * Default delay between two scroll steps, in milliseconds.
+     */
+    public static final long DEFAULT_STEP_DELAY_MS = 250;
+    /**
+     * Default time the message stays still at each end, in milliseconds.
+     */
+    public static final long DEFAULT_END_PAUSE_MS = 1000;
+
+    private AlphanumericDisplay mDisplay;
+    private ScheduledExecutorService mExecutor;
+    private ScheduledFuture<?> mTask;
+
+    private final Object mLock = new Object();
+    private final short[] mWindow = new short[DIGIT_COUNT];
+    private short[] mCodes = new short[0];
+    private int mCodeCount;
+    private int mOffset;
+    private int mPauseTicks;
+    private long mStepDelayMs = DEFAULT_STEP_DELAY_MS;
+    private long mEndPauseMs = DEFAULT_END_PAUSE_MS;
+
+    /**
+     * Create a new marquee scrolling on the given display. The display is not closed when the
+     * marquee is closed.
+     * @param display display to scroll messages on
+     */
+    public Marquee(AlphanumericDisplay display) {
+        mDisplay = display;
+    }
+
+    /**
+     * Set the message to scroll. Messages that fit on the display are shown without scrolling.
+     * Scrolling restarts from the beginning of the new message.
+     * @param message message to scroll
+     */
+    public void setMessage(String message) {
+        if (message == null) {
+            message = "";
+        }
+        synchronized (mLock) {
+            // Every character takes at most one display position
+            if (mCodes.length < message.length()) {
+                mCodes = new short[message.length()];
+            }
+            mCodeCount = AlphanumericDisplay.encode(message, mCodes, mCodes.length);
+            mOffset = 0;
+            mPauseTicks = getEndPauseTicks();
+        }
+    }
+
+    /**
+     * Set the scrolling speed.
+     * @param delayMs delay between two scroll steps, in milliseconds
+     */
+    public void setStepDelay(long delayMs) {
+        if (delayMs <= 0) {
+            throw new IllegalArgumentException("step delay must be positive");
+        }
+        synchronized (mLock) {
+            mStepDelayMs = delayMs;
+            if (mTask != null) {
+                // reschedule at the new rate
+                stop();
+                start();
+            }
+        }
+    }
+
+    /**
+     * Set how long the message stays still when reaching either end.
+     * @param pauseMs pause duration, in milliseconds, or 0 to scroll continuously
+     */
+    public void setEndPause(long pauseMs) {
+        if (pauseMs < 0) {
+            throw new IllegalArgumentException("end pause cannot be negative");
+        }
+        synchronized (mLock) {
+            mEndPauseMs = pauseMs;
+        }
+    }
+
+    /**
+     * Start scrolling the current message.
+     */
+    public void start() {
+        synchronized (mLock) {
+            if (mDisplay == null) {
+                throw new IllegalStateException("marquee is closed");
+            }
+            if (mTask != null) {
+                return;
+            }
+            if (mExecutor == null) {
+                mExecutor = Executors.newSingleThreadScheduledExecutor();
+            }
+            mTask = mExecutor.scheduleAtFixedRate(mStepRunnable, 0, mStepDelayMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop scrolling. The display keeps showing the current window. A scroll step in progress
+     * completes before this returns.
+     */
+    public void stop() {
+        synchronized (mLock) {
+            if (mTask != null) {
+                mTask.cancel(false);
+                mTask = null;
+            }
+        }
+    }
+
+    /**
+     * @return true if the marquee is scrolling
+     */
+    public boolean isRunning() {
+        synchronized (mLock) {
+            return mTask != null;
+        }
+    }
+
+    /**
+     * Stop scrolling and release the background thread.
+     */
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            stop();
+            if (mExecutor != null) {
+                mExecutor.shutdown();
+                mExecutor = null;
+            }
+            mDisplay = null;
+        }
+    }
+
+    private final Runnable mStepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                synchronized (mLock) {
+                    // skip a step that was already pending when stop() was called
+                    if (mTask == null) {
+                        return;
+                    }
+                    step();
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error updating display", e);
+            }
+        }
+    };
+
+    /**
+     * Show the current window and advance the scroll position by one tick.
+     */
+    @VisibleForTesting
+    /*package*/ void step() throws IOException {
+        synchronized (mLock) {
+            if (mDisplay == null) {
+                return;
+            }
+            for (int i = 0; i < DIGIT_COUNT; i++) {
+                int index = mOffset + i;
+                mWindow[i] = index < mCodeCount ? mCodes[index] : 0;
+            }
+            mDisplay.writeColumns(mWindow, DIGIT_COUNT);
+
+            int lastOffset = mCodeCount - DIGIT_COUNT;
+            if (lastOffset <= 0) {
+                // nothing to scroll
+                return;
+            }
+            if (mPauseTicks > 0) {
+                mPauseTicks--;
+                return;
+            }
+            if (mOffset < lastOffset) {
+                mOffset++;
+                if (mOffset == lastOffset) {
+                    mPauseTicks = getEndPauseTicks();
+                }
+            } else {
+                mOffset = 0;
+                mPauseTicks = getEndPauseTicks();
+            }
+        }
+    }
+
+    private int getEndPauseTicks() {
+        return (int) ((mEndPauseMs + mStepDelayMs - 1) / mStepDelayMs);
+    }
+}
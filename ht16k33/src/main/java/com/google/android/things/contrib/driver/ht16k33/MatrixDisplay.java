@@ -0,0 +1,270 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.android.things.pio.I2cDevice;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+/**
+ * I2C wrapper class for 8x8 and 16x8 LED matrix backpacks powered by an ht16k33 chip.
+ * <p>
+ * Drawing operations update a bit-packed framebuffer laid out like the display RAM, and
+ * {@link #flush()} sends it to the chip in a single I2C transaction:
+ * <pre>
+ * MatrixDisplay matrix = new MatrixDisplay(i2cBusName, MatrixDisplay.LAYOUT_8X8);
+ * matrix.setEnabled(true);
+ * matrix.setPixel(0, 0, true);
+ * matrix.flush();
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class MatrixDisplay extends Ht16k33 {
+
+    /**
+     * Wiring of the LED matrix to the HT16K33 outputs.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LAYOUT_8X8, LAYOUT_16X8})
+    public @interface Layout {}
+    /** 8x8 matrix backpack, with columns wired to ROW0-7 starting from ROW7. */
+    public static final int LAYOUT_8X8 = 0;
+    /** 16x8 matrix backpack, with columns wired to ROW0-15. */
+    public static final int LAYOUT_16X8 = 1;
+
+    /**
+     * Rotation of the drawing coordinates, clockwise.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ROTATION_0, ROTATION_90, ROTATION_180, ROTATION_270})
+    public @interface Rotation {}
+    public static final int ROTATION_0 = 0;
+    public static final int ROTATION_90 = 1;
+    public static final int ROTATION_180 = 2;
+    public static final int ROTATION_270 = 3;
+
+    private static final int PANEL_HEIGHT = 8;
+
+    private final int mLayout;
+    private final int mPanelWidth;
+    private final short[] mFrame = new short[COLUMN_COUNT];
+    private int mRotation = ROTATION_0;
+    private int mWidth;
+    private int mHeight;
+    // RAM column and bit of each pixel for the current rotation, indexed by y * width + x
+    private final byte[] mPixelColumn;
+    private final short[] mPixelMask;
+
+    /**
+     * Create a new driver for a HT16K33 based LED matrix connected on the given I2C bus using the
+     * {@link Ht16k33#I2C_ADDRESS default I2C address}.
+     * @param bus
+     * @param layout wiring of the matrix
+     * @throws IOException
+     */
+    public MatrixDisplay(String bus, @Layout int layout) throws IOException {
+        this(bus, I2C_ADDRESS, layout);
+    }
+
+    /**
+     * Create a new driver for a HT16K33 based LED matrix connected on the given I2C bus and
+     * using the given I2C address.
+     * @param bus
+     * @param i2cAddress
+     * @param layout wiring of the matrix
+     * @throws IOException
+     */
+    public MatrixDisplay(String bus, int i2cAddress, @Layout int layout) throws IOException {
+        super(bus, i2cAddress);
+        mLayout = checkLayout(layout);
+        mPanelWidth = layout == LAYOUT_16X8 ? 16 : 8;
+        mPixelColumn = new byte[mPanelWidth * PANEL_HEIGHT];
+        mPixelMask = new short[mPanelWidth * PANEL_HEIGHT];
+        updateMapping();
+    }
+
+    /**
+     * Create a new driver for a HT16K33 based LED matrix from a given I2C device.
+     * @param device
+     * @param layout wiring of the matrix
+     */
+    @VisibleForTesting
+    /*package*/ MatrixDisplay(I2cDevice device, @Layout int layout) {
+        super(device);
+        mLayout = checkLayout(layout);
+        mPanelWidth = layout == LAYOUT_16X8 ? 16 : 8;
+        mPixelColumn = new byte[mPanelWidth * PANEL_HEIGHT];
+        mPixelMask = new short[mPanelWidth * PANEL_HEIGHT];
+        updateMapping();
+    }
+
+    private static int checkLayout(int layout) {
+        if (layout != LAYOUT_8X8 && layout != LAYOUT_16X8) {
+            throw new IllegalArgumentException("Invalid layout: " + layout);
+        }
+        return layout;
+    }
+
+    /**
+     * @return the width of the drawing area, taking the rotation into account
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the height of the drawing area, taking the rotation into account
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Rotate the drawing coordinates. The framebuffer content is kept as is.
+     * @param rotation clockwise rotation
+     */
+    public void setRotation(@Rotation int rotation) {
+        if (rotation < ROTATION_0 || rotation > ROTATION_270) {
+            throw new IllegalArgumentException("Invalid rotation: " + rotation);
+        }
+        mRotation = rotation;
+        updateMapping();
+    }
+
+    /**
+     * @return the current rotation of the drawing coordinates
+     */
+    public @Rotation int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * Precompute where each logical pixel lives in display RAM, so drawing is a table lookup.
+     */
+    private void updateMapping() {
+        boolean swap = mRotation == ROTATION_90 || mRotation == ROTATION_270;
+        mWidth = swap ? PANEL_HEIGHT : mPanelWidth;
+        mHeight = swap ? mPanelWidth : PANEL_HEIGHT;
+        for (int y = 0; y < mHeight; y++) {
+            for (int x = 0; x < mWidth; x++) {
+                // logical coordinates to panel coordinates
+                int px, py;
+                switch (mRotation) {
+                    case ROTATION_90:
+                        px = y;
+                        py = PANEL_HEIGHT - 1 - x;
+                        break;
+                    case ROTATION_180:
+                        px = mPanelWidth - 1 - x;
+                        py = PANEL_HEIGHT - 1 - y;
+                        break;
+                    case ROTATION_270:
+                        px = mPanelWidth - 1 - y;
+                        py = x;
+                        break;
+                    default:
+                        px = x;
+                        py = y;
+                        break;
+                }
+                // panel coordinates to RAM column and row bit
+                int bit = mLayout == LAYOUT_8X8 ? (px + 7) & 7 : px;
+                int index = y * mWidth + x;
+                mPixelColumn[index] = (byte) py;
+                mPixelMask[index] = (short) (1 << bit);
+            }
+        }
+    }
+
+    /**
+     * Turn a pixel of the framebuffer on or off. Pixels outside the drawing area are ignored.
+     * @param x horizontal coordinate, from the left
+     * @param y vertical coordinate, from the top
+     * @param on new state of the pixel
+     */
+    public void setPixel(int x, int y, boolean on) {
+        if (x < 0 || x >= mWidth || y < 0 || y >= mHeight) {
+            return;
+        }
+        int index = y * mWidth + x;
+        int column = mPixelColumn[index];
+        if (on) {
+            mFrame[column] |= mPixelMask[index];
+        } else {
+            mFrame[column] &= ~mPixelMask[index];
+        }
+    }
+
+    /**
+     * Return the state of a pixel of the framebuffer.
+     * @param x horizontal coordinate, from the left
+     * @param y vertical coordinate, from the top
+     */
+    public boolean getPixel(int x, int y) {
+        if (x < 0 || x >= mWidth || y < 0 || y >= mHeight) {
+            return false;
+        }
+        int index = y * mWidth + x;
+        return (mFrame[mPixelColumn[index]] & mPixelMask[index]) != 0;
+    }
+
+    /**
+     * Turn all the pixels of the framebuffer on or off.
+     * @param on new state of the pixels
+     */
+    public void fill(boolean on) {
+        Arrays.fill(mFrame, on ? (short) (mLayout == LAYOUT_16X8 ? 0xFFFF : 0xFF) : 0);
+    }
+
+    /**
+     * Copy a bit-packed image into the framebuffer. The image is clipped to the drawing area.
+     * @param rows one entry per image row, where the most significant of the width bits is the
+     *             leftmost pixel
+     * @param width image width, up to 32 pixels
+     * @param x horizontal position of the image left edge
+     * @param y vertical position of the image top edge
+     */
+    public void blit(int[] rows, int width, int x, int y) {
+        if (width < 0 || width > 32) {
+            throw new IllegalArgumentException("width must be between 0 and 32");
+        }
+        for (int row = 0; row < rows.length; row++) {
+            int ty = y + row;
+            if (ty < 0 || ty >= mHeight) {
+                continue;
+            }
+            int bits = rows[row];
+            for (int col = 0; col < width; col++) {
+                setPixel(x + col, ty, ((bits >>> (width - 1 - col)) & 1) != 0);
+            }
+        }
+    }
+
+    /**
+     * Send the framebuffer to the display RAM in a single I2C transaction. Nothing is sent if the
+     * display already shows the framebuffer.
+     */
+    public void flush() throws IOException {
+        writeColumns(mFrame, COLUMN_COUNT);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation checks for the numeric display paths. These run without PowerMock, whose class
+ * loader instruments the code under test.
+ */
+public class AlphanumericDisplayAllocationTest {
+
+    @Test
+    public void displayNumbers_doNotAllocate() throws IOException {
+        // Render into a display that drops the RAM writes, to measure the formatting only
+        AlphanumericDisplay display = new AlphanumericDisplay((I2cDevice) null) {
+            @Override
+            public void writeColumns(short[] data, int count) {
+            }
+        };
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        // warm up, so class loading and compilation are not measured
+        for (int i = 0; i < 20000; i++) {
+            renderNumbers(display, i);
+        }
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20000; i++) {
+            renderNumbers(display, i);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        // allow for the measurement call itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void renderNumbers(AlphanumericDisplay display, int i) throws IOException {
+        display.display(i);
+        display.display(-i * 7L, 2);
+        display.display(i / 7f, 1);
+    }
+}
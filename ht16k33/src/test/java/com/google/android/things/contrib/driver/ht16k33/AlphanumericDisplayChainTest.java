@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.text.TextUtils;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(TextUtils.class)
+public class AlphanumericDisplayChainTest {
+
+    @Mock
+    I2cDevice mLeft;
+
+    @Mock
+    I2cDevice mRight;
+
+    @Rule
+    public MockitoRule mMokitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private RamRecorder mLeftRam;
+    private RamRecorder mRightRam;
+    private AlphanumericDisplayChain mChain;
+
+    @Before
+    public void setup() throws IOException {
+        TextUtilsMock.mockStatic();
+        mLeftRam = RamRecorder.attach(mLeft);
+        mRightRam = RamRecorder.attach(mRight);
+        mChain = new AlphanumericDisplayChain(new Ht16k33(mLeft), new Ht16k33(mRight));
+    }
+
+    @Test
+    public void getLength() {
+        assertEquals(8, mChain.getLength());
+    }
+
+    @Test
+    public void display_splitsAcrossDevices() throws IOException {
+        mChain.display("ABCD.EFG");
+        mLeftRam.assertLastWrite(0, Font.DATA['A'], Font.DATA['B'], Font.DATA['C'],
+                Font.DATA['D'] | Font.DATA['.']);
+        mRightRam.assertLastWrite(0, Font.DATA['E'], Font.DATA['F'], Font.DATA['G'], 0);
+    }
+
+    @Test
+    public void display_skipsUnchangedDevices() throws IOException {
+        mChain.display("TEMP 21C");
+        mChain.display("TEMP 22C");
+        assertEquals(1, mLeftRam.getWriteCount());
+        assertEquals(2, mRightRam.getWriteCount());
+        mRightRam.assertLastWrite(2, Font.DATA['2']);
+        assertEquals(1, mChain.getAvoidedWriteCount());
+    }
+
+    @Test
+    public void clear() throws IOException {
+        mChain.display("ABCDEFGH");
+        mChain.clear();
+        mLeftRam.assertLastWrite(0, 0, 0, 0, 0);
+        mRightRam.assertLastWrite(0, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void setEnabled() throws IOException {
+        mChain.setEnabled(true);
+        Mockito.verify(mLeft).write(new byte[]{(byte) (0x20 | 1)}, 1);
+        Mockito.verify(mRight).write(new byte[]{(byte) (0x20 | 1)}, 1);
+    }
+
+    @Test
+    public void close() throws IOException {
+        mChain.close();
+        Mockito.verify(mLeft).close();
+        Mockito.verify(mRight).close();
+        mExpectedException.expect(IllegalStateException.class);
+        mChain.display("ABCD");
+    }
+}
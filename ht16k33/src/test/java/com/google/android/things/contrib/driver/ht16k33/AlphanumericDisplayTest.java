@@ -19,6 +19,7 @@ import android.text.TextUtils;
 
 import com.google.android.things.pio.I2cDevice;
 
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,6 +33,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(TextUtils.class)
 public class AlphanumericDisplayTest {
@@ -45,14 +48,18 @@ public class AlphanumericDisplayTest {
     @Rule
     public ExpectedException mExpectedException = ExpectedException.none();
 
+    private RamRecorder mRam;
+
+    @Before
+    public void setup() throws IOException {
+        mRam = RamRecorder.attach(mI2c);
+    }
+
     @Test
     public void clear() throws IOException {
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.clear();
-        Mockito.verify(mI2c).writeRegWord(0, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(2, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(4, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(6, (short) 0);
+        mRam.assertLastWrite(0, 0, 0, 0, 0);
     }
 
     @Test
@@ -68,10 +75,7 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(1234);
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['1']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) Font.DATA['2']);
-        Mockito.verify(mI2c).writeRegWord(4, (short) Font.DATA['3']);
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['4']);
+        mRam.assertLastWrite(0, Font.DATA['1'], Font.DATA['2'], Font.DATA['3'], Font.DATA['4']);
     }
 
     @Test
@@ -79,10 +83,7 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(7);
-        Mockito.verify(mI2c).writeRegWord(0, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(2, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(4, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['7']);
+        mRam.assertLastWrite(0, 0, 0, 0, Font.DATA['7']);
     }
 
     @Test
@@ -90,10 +91,7 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(8675309);
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['8']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) Font.DATA['6']);
-        Mockito.verify(mI2c).writeRegWord(4, (short) Font.DATA['7']);
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['5']);
+        mRam.assertLastWrite(0, Font.DATA['8'], Font.DATA['6'], Font.DATA['7'], Font.DATA['5']);
     }
 
     @Test
@@ -105,15 +103,61 @@ public class AlphanumericDisplayTest {
         display.display(0);
     }
 
+    @Test
+    public void displayInt_negative() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display(-42);
+        mRam.assertLastWrite(0, 0, Font.DATA['-'], Font.DATA['4'], Font.DATA['2']);
+    }
+
+    @Test
+    public void displayFixedPoint() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display(1234L, 2);
+        mRam.assertLastWrite(0, Font.DATA['1'], Font.DATA['2'] | Font.DATA['.'],
+                Font.DATA['3'], Font.DATA['4']);
+    }
+
+    @Test
+    public void displayFixedPoint_leadingZero() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display(-5L, 1);
+        mRam.assertLastWrite(0, 0, Font.DATA['-'], Font.DATA['0'] | Font.DATA['.'],
+                Font.DATA['5']);
+        display.display(5L, 2);
+        // only the two middle columns changed
+        mRam.assertLastWrite(1, Font.DATA['0'] | Font.DATA['.'], Font.DATA['0']);
+    }
+
+    @Test
+    public void displayFixedPoint_minValue() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display(Long.MIN_VALUE, 0);
+        mRam.assertLastWrite(0, Font.DATA['-'], Font.DATA['9'], Font.DATA['2'], Font.DATA['2']);
+    }
+
+    @Test
+    public void displayFixedPoint_throwsIfInvalidDecimals() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        mExpectedException.expect(IllegalArgumentException.class);
+        display.display(1L, -1);
+    }
+
+    @Test
+    public void displayFloat() throws IOException {
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display(12.36f, 1);
+        mRam.assertLastWrite(0, 0, Font.DATA['1'], Font.DATA['2'] | Font.DATA['.'],
+                Font.DATA['4']);
+    }
+
     @Test
     public void displayDouble() throws IOException {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(11.22);
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['1']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) (Font.DATA['1'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(4, (short) Font.DATA['2']);
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['2']);
+        mRam.assertLastWrite(0, Font.DATA['1'], Font.DATA['1'] | Font.DATA['.'],
+                Font.DATA['2'], Font.DATA['2']);
     }
 
     @Test
@@ -121,10 +165,7 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(0.5);
-        Mockito.verify(mI2c).writeRegWord(0, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(2, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(4, (short) (Font.DATA['0'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['5']);
+        mRam.assertLastWrite(0, 0, 0, Font.DATA['0'] | Font.DATA['.'], Font.DATA['5']);
     }
 
     @Test
@@ -132,10 +173,8 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display(86.75309);
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['8']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) (Font.DATA['6'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(4, (short) Font.DATA['7']);
-        Mockito.verify(mI2c).writeRegWord(6, (short) Font.DATA['5']);
+        mRam.assertLastWrite(0, Font.DATA['8'], Font.DATA['6'] | Font.DATA['.'],
+                Font.DATA['7'], Font.DATA['5']);
     }
 
     @Test
@@ -152,10 +191,8 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display("foo");
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['f']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) Font.DATA['o']);
-        Mockito.verify(mI2c).writeRegWord(4, (short) Font.DATA['o']);
-        Mockito.verify(mI2c).writeRegWord(6, (short) 0); // make sure it clears remaining columns
+        // make sure it clears remaining columns
+        mRam.assertLastWrite(0, Font.DATA['f'], Font.DATA['o'], Font.DATA['o'], 0);
     }
 
     @Test
@@ -163,10 +200,7 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display("..");
-        Mockito.verify(mI2c).writeRegWord(0, (short) Font.DATA['.']);
-        Mockito.verify(mI2c).writeRegWord(2, (short) Font.DATA['.']);
-        Mockito.verify(mI2c).writeRegWord(4, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(6, (short) 0);
+        mRam.assertLastWrite(0, Font.DATA['.'], Font.DATA['.'], 0, 0);
     }
 
     @Test
@@ -174,10 +208,8 @@ public class AlphanumericDisplayTest {
         TextUtilsMock.mockStatic();
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
         display.display("E.T.L.A.");
-        Mockito.verify(mI2c).writeRegWord(0, (short) (Font.DATA['E'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(2, (short) (Font.DATA['T'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(4, (short) (Font.DATA['L'] | Font.DATA['.']));
-        Mockito.verify(mI2c).writeRegWord(6, (short) (Font.DATA['A'] | Font.DATA['.']));
+        mRam.assertLastWrite(0, Font.DATA['E'] | Font.DATA['.'], Font.DATA['T'] | Font.DATA['.'],
+                Font.DATA['L'] | Font.DATA['.'], Font.DATA['A'] | Font.DATA['.']);
     }
 
     @Test
@@ -186,18 +218,34 @@ public class AlphanumericDisplayTest {
         AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
 
         display.display(null);
-        Mockito.verify(mI2c).writeRegWord(0, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(2, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(4, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(6, (short) 0);
-
-        Mockito.reset(mI2c);
+        mRam.assertLastWrite(0, 0, 0, 0, 0);
 
+        display.display("foo");
         display.display("");
-        Mockito.verify(mI2c).writeRegWord(0, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(2, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(4, (short) 0);
-        Mockito.verify(mI2c).writeRegWord(6, (short) 0);
+        // the last column was already blank
+        mRam.assertLastWrite(0, 0, 0, 0);
+    }
+
+    @Test
+    public void displayString_sendsChangedSpanOnly() throws IOException {
+        TextUtilsMock.mockStatic();
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display("1200");
+        display.display("1230");
+        mRam.assertLastWrite(2, Font.DATA['3']);
+        display.display("0231");
+        mRam.assertLastWrite(0, Font.DATA['0'], Font.DATA['2'], Font.DATA['3'], Font.DATA['1']);
+    }
+
+    @Test
+    public void displayString_skipsUnchangedContent() throws IOException {
+        TextUtilsMock.mockStatic();
+        AlphanumericDisplay display = new AlphanumericDisplay(mI2c);
+        display.display("foo");
+        display.display("foo");
+        display.display("foo");
+        assertEquals(1, mRam.getWriteCount());
+        assertEquals(2, display.getAvoidedWriteCount());
     }
 
     @Test
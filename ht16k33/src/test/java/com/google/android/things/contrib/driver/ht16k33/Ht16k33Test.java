@@ -16,6 +16,10 @@
 package com.google.android.things.contrib.driver.ht16k33;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 
 import com.google.android.things.pio.I2cDevice;
@@ -25,8 +29,10 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 
@@ -60,6 +66,92 @@ public class Ht16k33Test {
         driver.setEnabled(true);
     }
 
+    @Test
+    public void setBlinkRate() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.setEnabled(true);
+        driver.setBlinkRate(Ht16k33.BLINK_1HZ);
+        Mockito.verify(mI2c).write(new byte[]{(byte) (0x80 | 2 << 1 | 1)}, 1);
+        assertEquals(Ht16k33.BLINK_1HZ, driver.getBlinkRate());
+    }
+
+    @Test
+    public void setBlinkRate_skipsUnchangedRate() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.setEnabled(true);
+        driver.setBlinkRate(Ht16k33.BLINK_2HZ);
+        driver.setBlinkRate(Ht16k33.BLINK_2HZ);
+        Mockito.verify(mI2c, times(1)).write(new byte[]{(byte) (0x80 | 1 << 1 | 1)}, 1);
+    }
+
+    @Test
+    public void setBlinkRate_appliedWhenEnabled() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.setBlinkRate(Ht16k33.BLINK_0_5HZ);
+        Mockito.verifyZeroInteractions(mI2c);
+        driver.setEnabled(true);
+        Mockito.verify(mI2c).write(new byte[]{(byte) (0x80 | 3 << 1 | 1)}, 1);
+    }
+
+    @Test
+    public void setBlinkRate_invalidValue() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        mExpectedException.expect(IllegalArgumentException.class);
+        driver.setBlinkRate(4);
+    }
+
+    @Test
+    public void setBlinkRate_throwsIfClosed() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.close();
+        mExpectedException.expect(IllegalStateException.class);
+        driver.setBlinkRate(Ht16k33.BLINK_1HZ);
+    }
+
+    @Test
+    public void setKeyInterruptEnabled() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.setKeyInterruptEnabled(true);
+        Mockito.verify(mI2c).write(new byte[]{(byte) 0xA1}, 1);
+        driver.setKeyInterruptEnabled(false);
+        Mockito.verify(mI2c).write(new byte[]{(byte) 0xA0}, 1);
+    }
+
+    @Test
+    public void readKeys() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                byte[] ram = {0x01, (byte) 0xF0, 0x00, 0x00, (byte) 0x80, 0x10};
+                System.arraycopy(ram, 0, buffer, 0, ram.length);
+                return null;
+            }
+        }).when(mI2c).readRegBuffer(eq(0x40), any(byte[].class), eq(6));
+        short[] keys = new short[Ht16k33.KEY_ROW_COUNT];
+        assertEquals(true, driver.readKeys(keys));
+        // bits above K13 are ignored
+        assertEquals(0x1001, keys[0]);
+        assertEquals(0, keys[1]);
+        assertEquals(0x1080, keys[2]);
+        Mockito.verify(mI2c, times(1)).readRegBuffer(anyInt(), any(byte[].class), anyInt());
+    }
+
+    @Test
+    public void readKeys_noKeyPressed() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        assertEquals(false, driver.readKeys(new short[Ht16k33.KEY_ROW_COUNT]));
+    }
+
+    @Test
+    public void readKeys_throwsIfClosed() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.close();
+        mExpectedException.expect(IllegalStateException.class);
+        driver.readKeys(new short[Ht16k33.KEY_ROW_COUNT]);
+    }
+
     @Test
     public void setBrightnessInt() throws IOException {
         Ht16k33 driver = new Ht16k33(mI2c);
@@ -140,6 +232,84 @@ public class Ht16k33Test {
         driver.writeColumn(1, (short) 5);
     }
 
+    @Test
+    public void writeColumn_skipsUnchanged() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.writeColumn(3, (short) 5);
+        driver.writeColumn(3, (short) 5);
+        Mockito.verify(mI2c, times(1)).writeRegWord(6, (short) 5);
+        assertEquals(1, driver.getAvoidedWriteCount());
+
+        driver.invalidateShadow();
+        driver.writeColumn(3, (short) 5);
+        Mockito.verify(mI2c, times(2)).writeRegWord(6, (short) 5);
+    }
+
+    @Test
+    public void writeColumns() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        short[] data = {(short) 0x1234, (short) 0xABCD, 0};
+        driver.writeColumns(data, 2);
+        byte[] expected = new byte[Ht16k33.COLUMN_COUNT * 2];
+        expected[0] = 0x34;
+        expected[1] = 0x12;
+        expected[2] = (byte) 0xCD;
+        expected[3] = (byte) 0xAB;
+        Mockito.verify(mI2c).writeRegBuffer(0, expected, 4);
+    }
+
+    @Test
+    public void writeColumns_sendsChangedSpan() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        RamRecorder ram = RamRecorder.attach(mI2c);
+        short[] data = new short[Ht16k33.COLUMN_COUNT];
+        driver.writeColumns(data, data.length);
+        ram.assertLastWrite(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        data[2] = 0x0102;
+        data[5] = 0x0304;
+        driver.writeColumns(data, data.length);
+        ram.assertLastWrite(2, 0x0102, 0, 0, 0x0304);
+
+        driver.writeColumns(data, data.length);
+        assertEquals(2, ram.getWriteCount());
+        assertEquals(1, driver.getAvoidedWriteCount());
+    }
+
+    @Test
+    public void writeColumns_offset() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        RamRecorder ram = RamRecorder.attach(mI2c);
+        short[] data = {1, 2, 3, 4, 5};
+        driver.writeColumns(data, 3, 2);
+        ram.assertLastWrite(0, 4, 5);
+    }
+
+    @Test
+    public void writeColumns_empty() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        Mockito.reset(mI2c);
+        driver.writeColumns(new short[0], 0);
+        Mockito.verifyZeroInteractions(mI2c);
+        // nothing was going to be written, so no write was avoided
+        assertEquals(0, driver.getAvoidedWriteCount());
+    }
+
+    @Test
+    public void writeColumns_throwsIfTooMany() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        mExpectedException.expect(IllegalArgumentException.class);
+        driver.writeColumns(new short[Ht16k33.COLUMN_COUNT + 1], Ht16k33.COLUMN_COUNT + 1);
+    }
+
+    @Test
+    public void writeColumns_throwsIfClosed() throws IOException {
+        Ht16k33 driver = new Ht16k33(mI2c);
+        driver.close();
+        mExpectedException.expect(IllegalStateException.class);
+        driver.writeColumns(new short[1], 1);
+    }
+
     @Test
     public void writeSegments() throws IOException {
         Ht16k33 driver = new Ht16k33(mI2c);
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import android.os.Handler;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class KeyScannerTest {
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Mock
+    Gpio mGpio;
+
+    @Mock
+    Handler mHandler;
+
+    @Mock
+    KeyScanner.OnKeyEventListener mListener;
+
+    @Rule
+    public MockitoRule mMokitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private Ht16k33 mDevice;
+    private final int[] mKeyRam = new int[Ht16k33.KEY_ROW_COUNT];
+
+    @Before
+    public void setup() throws IOException {
+        mDevice = new Ht16k33(mI2c);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                for (int i = 0; i < mKeyRam.length; i++) {
+                    buffer[i * 2] = (byte) mKeyRam[i];
+                    buffer[i * 2 + 1] = (byte) (mKeyRam[i] >> 8);
+                }
+                return null;
+            }
+        }).when(mI2c).readRegBuffer(eq(0x40), any(byte[].class), eq(6));
+    }
+
+    private void setKeyRam(int... rows) {
+        System.arraycopy(rows, 0, mKeyRam, 0, rows.length);
+    }
+
+    @Test
+    public void constructor_enablesInterrupt() throws IOException {
+        new KeyScanner(mDevice, mGpio, mHandler);
+        Mockito.verify(mGpio).setEdgeTriggerType(Gpio.EDGE_FALLING);
+        Mockito.verify(mGpio).registerGpioCallback(eq(mHandler), any(GpioCallback.class));
+        Mockito.verify(mI2c).write(new byte[]{(byte) 0xA1}, 1);
+        // pending interrupt is cleared
+        Mockito.verify(mI2c).readRegBuffer(eq(0x40), any(byte[].class), eq(6));
+    }
+
+    @Test
+    public void interrupt_reportsChangedKeysOnly() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        scanner.setOnKeyEventListener(mListener);
+
+        setKeyRam(0b1, 0, 0b1000);
+        scanner.mInterruptCallback.onGpioEdge(mGpio);
+        Mockito.verify(mListener).onKeyEvent(scanner, 0, true);
+        Mockito.verify(mListener).onKeyEvent(scanner, 2 * Ht16k33.KEYS_PER_ROW + 3, true);
+        assertTrue(scanner.isPressed(0));
+
+        setKeyRam(0b1, 0, 0);
+        scanner.mInterruptCallback.onGpioEdge(mGpio);
+        Mockito.verify(mListener).onKeyEvent(scanner, 2 * Ht16k33.KEYS_PER_ROW + 3, false);
+        Mockito.verify(mListener, times(3)).onKeyEvent(any(KeyScanner.class), anyInt(),
+                anyBoolean());
+    }
+
+    @Test
+    public void interrupt_ignoresUnusedBits() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        scanner.setOnKeyEventListener(mListener);
+        setKeyRam(0xE000, 0, 0);
+        scanner.mInterruptCallback.onGpioEdge(mGpio);
+        Mockito.verifyZeroInteractions(mListener);
+    }
+
+    @Test
+    public void heldKeys_polledUntilReleased() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        scanner.setOnKeyEventListener(mListener);
+        Mockito.verify(mHandler, never()).postDelayed(any(Runnable.class), anyLong());
+
+        setKeyRam(0, 0b10, 0);
+        scanner.mInterruptCallback.onGpioEdge(mGpio);
+        Mockito.verify(mHandler).postDelayed(scanner.mPollRunnable,
+                KeyScanner.HELD_POLL_DELAY_MS);
+
+        // release raises no interrupt, the poll picks it up
+        setKeyRam(0, 0, 0);
+        scanner.mPollRunnable.run();
+        Mockito.verify(mListener).onKeyEvent(scanner, Ht16k33.KEYS_PER_ROW + 1, false);
+        assertFalse(scanner.isPressed(Ht16k33.KEYS_PER_ROW + 1));
+        Mockito.verify(mHandler, times(1)).postDelayed(any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void isPressed_invalidKey() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        mExpectedException.expect(IllegalArgumentException.class);
+        scanner.isPressed(Ht16k33.KEY_COUNT);
+    }
+
+    @Test
+    public void close() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        scanner.close();
+        Mockito.verify(mHandler).removeCallbacks(scanner.mPollRunnable);
+        Mockito.verify(mGpio).unregisterGpioCallback(scanner.mInterruptCallback);
+        Mockito.verify(mGpio).close();
+        Mockito.verify(mI2c, never()).close();
+        // ROW/INT pin back to row output
+        Mockito.verify(mI2c).write(new byte[]{(byte) 0xA0}, 1);
+    }
+
+    @Test
+    public void close_afterDeviceClosed() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        mDevice.close();
+        scanner.close(); // should not throw
+        Mockito.verify(mGpio).close();
+    }
+
+    @Test
+    public void close_safeToCallTwice() throws IOException {
+        KeyScanner scanner = new KeyScanner(mDevice, mGpio, mHandler);
+        scanner.close();
+        scanner.close(); // should not throw
+        Mockito.verify(mGpio, times(1)).close();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+
+public class KeypadInputDriverTest {
+
+    @Mock
+    KeyScanner mScanner;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    @Test
+    public void constructor_setsListener() {
+        new KeypadInputDriver(mScanner, new int[]{1, 2, 3});
+        Mockito.verify(mScanner).setOnKeyEventListener(any(KeyScanner.OnKeyEventListener.class));
+    }
+
+    @Test
+    public void constructor_tooManyKeycodes() {
+        mExpectedException.expect(IllegalArgumentException.class);
+        new KeypadInputDriver(mScanner, new int[Ht16k33.KEY_COUNT + 1]);
+    }
+
+    @Test
+    public void close() throws IOException {
+        KeypadInputDriver driver = new KeypadInputDriver(mScanner, new int[]{1});
+        driver.close();
+        Mockito.verify(mScanner).close();
+    }
+
+    @Test
+    public void close_safeToCallTwice() throws IOException {
+        KeypadInputDriver driver = new KeypadInputDriver(mScanner, new int[]{1});
+        driver.close();
+        driver.close(); // should not throw
+        Mockito.verify(mScanner, times(1)).close();
+    }
+
+    @Test
+    public void register_throwsIfClosed() throws IOException {
+        KeypadInputDriver driver = new KeypadInputDriver(mScanner, new int[]{1});
+        driver.close();
+        mExpectedException.expect(IllegalStateException.class);
+        driver.register();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+
+public class MarqueeTest {
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMokitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private RamRecorder mRam;
+    private Marquee mMarquee;
+
+    @Before
+    public void setup() throws IOException {
+        mRam = RamRecorder.attach(mI2c);
+        mMarquee = new Marquee(new AlphanumericDisplay(mI2c));
+    }
+
+    private static int[] codes(String s) {
+        int[] codes = new int[s.length()];
+        for (int i = 0; i < s.length(); i++) {
+            codes[i] = Font.DATA[s.charAt(i)];
+        }
+        return codes;
+    }
+
+    @Test
+    public void step_scrollsAndWraps() throws IOException {
+        mMarquee.setEndPause(0);
+        mMarquee.setMessage("ABCDEF");
+
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("ABCD"));
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("BCDE"));
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("CDEF"));
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("ABCD"));
+        // one RAM write per step
+        assertEquals(4, mRam.getWriteCount());
+    }
+
+    @Test
+    public void step_pausesAtEnds() throws IOException {
+        mMarquee.setStepDelay(100);
+        mMarquee.setEndPause(200);
+        mMarquee.setMessage("ABCDE");
+
+        mMarquee.step();
+        mMarquee.step();
+        mMarquee.step();
+        // the first window is held for the pause, without writing to the bus again
+        assertEquals(1, mRam.getWriteCount());
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("BCDE"));
+        mMarquee.step();
+        mMarquee.step();
+        mMarquee.step();
+        mRam.assertLastWrite(0, codes("ABCD"));
+        assertEquals(3, mRam.getWriteCount());
+    }
+
+    @Test
+    public void step_mergesDots() throws IOException {
+        mMarquee.setEndPause(0);
+        mMarquee.setMessage("1.2.3.4.5");
+        mMarquee.step();
+        mMarquee.step();
+        mRam.assertLastWrite(0, Font.DATA['2'] | Font.DATA['.'], Font.DATA['3'] | Font.DATA['.'],
+                Font.DATA['4'] | Font.DATA['.'], Font.DATA['5']);
+    }
+
+    @Test
+    public void step_shortMessageDoesNotScroll() throws IOException {
+        mMarquee.setEndPause(0);
+        mMarquee.setMessage("AB");
+        mMarquee.step();
+        mMarquee.step();
+        mRam.assertLastWrite(0, Font.DATA['A'], Font.DATA['B'], 0, 0);
+        assertEquals(1, mRam.getWriteCount());
+    }
+
+    @Test
+    public void start() throws IOException {
+        mMarquee.setStepDelay(10);
+        mMarquee.setMessage("ABCDEFGH");
+        mMarquee.start();
+        assertTrue(mMarquee.isRunning());
+        Mockito.verify(mI2c, Mockito.timeout(1000).atLeastOnce())
+                .writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+        mMarquee.stop();
+        assertFalse(mMarquee.isRunning());
+        mMarquee.close();
+    }
+
+    @Test
+    public void stop_noWritesAfterReturn() throws Exception {
+        mMarquee.setStepDelay(1);
+        mMarquee.setMessage("ABCDEFGH");
+        mMarquee.start();
+        Mockito.verify(mI2c, Mockito.timeout(1000).atLeastOnce())
+                .writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+        mMarquee.stop();
+        Mockito.reset(mI2c);
+        Thread.sleep(50);
+        Mockito.verifyZeroInteractions(mI2c);
+        mMarquee.close();
+    }
+
+    @Test
+    public void start_throwsIfClosed() {
+        mMarquee.close();
+        mExpectedException.expect(IllegalStateException.class);
+        mMarquee.start();
+    }
+
+    @Test
+    public void setStepDelay_throwsIfNotPositive() {
+        mExpectedException.expect(IllegalArgumentException.class);
+        mMarquee.setStepDelay(0);
+    }
+}
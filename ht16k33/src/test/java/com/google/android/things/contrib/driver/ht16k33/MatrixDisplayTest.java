@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MatrixDisplayTest {
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMokitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private RamRecorder mRam;
+
+    @Before
+    public void setup() throws IOException {
+        mRam = RamRecorder.attach(mI2c);
+    }
+
+    @Test
+    public void constructor_invalidLayout() {
+        mExpectedException.expect(IllegalArgumentException.class);
+        new MatrixDisplay(mI2c, 2);
+    }
+
+    @Test
+    public void flush_writesAllColumnsInOneTransaction() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.setPixel(0, 0, true);
+        matrix.setPixel(1, 7, true);
+        matrix.flush();
+        assertEquals(1, mRam.getWriteCount());
+        mRam.assertLastWrite(0, 0x80, 0, 0, 0, 0, 0, 0, 0x01);
+    }
+
+    @Test
+    public void flush_skipsUnchangedFrame() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.fill(true);
+        matrix.flush();
+        matrix.flush();
+        assertEquals(1, mRam.getWriteCount());
+        assertEquals(1, matrix.getAvoidedWriteCount());
+    }
+
+    @Test
+    public void flush_sendsChangedRowsOnly() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.flush();
+        matrix.setPixel(2, 3, true);
+        matrix.setPixel(2, 4, true);
+        matrix.flush();
+        mRam.assertLastWrite(3, 0x02, 0x02);
+    }
+
+    @Test
+    public void setPixel_16x8() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_16X8);
+        assertEquals(16, matrix.getWidth());
+        assertEquals(8, matrix.getHeight());
+        matrix.setPixel(0, 0, true);
+        matrix.setPixel(15, 7, true);
+        matrix.flush();
+        mRam.assertLastWrite(0, 0x0001, 0, 0, 0, 0, 0, 0, 0x8000);
+    }
+
+    @Test
+    public void setPixel_clearsPixel() {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.fill(true);
+        matrix.setPixel(4, 4, false);
+        assertFalse(matrix.getPixel(4, 4));
+        assertTrue(matrix.getPixel(3, 4));
+    }
+
+    @Test
+    public void setPixel_ignoresOutOfBounds() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.setPixel(-1, 0, true);
+        matrix.setPixel(8, 0, true);
+        matrix.setPixel(0, 8, true);
+        assertFalse(matrix.getPixel(8, 0));
+        matrix.flush();
+        mRam.assertLastWrite(0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void setRotation_180() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.setRotation(MatrixDisplay.ROTATION_180);
+        matrix.setPixel(0, 0, true);
+        matrix.flush();
+        // panel pixel (7, 7)
+        mRam.assertLastWrite(0, 0, 0, 0, 0, 0, 0, 0, 0x40);
+    }
+
+    @Test
+    public void setRotation_90SwapsDimensions() throws IOException {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_16X8);
+        matrix.setRotation(MatrixDisplay.ROTATION_90);
+        assertEquals(8, matrix.getWidth());
+        assertEquals(16, matrix.getHeight());
+        matrix.setPixel(0, 0, true);
+        matrix.setPixel(7, 15, true);
+        matrix.flush();
+        // panel pixels (0, 7) and (15, 0)
+        mRam.assertLastWrite(0, 0x8000, 0, 0, 0, 0, 0, 0, 0x0001);
+    }
+
+    @Test
+    public void setRotation_invalidValue() {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        mExpectedException.expect(IllegalArgumentException.class);
+        matrix.setRotation(4);
+    }
+
+    @Test
+    public void blit_clipsToDrawingArea() {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        int[] image = {0b101, 0b010, 0b101};
+        matrix.blit(image, 3, 6, -1);
+        assertFalse(matrix.getPixel(6, 0));
+        assertTrue(matrix.getPixel(7, 0));
+        assertTrue(matrix.getPixel(6, 1));
+        assertFalse(matrix.getPixel(7, 1));
+        assertFalse(matrix.getPixel(6, 2));
+    }
+
+    @Test
+    public void blit_overwritesUnderlyingPixels() {
+        MatrixDisplay matrix = new MatrixDisplay(mI2c, MatrixDisplay.LAYOUT_8X8);
+        matrix.fill(true);
+        matrix.blit(new int[] {0b10}, 2, 0, 0);
+        assertTrue(matrix.getPixel(0, 0));
+        assertFalse(matrix.getPixel(1, 0));
+        assertTrue(matrix.getPixel(2, 0));
+    }
+}
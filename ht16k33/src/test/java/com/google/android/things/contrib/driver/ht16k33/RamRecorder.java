@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.ht16k33;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+
+/**
+ * Records the display RAM writes sent to a mock {@link I2cDevice}. The drivers reuse their
+ * transfer buffers, so the written bytes are copied when the call happens.
+ */
+public class RamRecorder implements Answer<Void> {
+
+    private final List<Integer> mAddresses = new ArrayList<>();
+    private final List<byte[]> mWrites = new ArrayList<>();
+
+    public static RamRecorder attach(I2cDevice device) throws IOException {
+        RamRecorder recorder = new RamRecorder();
+        Mockito.doAnswer(recorder).when(device)
+                .writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+        return recorder;
+    }
+
+    @Override
+    public Void answer(InvocationOnMock invocation) {
+        byte[] buffer = (byte[]) invocation.getArguments()[1];
+        int length = (Integer) invocation.getArguments()[2];
+        mAddresses.add((Integer) invocation.getArguments()[0]);
+        mWrites.add(Arrays.copyOf(buffer, length));
+        return null;
+    }
+
+    public int getWriteCount() {
+        return mWrites.size();
+    }
+
+    public void clear() {
+        mAddresses.clear();
+        mWrites.clear();
+    }
+
+    /**
+     * Assert that the last transaction wrote the given column values, starting at startColumn.
+     */
+    public void assertLastWrite(int startColumn, int... columns) {
+        byte[] expected = new byte[columns.length * 2];
+        for (int i = 0; i < columns.length; i++) {
+            expected[i * 2] = (byte) columns[i];
+            expected[i * 2 + 1] = (byte) (columns[i] >> 8);
+        }
+        int last = mWrites.size() - 1;
+        assertEquals("no RAM write recorded", true, last >= 0);
+        assertEquals(startColumn * 2, (int) mAddresses.get(last));
+        assertArrayEquals(expected, mWrites.get(last));
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.android.things.pio.I2cDevice;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Driver for the HTS221 relative humidity and temperature sensor of the Sense HAT.
+ * <p>
+ * Calibration coefficients are read once when the driver is opened, and each sample is read
+ * together with the data-ready flags in a single auto-incrementing burst read.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class Hts221 implements AutoCloseable {
+
+    /**
+     * I2C address of the sensor on the Sense HAT.
+     */
+    public static final int I2C_ADDRESS = 0x5F;
+
+    // Sensor constants from the datasheet.
+    // http://www.st.com/resource/en/datasheet/hts221.pdf
+    /**
+     * Minimum temperature in Celsius the sensor can measure.
+     */
+    public static final float MIN_TEMP_C = -40f;
+    /**
+     * Maximum temperature in Celsius the sensor can measure.
+     */
+    public static final float MAX_TEMP_C = 120f;
+    /**
+     * Minimum humidity in RH the sensor can measure.
+     */
+    public static final float MIN_HUM_RH = 0f;
+    /**
+     * Maximum humidity in RH the sensor can measure.
+     */
+    public static final float MAX_HUM_RH = 100f;
+    /**
+     * Maximum power consumption in micro-amperes.
+     */
+    public static final float MAX_POWER_CONSUMPTION_UA = 2f;
+    /**
+     * Maximum frequency of the measurements.
+     */
+    public static final float MAX_FREQ_HZ = 12.5f;
+    /**
+     * Minimum frequency of the measurements.
+     */
+    public static final float MIN_FREQ_HZ = 1f;
+
+    /**
+     * Power mode.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({MODE_POWER_DOWN, MODE_CONTINUOUS})
+    public @interface Mode {}
+    public static final int MODE_POWER_DOWN = 0;
+    public static final int MODE_CONTINUOUS = 1;
+
+    /**
+     * Output data rate in continuous mode.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ODR_1_HZ, ODR_7_HZ, ODR_12_5_HZ})
+    public @interface OutputDataRate {}
+    public static final int ODR_1_HZ = 0b01;
+    public static final int ODR_7_HZ = 0b10;
+    public static final int ODR_12_5_HZ = 0b11;
+
+    // Registers
+    private static final int HTS221_REG_WHO_AM_I = 0x0F;
+    @VisibleForTesting
+    static final int HTS221_REG_CTRL1 = 0x20;
+    private static final int HTS221_REG_STATUS = 0x27;
+    private static final int HTS221_REG_CALIB = 0x30;
+
+    // Setting the MSB of the register address enables address auto-increment.
+    @VisibleForTesting
+    static final int HTS221_AUTO_INCREMENT = 0x80;
+
+    private static final int HTS221_WHO_AM_I = 0xBC;
+    private static final int HTS221_CTRL1_POWER_ON = 1 << 7;
+    private static final int HTS221_CTRL1_BDU = 1 << 2;
+    private static final int HTS221_CTRL1_ODR_MASK = 0b11;
+    private static final int HTS221_STATUS_H_DA = 1 << 1;
+    private static final int HTS221_STATUS_T_DA = 1;
+
+    private static final int CALIB_SIZE = 16;
+    // STATUS_REG, HUMIDITY_OUT_L/H, TEMP_OUT_L/H
+    private static final int SAMPLE_SIZE = 5;
+
+    private I2cDevice mDevice;
+    private final byte[] mBuffer = new byte[CALIB_SIZE]; // for reading sensor values
+    private int mCtrl1;
+
+    // Linear interpolation points computed from the calibration registers
+    private float mH0Rh;
+    private float mHumiditySlope;
+    private int mH0Out;
+    private float mT0DegC;
+    private float mTemperatureSlope;
+    private int mT0Out;
+
+    private boolean mHasSample;
+    private float mHumidity;
+    private float mTemperature;
+
+    /**
+     * Create a new HTS221 sensor driver connected on the given bus.
+     * @param bus I2C bus the sensor is connected to.
+     * @throws IOException
+     */
+    public Hts221(String bus) throws IOException {
+        PeripheralManager pioService = PeripheralManager.getInstance();
+        I2cDevice device = pioService.openI2cDevice(bus, I2C_ADDRESS);
+        try {
+            connect(device);
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new HTS221 sensor driver connected to the given I2C device.
+     * @param device I2C device of the sensor.
+     * @throws IOException
+     */
+    @VisibleForTesting
+    /*package*/ Hts221(I2cDevice device) throws IOException {
+        connect(device);
+    }
+
+    private void connect(I2cDevice device) throws IOException {
+        mDevice = device;
+
+        int whoAmI = mDevice.readRegByte(HTS221_REG_WHO_AM_I) & 0xff;
+        if (whoAmI != HTS221_WHO_AM_I) {
+            throw new IOException("Unexpected HTS221 device id " + whoAmI);
+        }
+
+        // Read all calibration registers in a single transaction
+        mDevice.readRegBuffer(HTS221_REG_CALIB | HTS221_AUTO_INCREMENT, mBuffer, CALIB_SIZE);
+        int h0Rhx2 = mBuffer[0] & 0xff;
+        int h1Rhx2 = mBuffer[1] & 0xff;
+        int t0t1Msb = mBuffer[5] & 0xff;
+        int t0DegCx8 = ((t0t1Msb & 0b0011) << 8) | (mBuffer[2] & 0xff);
+        int t1DegCx8 = ((t0t1Msb & 0b1100) << 6) | (mBuffer[3] & 0xff);
+        int h0T0Out = readShort(mBuffer, 6);
+        int h1T0Out = readShort(mBuffer, 10);
+        int t0Out = readShort(mBuffer, 12);
+        int t1Out = readShort(mBuffer, 14);
+
+        mH0Rh = h0Rhx2 / 2f;
+        mH0Out = h0T0Out;
+        mHumiditySlope = (h1Rhx2 - h0Rhx2) / 2f / (h1T0Out - h0T0Out);
+        mT0DegC = t0DegCx8 / 8f;
+        mT0Out = t0Out;
+        mTemperatureSlope = (t1DegCx8 - t0DegCx8) / 8f / (t1Out - t0Out);
+
+        // Power down with block data update, so output registers always hold a complete sample
+        mCtrl1 = HTS221_CTRL1_BDU | ODR_1_HZ;
+        mDevice.writeRegByte(HTS221_REG_CTRL1, (byte) mCtrl1);
+    }
+
+    /**
+     * Close the driver and the underlying device.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Set the power mode of the sensor.
+     * @param mode power mode.
+     * @throws IOException
+     */
+    public void setMode(@Mode int mode) throws IOException {
+        if (mode == MODE_POWER_DOWN) {
+            writeCtrl1(mCtrl1 & ~HTS221_CTRL1_POWER_ON);
+        } else {
+            writeCtrl1(mCtrl1 | HTS221_CTRL1_POWER_ON);
+        }
+    }
+
+    /**
+     * @return the current power mode of the sensor.
+     */
+    public @Mode int getMode() {
+        return (mCtrl1 & HTS221_CTRL1_POWER_ON) != 0 ? MODE_CONTINUOUS : MODE_POWER_DOWN;
+    }
+
+    /**
+     * Set the rate of measurements in continuous mode.
+     * @param rate output data rate.
+     * @throws IOException
+     */
+    public void setOutputDataRate(@OutputDataRate int rate) throws IOException {
+        writeCtrl1((mCtrl1 & ~HTS221_CTRL1_ODR_MASK) | (rate & HTS221_CTRL1_ODR_MASK));
+    }
+
+    private void writeCtrl1(int value) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        if (value != mCtrl1) {
+            mDevice.writeRegByte(HTS221_REG_CTRL1, (byte) value);
+            mCtrl1 = value;
+        }
+    }
+
+    /**
+     * Read the current relative humidity.
+     *
+     * @return the current relative humidity in RH percentage (100f means totally saturated air)
+     * @throws IOException
+     */
+    public float readHumidity() throws IOException, IllegalStateException {
+        readSample();
+        return mHumidity;
+    }
+
+    /**
+     * Read the current temperature.
+     *
+     * @return the current temperature in degrees Celsius
+     * @throws IOException
+     */
+    public float readTemperature() throws IOException, IllegalStateException {
+        readSample();
+        return mTemperature;
+    }
+
+    /**
+     * Read the current relative humidity and temperature in a single transaction.
+     *
+     * @return a 2-element array. The first element is relative humidity in RH percentage, and the
+     * second is temperature in degrees Celsius.
+     * @throws IOException
+     */
+    public float[] readHumidityAndTemperature() throws IOException, IllegalStateException {
+        readSample();
+        return new float[]{mHumidity, mTemperature};
+    }
+
+    /**
+     * Read the status and output registers in one burst. The compensated values are only
+     * recomputed when the sensor flags new data.
+     * @throws IOException
+     */
+    private void readSample() throws IOException, IllegalStateException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        if ((mCtrl1 & HTS221_CTRL1_POWER_ON) == 0) {
+            throw new IllegalStateException("sensor is powered down");
+        }
+        synchronized (mBuffer) {
+            mDevice.readRegBuffer(HTS221_REG_STATUS | HTS221_AUTO_INCREMENT, mBuffer,
+                    SAMPLE_SIZE);
+            int status = mBuffer[0];
+            if (mHasSample && (status & (HTS221_STATUS_H_DA | HTS221_STATUS_T_DA)) == 0) {
+                // No new data since the last read
+                return;
+            }
+            mHumidity = compensateHumidity(readShort(mBuffer, 1));
+            mTemperature = compensateTemperature(readShort(mBuffer, 3));
+            mHasSample = true;
+        }
+    }
+
+    @VisibleForTesting
+    float compensateHumidity(int rawHumidity) {
+        float humidity = mH0Rh + (rawHumidity - mH0Out) * mHumiditySlope;
+        if (humidity > MAX_HUM_RH) {
+            return MAX_HUM_RH;
+        } else if (humidity < MIN_HUM_RH) {
+            return MIN_HUM_RH;
+        }
+        return humidity;
+    }
+
+    @VisibleForTesting
+    float compensateTemperature(int rawTemperature) {
+        return mT0DegC + (rawTemperature - mT0Out) * mTemperatureSlope;
+    }
+
+    /**
+     * Read a signed little-endian 16 bit value.
+     */
+    private static int readShort(byte[] buffer, int offset) {
+        return (short) ((buffer[offset + 1] << 8) | (buffer[offset] & 0xff));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.os.Handler;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.I2cDevice;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.IOException;
+
+/**
+ * Driver for the Sense HAT 5-way joystick. The joystick register is only read when the HAT
+ * signals a state change on its interrupt pin, so no bus time is spent polling.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class Joystick implements AutoCloseable {
+    private static final String TAG = Joystick.class.getSimpleName();
+
+    private static final int REGISTER_KEYS = 0xF2;
+
+    /** Joystick pushed down. */
+    public static final int KEY_DOWN = 1;
+    /** Joystick pushed right. */
+    public static final int KEY_RIGHT = 1 << 1;
+    /** Joystick pushed up. */
+    public static final int KEY_UP = 1 << 2;
+    /** Joystick pressed in the middle. */
+    public static final int KEY_ENTER = 1 << 3;
+    /** Joystick pushed left. */
+    public static final int KEY_LEFT = 1 << 4;
+
+    private static final int KEY_MASK = KEY_DOWN | KEY_RIGHT | KEY_UP | KEY_ENTER | KEY_LEFT;
+
+    /**
+     * Interface definition for a callback to be invoked when a joystick event occurs.
+     */
+    public interface OnJoystickEventListener {
+        /**
+         * Called when a joystick event occurs
+         *
+         * @param joystick the Joystick for which the event occurred
+         * @param key the key that changed, one of the {@code KEY_*} constants
+         * @param pressed true if the key is now pressed
+         */
+        void onJoystickEvent(Joystick joystick, int key, boolean pressed);
+    }
+
+    private I2cDevice mDevice;
+    private Gpio mInterruptGpio;
+    private OnJoystickEventListener mListener;
+    private int mKeyState;
+
+    /**
+     * Create a new joystick driver connected on the given I2C bus and interrupt pin.
+     * @param bus I2C bus the Sense HAT is connected to.
+     * @param interruptPin GPIO pin connected to the Sense HAT joystick interrupt.
+     * @throws IOException
+     */
+    public Joystick(String bus, String interruptPin) throws IOException {
+        this(bus, interruptPin, null);
+    }
+
+    /**
+     * Create a new joystick driver connected on the given I2C bus and interrupt pin.
+     * @param bus I2C bus the Sense HAT is connected to.
+     * @param interruptPin GPIO pin connected to the Sense HAT joystick interrupt.
+     * @param handler optional {@link Handler} for interrupt and callback events.
+     * @throws IOException
+     */
+    public Joystick(String bus, String interruptPin, Handler handler) throws IOException {
+        PeripheralManager pioService = PeripheralManager.getInstance();
+        try {
+            mDevice = pioService.openI2cDevice(bus, SenseHat.I2C_ADDRESS);
+            mInterruptGpio = pioService.openGpio(interruptPin);
+            connect(handler);
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Constructor invoked from unit tests.
+     */
+    @VisibleForTesting
+    /*package*/ Joystick(I2cDevice device, Gpio interruptGpio, Handler handler)
+            throws IOException {
+        mDevice = device;
+        mInterruptGpio = interruptGpio;
+        connect(handler);
+    }
+
+    private void connect(Handler handler) throws IOException {
+        mKeyState = readKeys();
+        mInterruptGpio.setDirection(Gpio.DIRECTION_IN);
+        mInterruptGpio.setEdgeTriggerType(Gpio.EDGE_RISING);
+        mInterruptGpio.registerGpioCallback(handler, mInterruptCallback);
+    }
+
+    /**
+     * Set the listener to be called when a joystick event occurred.
+     *
+     * @param listener joystick event listener to be invoked.
+     */
+    public void setOnJoystickEventListener(OnJoystickEventListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Read the current state of the joystick.
+     * @return bitmask of the {@code KEY_*} constants currently pressed.
+     * @throws IOException
+     */
+    public int readKeys() throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        return mDevice.readRegByte(REGISTER_KEYS) & KEY_MASK;
+    }
+
+    /**
+     * Close the driver and the underlying devices.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        mListener = null;
+        if (mInterruptGpio != null) {
+            mInterruptGpio.unregisterGpioCallback(mInterruptCallback);
+            try {
+                mInterruptGpio.close();
+            } finally {
+                mInterruptGpio = null;
+            }
+        }
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Local callback reading the joystick state when the HAT raises an interrupt.
+     */
+    private GpioCallback mInterruptCallback = new GpioCallback() {
+        @Override
+        public boolean onGpioEdge(Gpio gpio) {
+            try {
+                handleInterrupt();
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading joystick state", e);
+            }
+            return true;
+        }
+
+        @Override
+        public void onGpioError(Gpio gpio, int error) {
+            Log.w(TAG, "Error handling GPIO interrupt: " + error);
+        }
+    };
+
+    /**
+     * Read the joystick register and emit an event for each key that changed state.
+     */
+    @VisibleForTesting
+    /*package*/ void handleInterrupt() throws IOException {
+        int state = readKeys();
+        int changed = state ^ mKeyState;
+        mKeyState = state;
+        OnJoystickEventListener listener = mListener;
+        if (changed == 0 || listener == null) {
+            return;
+        }
+        for (int key = KEY_DOWN; key <= KEY_LEFT; key <<= 1) {
+            if ((changed & key) != 0) {
+                listener.onJoystickEvent(this, key, (state & key) != 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.support.annotation.VisibleForTesting;
+import android.view.KeyEvent;
+
+import com.google.android.things.userdriver.UserDriverManager;
+import com.google.android.things.userdriver.input.InputDriver;
+import com.google.android.things.userdriver.input.InputDriverEvent;
+
+import java.io.IOException;
+
+/**
+ * Input driver emitting D-pad {@link KeyEvent}s for the Sense HAT joystick.
+ */
+public class JoystickInputDriver implements AutoCloseable {
+    private static final String DRIVER_NAME = "SenseHatJoystick";
+
+    private Joystick mDevice;
+    private InputDriver mDriver;
+
+    /**
+     * Create a new framework input driver for the Sense HAT joystick.
+     * The driver emits {@link KeyEvent} with D-pad keycodes when registered.
+     * @param bus I2C bus the Sense HAT is connected to.
+     * @param interruptPin GPIO pin connected to the Sense HAT joystick interrupt.
+     * @throws IOException
+     * @see #register
+     */
+    public JoystickInputDriver(String bus, String interruptPin) throws IOException {
+        mDevice = new Joystick(bus, interruptPin);
+    }
+
+    @VisibleForTesting
+    /*package*/ JoystickInputDriver(Joystick joystick) {
+        mDevice = joystick;
+    }
+
+    /**
+     * Close the driver and the underlying device.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        unregister();
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Register the driver in the framework.
+     */
+    public void register() {
+        if (mDevice == null) {
+            throw new IllegalStateException("cannot register closed driver");
+        }
+        if (mDriver == null) {
+            mDriver = build(mDevice);
+            UserDriverManager.getInstance().registerInputDriver(mDriver);
+        }
+    }
+
+    /**
+     * Unregister the driver from the framework.
+     */
+    public void unregister() {
+        if (mDriver != null) {
+            UserDriverManager.getInstance().unregisterInputDriver(mDriver);
+            mDriver = null;
+        }
+    }
+
+    /**
+     * Map a joystick key to the keycode emitted in the framework.
+     */
+    /*package*/ static int getKeyCode(int key) {
+        switch (key) {
+            case Joystick.KEY_UP:
+                return KeyEvent.KEYCODE_DPAD_UP;
+            case Joystick.KEY_DOWN:
+                return KeyEvent.KEYCODE_DPAD_DOWN;
+            case Joystick.KEY_LEFT:
+                return KeyEvent.KEYCODE_DPAD_LEFT;
+            case Joystick.KEY_RIGHT:
+                return KeyEvent.KEYCODE_DPAD_RIGHT;
+            case Joystick.KEY_ENTER:
+                return KeyEvent.KEYCODE_DPAD_CENTER;
+            default:
+                return KeyEvent.KEYCODE_UNKNOWN;
+        }
+    }
+
+    static InputDriver build(Joystick joystick) {
+        final InputDriver inputDriver = new InputDriver.Builder()
+                .setName(DRIVER_NAME)
+                .setSupportedKeys(new int[]{
+                        KeyEvent.KEYCODE_DPAD_UP,
+                        KeyEvent.KEYCODE_DPAD_DOWN,
+                        KeyEvent.KEYCODE_DPAD_LEFT,
+                        KeyEvent.KEYCODE_DPAD_RIGHT,
+                        KeyEvent.KEYCODE_DPAD_CENTER})
+                .build();
+        final InputDriverEvent inputEvent = new InputDriverEvent();
+        joystick.setOnJoystickEventListener(new Joystick.OnJoystickEventListener() {
+            @Override
+            public void onJoystickEvent(Joystick j, int key, boolean pressed) {
+                inputEvent.clear();
+                inputEvent.setKeyPressed(getKeyCode(key), pressed);
+                inputDriver.emit(inputEvent);
+            }
+        });
+        return inputDriver;
+    }
+}
@@ -19,12 +19,16 @@ package com.google.android.things.contrib.driver.sensehat;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 
 import com.google.android.things.pio.I2cDevice;
 import com.google.android.things.pio.PeripheralManager;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  *  Driver for the SenseHat LED matrix.
@@ -32,11 +36,40 @@ import java.io.IOException;
 public class LedMatrix implements AutoCloseable {
     public static final int WIDTH = 8;
     public static final int HEIGHT = 8;
-    private static final int BUFFER_SIZE = WIDTH * HEIGHT * 3 + 1;
+    /* package */ static final int FRAME_SIZE = WIDTH * HEIGHT * 3;
+    private static final int BUFFER_SIZE = FRAME_SIZE + 1;
     private byte[] mBuffer = new byte[BUFFER_SIZE];
 
+    // Changed spans separated by fewer unchanged bytes than this are merged into a single write,
+    // since resending a few bytes is cheaper than the overhead of another I2C transaction.
+    private static final int MERGE_GAP_BYTES = 4;
+
+    // Copy of the framebuffer as last written to the device, used to only send changed spans.
+    private final byte[] mShadow = new byte[BUFFER_SIZE];
+    private boolean mShadowValid;
+    private final byte[] mSpanBuffer = new byte[FRAME_SIZE];
+
+    // Lookup table from (alpha << 8 | channel) to the premultiplied 5-bit channel value.
+    // The Sense HAT firmware applies its own gamma curve to these 5-bit values.
+    private static final byte[] COLOR_LUT = new byte[256 * 256];
+    static {
+        for (int a = 0; a < 256; a++) {
+            float alpha = a / 255.f;
+            for (int c = 0; c < 256; c++) {
+                COLOR_LUT[(a << 8) | c] = (byte) ((int) (c * alpha) >> 3);
+            }
+        }
+    }
+
     private I2cDevice mDevice;
 
+    // Reusable pixel array and drawing surface.
+    private final int[] mPixels = new int[WIDTH * HEIGHT];
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Paint mScalePaint;
+    private Rect mDestRect;
+
     /**
      * Create a new LED matrix driver connected on the given I2C bus.
      * @param bus I2C bus the sensor is connected to.
@@ -62,6 +95,7 @@ public class LedMatrix implements AutoCloseable {
                 mDevice.close();
             } finally {
                 mDevice = null;
+                mShadowValid = false;
             }
         }
     }
@@ -72,19 +106,8 @@ public class LedMatrix implements AutoCloseable {
      * @throws IOException
      */
     public void draw(int color) throws IOException {
-        mBuffer[0] = 0;
-        float a = Color.alpha(color) / 255.f;
-        byte r = (byte)((int)(Color.red(color)*a)>>3);
-        byte g = (byte)((int)(Color.green(color)*a)>>3);
-        byte b = (byte)((int)(Color.blue(color)*a)>>3);
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                mBuffer[1+x+WIDTH*0+3*WIDTH*y] = r;
-                mBuffer[1+x+WIDTH*1+3*WIDTH*y] = g;
-                mBuffer[1+x+WIDTH*2+3*WIDTH*y] = b;
-            }
-        }
-        mDevice.write(mBuffer, mBuffer.length);
+        Arrays.fill(mPixels, color);
+        drawPixels(mPixels);
     }
 
     /**
@@ -93,31 +116,133 @@ public class LedMatrix implements AutoCloseable {
      * @throws IOException
      */
     public void draw(Drawable drawable) throws IOException {
-        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT,
-                Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
+        Canvas canvas = getCanvas();
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
         drawable.setBounds(0, 0, WIDTH, HEIGHT);
         drawable.draw(canvas);
-        draw(bitmap);
+        drawPixels(mBitmap);
     }
 
     /**
-     * Draw the given bitmap to the LED matrix.
+     * Draw the given bitmap to the LED matrix. Bitmaps that are not {@link #WIDTH} x
+     * {@link #HEIGHT} pixels are scaled to fit the matrix.
      * @param bitmap Bitmap to draw
      * @throws IOException
      */
     public void draw(Bitmap bitmap) throws IOException {
-        Bitmap dest = Bitmap.createScaledBitmap(bitmap, 8, 8, true);
-        mBuffer[0] = 0;
+        if (bitmap.getWidth() == WIDTH && bitmap.getHeight() == HEIGHT) {
+            drawPixels(bitmap);
+            return;
+        }
+        Canvas canvas = getCanvas();
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        canvas.drawBitmap(bitmap, null, mDestRect, mScalePaint);
+        drawPixels(mBitmap);
+    }
+
+    /**
+     * Lazily create the drawing surface reused across frames.
+     */
+    private Canvas getCanvas() {
+        if (mCanvas == null) {
+            mBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+            mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            mDestRect = new Rect(0, 0, WIDTH, HEIGHT);
+        }
+        return mCanvas;
+    }
+
+    /**
+     * Read the pixels of a {@link #WIDTH} x {@link #HEIGHT} bitmap in bulk and write them to the
+     * LED matrix.
+     */
+    private void drawPixels(Bitmap bitmap) throws IOException {
+        bitmap.getPixels(mPixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        drawPixels(mPixels);
+    }
+
+    /**
+     * Write a framebuffer pre-encoded with {@link #encode(int[], byte[], int)} to the LED matrix.
+     * @param frames buffer holding the encoded framebuffer.
+     * @param offset index of the first framebuffer byte in {@code frames}.
+     */
+    /* package */ void drawFrame(byte[] frames, int offset) throws IOException {
+        System.arraycopy(frames, offset, mBuffer, 1, FRAME_SIZE);
+        flush();
+    }
+
+    /**
+     * Write {@link #WIDTH} x {@link #HEIGHT} ARGB pixels to the LED matrix.
+     */
+    /* package */ void drawPixels(int[] pixels) throws IOException {
+        encode(pixels, mBuffer, 1);
+        flush();
+    }
+
+    /**
+     * Write the framebuffer to the device. Only the spans that differ from the last written
+     * framebuffer are sent, using the register offset to address them, since the matrix shares
+     * the I2C bus with the Sense HAT sensors.
+     */
+    private void flush() throws IOException {
+        if (!mShadowValid) {
+            mBuffer[0] = 0;
+            mDevice.write(mBuffer, mBuffer.length);
+            System.arraycopy(mBuffer, 0, mShadow, 0, BUFFER_SIZE);
+            mShadowValid = true;
+            return;
+        }
+        int start = 1;
+        while (start < BUFFER_SIZE) {
+            if (mBuffer[start] == mShadow[start]) {
+                start++;
+                continue;
+            }
+            // Extend the span until MERGE_GAP_BYTES unchanged bytes follow the last change
+            int end = start + 1;
+            for (int i = end; i < BUFFER_SIZE && i - end < MERGE_GAP_BYTES; i++) {
+                if (mBuffer[i] != mShadow[i]) {
+                    end = i + 1;
+                }
+            }
+            writeSpan(start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Write the framebuffer bytes in [start, end) of {@link #mBuffer} and update the shadow copy.
+     */
+    private void writeSpan(int start, int end) throws IOException {
+        int length = end - start;
+        if (length == FRAME_SIZE) {
+            mBuffer[0] = 0;
+            mDevice.write(mBuffer, mBuffer.length);
+        } else {
+            System.arraycopy(mBuffer, start, mSpanBuffer, 0, length);
+            mDevice.writeRegBuffer(start - 1, mSpanBuffer, length);
+        }
+        System.arraycopy(mBuffer, start, mShadow, start, length);
+    }
+
+    /**
+     * Convert {@link #WIDTH} x {@link #HEIGHT} ARGB pixels into the planar 5-bit RGB layout of the
+     * LED matrix framebuffer: for each row, the red, green, then blue values of every column.
+     * @param pixels ARGB color values, in row-major order.
+     * @param out destination buffer.
+     * @param offset index of the first framebuffer byte in {@code out}.
+     */
+    /* package */ static void encode(int[] pixels, byte[] out, int offset) {
         for (int y = 0; y < HEIGHT; y++) {
+            int row = offset + 3 * WIDTH * y;
             for (int x = 0; x < WIDTH; x++) {
-                int p = bitmap.getPixel(x, y);
-                float a = Color.alpha(p) / 255.f;
-                mBuffer[1+x+WIDTH*0+3*WIDTH*y] = (byte)((int)(Color.red(p)*a)>>3);
-                mBuffer[1+x+WIDTH*1+3*WIDTH*y] = (byte)((int)(Color.green(p)*a)>>3);
-                mBuffer[1+x+WIDTH*2+3*WIDTH*y] = (byte)((int)(Color.blue(p)*a)>>3);
+                int p = pixels[x + WIDTH * y];
+                int alpha = (p >>> 24) << 8;
+                out[row + x] = COLOR_LUT[alpha | ((p >> 16) & 0xFF)];
+                out[row + x + WIDTH] = COLOR_LUT[alpha | ((p >> 8) & 0xFF)];
+                out[row + x + 2 * WIDTH] = COLOR_LUT[alpha | (p & 0xFF)];
             }
         }
-        mDevice.write(mBuffer, mBuffer.length);
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sequence of frames pre-encoded into the LED matrix framebuffer format, ready to be streamed to
+ * the Sense HAT by a {@link LedMatrixAnimationPlayer} without any per-frame color conversion.
+ */
+public class LedMatrixAnimation {
+    private final byte[] mFrames;
+    private final int mFrameCount;
+
+    private LedMatrixAnimation(byte[] frames, int frameCount) {
+        mFrames = frames;
+        mFrameCount = frameCount;
+    }
+
+    /**
+     * Encode a sequence of ARGB pixel arrays into an animation.
+     * @param frames {@link LedMatrix#WIDTH} x {@link LedMatrix#HEIGHT} ARGB color values for each
+     *               frame, in row-major order.
+     * @return the encoded animation.
+     */
+    public static LedMatrixAnimation fromPixels(List<int[]> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("animation must have at least one frame");
+        }
+        byte[] encoded = new byte[frames.size() * LedMatrix.FRAME_SIZE];
+        for (int i = 0; i < frames.size(); i++) {
+            int[] pixels = frames.get(i);
+            if (pixels.length != LedMatrix.WIDTH * LedMatrix.HEIGHT) {
+                throw new IllegalArgumentException("frame " + i + " must have "
+                        + LedMatrix.WIDTH * LedMatrix.HEIGHT + " pixels");
+            }
+            LedMatrix.encode(pixels, encoded, i * LedMatrix.FRAME_SIZE);
+        }
+        return new LedMatrixAnimation(encoded, frames.size());
+    }
+
+    /**
+     * Encode a sequence of bitmaps into an animation. Bitmaps that are not
+     * {@link LedMatrix#WIDTH} x {@link LedMatrix#HEIGHT} pixels are scaled to fit the matrix.
+     * @param frames bitmap for each frame.
+     * @return the encoded animation.
+     */
+    public static LedMatrixAnimation fromBitmaps(List<Bitmap> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("animation must have at least one frame");
+        }
+        byte[] encoded = new byte[frames.size() * LedMatrix.FRAME_SIZE];
+        int[] pixels = new int[LedMatrix.WIDTH * LedMatrix.HEIGHT];
+        for (int i = 0; i < frames.size(); i++) {
+            Bitmap bitmap = frames.get(i);
+            if (bitmap.getWidth() != LedMatrix.WIDTH || bitmap.getHeight() != LedMatrix.HEIGHT) {
+                bitmap = Bitmap.createScaledBitmap(bitmap, LedMatrix.WIDTH, LedMatrix.HEIGHT,
+                        true);
+            }
+            bitmap.getPixels(pixels, 0, LedMatrix.WIDTH, 0, 0, LedMatrix.WIDTH, LedMatrix.HEIGHT);
+            LedMatrix.encode(pixels, encoded, i * LedMatrix.FRAME_SIZE);
+        }
+        return new LedMatrixAnimation(encoded, frames.size());
+    }
+
+    /**
+     * @return the number of frames in this animation.
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Write the given frame to the LED matrix.
+     */
+    /* package */ void drawFrame(LedMatrix matrix, int frame) throws IOException {
+        matrix.drawFrame(mFrames, frame * LedMatrix.FRAME_SIZE);
+    }
+}
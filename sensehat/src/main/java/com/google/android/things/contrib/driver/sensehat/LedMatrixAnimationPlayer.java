@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link LedMatrixAnimation} on a {@link LedMatrix} at a fixed frame rate from a
+ * dedicated thread. Frames are already encoded, so playback only performs I2C writes.
+ * <p>
+ * The LED matrix must not be drawn to from other threads while an animation is playing.
+ */
+public class LedMatrixAnimationPlayer implements AutoCloseable {
+    private static final String TAG = "LedMatrixAnimPlayer";
+
+    /**
+     * Interface definition for callbacks invoked on the playback thread.
+     */
+    public interface PlaybackListener {
+        /**
+         * Called when writing a frame completed after the time slot of the following frame had
+         * already started. The player then skips ahead to keep the animation in time.
+         * @param frame index of the late frame.
+         * @param lateNanos how late the frame was, in nanoseconds.
+         */
+        void onDeadlineMissed(int frame, long lateNanos);
+
+        /**
+         * Called when a non-looping animation has played its last frame, or playback stopped
+         * because of an I2C error.
+         */
+        void onPlaybackFinished();
+    }
+
+    private final LedMatrix mMatrix;
+    private volatile PlaybackListener mListener;
+    private Thread mThread;
+    private Playback mPlayback;
+
+    /**
+     * Create a new animation player drawing to the given LED matrix.
+     * @param matrix LED matrix to draw to.
+     */
+    public LedMatrixAnimationPlayer(LedMatrix matrix) {
+        mMatrix = matrix;
+    }
+
+    /**
+     * Set the listener notified of missed deadlines and the end of playback.
+     * @param listener The listener to notify, or null to remove the current listener.
+     */
+    public void setPlaybackListener(PlaybackListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Start playing the given animation, stopping any animation currently playing. The new
+     * animation starts once the previous playback thread has finished.
+     * @param animation animation to play.
+     * @param framesPerSecond playback frame rate.
+     * @param loop true to restart from the first frame after the last one.
+     */
+    public synchronized void play(LedMatrixAnimation animation, float framesPerSecond,
+                                  boolean loop) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("frame rate must be positive");
+        }
+        Thread previous = detachPlayback();
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        mPlayback = new Playback(animation, periodNanos, loop, previous);
+        mThread = new Thread(mPlayback, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Stop the current animation and wait for the playback thread to finish. The LED matrix keeps
+     * showing the last frame written.
+     * <p>
+     * When called from a {@link PlaybackListener}, the playback thread stops once the listener
+     * returns.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = detachPlayback();
+        }
+        // Wait without holding the lock, the listener may still call into the player
+        if (thread != null && Thread.currentThread() != thread) {
+            join(thread);
+        }
+    }
+
+    /**
+     * @return true if an animation is currently playing.
+     */
+    public synchronized boolean isPlaying() {
+        return mThread != null && mThread.isAlive();
+    }
+
+    /**
+     * Stop playback. The underlying LED matrix is not closed.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Signal the current playback to stop.
+     * @return the playback thread, or null if nothing was playing.
+     */
+    private Thread detachPlayback() {
+        Thread thread = mThread;
+        if (thread != null) {
+            mPlayback.mStopped = true;
+            LockSupport.unpark(thread);
+            mThread = null;
+            mPlayback = null;
+        }
+        return thread;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Playback implements Runnable {
+        private final LedMatrixAnimation mAnimation;
+        private final long mPeriodNanos;
+        private final boolean mLoop;
+        // Playback thread to wait for before drawing, or null
+        private final Thread mPrevious;
+        private volatile boolean mStopped;
+
+        Playback(LedMatrixAnimation animation, long periodNanos, boolean loop, Thread previous) {
+            mAnimation = animation;
+            mPeriodNanos = periodNanos;
+            mLoop = loop;
+            mPrevious = previous;
+        }
+
+        @Override
+        public void run() {
+            if (mPrevious != null) {
+                join(mPrevious);
+            }
+            final int frameCount = mAnimation.getFrameCount();
+            int frame = 0;
+            // Deadline by which the current frame must be written: the start of the next slot
+            long deadline = System.nanoTime() + mPeriodNanos;
+            try {
+                while (!mStopped) {
+                    mAnimation.drawFrame(mMatrix, frame);
+
+                    long now = System.nanoTime();
+                    if (now > deadline) {
+                        long late = now - deadline;
+                        PlaybackListener listener = mListener;
+                        if (listener != null) {
+                            listener.onDeadlineMissed(frame, late);
+                        }
+                        // Skip the frames whose slots have already passed entirely
+                        long skipped = late / mPeriodNanos;
+                        frame += skipped;
+                        deadline += skipped * mPeriodNanos;
+                    } else {
+                        while (!mStopped && (now = System.nanoTime()) < deadline) {
+                            LockSupport.parkNanos(deadline - now);
+                        }
+                    }
+
+                    frame++;
+                    deadline += mPeriodNanos;
+                    if (frame >= frameCount) {
+                        if (!mLoop) {
+                            break;
+                        }
+                        frame %= frameCount;
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write animation frame", e);
+            }
+            if (!mStopped) {
+                PlaybackListener listener = mListener;
+                if (listener != null) {
+                    listener.onPlaybackFinished();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.android.things.pio.I2cDevice;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Driver for the LPS25H barometric pressure and temperature sensor of the Sense HAT.
+ * <p>
+ * Each sample is read together with the data-ready flags in a single auto-incrementing burst
+ * read.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class Lps25h implements AutoCloseable {
+
+    /**
+     * I2C address of the sensor on the Sense HAT.
+     */
+    public static final int I2C_ADDRESS = 0x5C;
+
+    // Sensor constants from the datasheet.
+    // http://www.st.com/resource/en/datasheet/lps25h.pdf
+    /**
+     * Minimum pressure in hPa the sensor can measure.
+     */
+    public static final float MIN_PRESSURE_HPA = 260f;
+    /**
+     * Maximum pressure in hPa the sensor can measure.
+     */
+    public static final float MAX_PRESSURE_HPA = 1260f;
+    /**
+     * Minimum temperature in Celsius the sensor can measure.
+     */
+    public static final float MIN_TEMP_C = -30f;
+    /**
+     * Maximum temperature in Celsius the sensor can measure.
+     */
+    public static final float MAX_TEMP_C = 105f;
+    /**
+     * Maximum power consumption in micro-amperes.
+     */
+    public static final float MAX_POWER_CONSUMPTION_UA = 25f;
+    /**
+     * Maximum frequency of the measurements.
+     */
+    public static final float MAX_FREQ_HZ = 25f;
+    /**
+     * Minimum frequency of the measurements.
+     */
+    public static final float MIN_FREQ_HZ = 1f;
+
+    /**
+     * Power mode.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({MODE_POWER_DOWN, MODE_CONTINUOUS})
+    public @interface Mode {}
+    public static final int MODE_POWER_DOWN = 0;
+    public static final int MODE_CONTINUOUS = 1;
+
+    /**
+     * Output data rate in continuous mode.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ODR_1_HZ, ODR_7_HZ, ODR_12_5_HZ, ODR_25_HZ})
+    public @interface OutputDataRate {}
+    public static final int ODR_1_HZ = 0b001;
+    public static final int ODR_7_HZ = 0b010;
+    public static final int ODR_12_5_HZ = 0b011;
+    public static final int ODR_25_HZ = 0b100;
+
+    // Registers
+    private static final int LPS25H_REG_WHO_AM_I = 0x0F;
+    @VisibleForTesting
+    static final int LPS25H_REG_CTRL1 = 0x20;
+    private static final int LPS25H_REG_STATUS = 0x27;
+
+    // Setting the MSB of the register address enables address auto-increment.
+    @VisibleForTesting
+    static final int LPS25H_AUTO_INCREMENT = 0x80;
+
+    private static final int LPS25H_WHO_AM_I = 0xBD;
+    private static final int LPS25H_CTRL1_POWER_ON = 1 << 7;
+    private static final int LPS25H_CTRL1_ODR_SHIFT = 4;
+    private static final int LPS25H_CTRL1_ODR_MASK = 0b111 << LPS25H_CTRL1_ODR_SHIFT;
+    private static final int LPS25H_CTRL1_BDU = 1 << 2;
+    private static final int LPS25H_STATUS_P_DA = 1 << 1;
+    private static final int LPS25H_STATUS_T_DA = 1;
+
+    // STATUS_REG, PRESS_OUT_XL/L/H, TEMP_OUT_L/H
+    private static final int SAMPLE_SIZE = 6;
+
+    private I2cDevice mDevice;
+    private final byte[] mBuffer = new byte[SAMPLE_SIZE]; // for reading sensor values
+    private int mCtrl1;
+
+    private boolean mHasSample;
+    private float mPressure;
+    private float mTemperature;
+
+    /**
+     * Create a new LPS25H sensor driver connected on the given bus.
+     * @param bus I2C bus the sensor is connected to.
+     * @throws IOException
+     */
+    public Lps25h(String bus) throws IOException {
+        PeripheralManager pioService = PeripheralManager.getInstance();
+        I2cDevice device = pioService.openI2cDevice(bus, I2C_ADDRESS);
+        try {
+            connect(device);
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new LPS25H sensor driver connected to the given I2C device.
+     * @param device I2C device of the sensor.
+     * @throws IOException
+     */
+    @VisibleForTesting
+    /*package*/ Lps25h(I2cDevice device) throws IOException {
+        connect(device);
+    }
+
+    private void connect(I2cDevice device) throws IOException {
+        mDevice = device;
+
+        int whoAmI = mDevice.readRegByte(LPS25H_REG_WHO_AM_I) & 0xff;
+        if (whoAmI != LPS25H_WHO_AM_I) {
+            throw new IOException("Unexpected LPS25H device id " + whoAmI);
+        }
+
+        // Power down with block data update, so output registers always hold a complete sample
+        mCtrl1 = LPS25H_CTRL1_BDU | (ODR_1_HZ << LPS25H_CTRL1_ODR_SHIFT);
+        mDevice.writeRegByte(LPS25H_REG_CTRL1, (byte) mCtrl1);
+    }
+
+    /**
+     * Close the driver and the underlying device.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Set the power mode of the sensor.
+     * @param mode power mode.
+     * @throws IOException
+     */
+    public void setMode(@Mode int mode) throws IOException {
+        if (mode == MODE_POWER_DOWN) {
+            writeCtrl1(mCtrl1 & ~LPS25H_CTRL1_POWER_ON);
+        } else {
+            writeCtrl1(mCtrl1 | LPS25H_CTRL1_POWER_ON);
+        }
+    }
+
+    /**
+     * @return the current power mode of the sensor.
+     */
+    public @Mode int getMode() {
+        return (mCtrl1 & LPS25H_CTRL1_POWER_ON) != 0 ? MODE_CONTINUOUS : MODE_POWER_DOWN;
+    }
+
+    /**
+     * Set the rate of measurements in continuous mode.
+     * @param rate output data rate.
+     * @throws IOException
+     */
+    public void setOutputDataRate(@OutputDataRate int rate) throws IOException {
+        writeCtrl1((mCtrl1 & ~LPS25H_CTRL1_ODR_MASK) |
+                ((rate << LPS25H_CTRL1_ODR_SHIFT) & LPS25H_CTRL1_ODR_MASK));
+    }
+
+    private void writeCtrl1(int value) throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        if (value != mCtrl1) {
+            mDevice.writeRegByte(LPS25H_REG_CTRL1, (byte) value);
+            mCtrl1 = value;
+        }
+    }
+
+    /**
+     * Read the current barometric pressure.
+     *
+     * @return the current barometric pressure in hPa units
+     * @throws IOException
+     */
+    public float readPressure() throws IOException, IllegalStateException {
+        readSample();
+        return mPressure;
+    }
+
+    /**
+     * Read the current temperature.
+     *
+     * @return the current temperature in degrees Celsius
+     * @throws IOException
+     */
+    public float readTemperature() throws IOException, IllegalStateException {
+        readSample();
+        return mTemperature;
+    }
+
+    /**
+     * Read the current barometric pressure and temperature in a single transaction.
+     *
+     * @return a 2-element array. The first element is pressure in hPa, and the second is
+     * temperature in degrees Celsius.
+     * @throws IOException
+     */
+    public float[] readPressureAndTemperature() throws IOException, IllegalStateException {
+        readSample();
+        return new float[]{mPressure, mTemperature};
+    }
+
+    /**
+     * Read the status and output registers in one burst. The converted values are only
+     * recomputed when the sensor flags new data.
+     * @throws IOException
+     */
+    private void readSample() throws IOException, IllegalStateException {
+        if (mDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        if ((mCtrl1 & LPS25H_CTRL1_POWER_ON) == 0) {
+            throw new IllegalStateException("sensor is powered down");
+        }
+        synchronized (mBuffer) {
+            mDevice.readRegBuffer(LPS25H_REG_STATUS | LPS25H_AUTO_INCREMENT, mBuffer,
+                    SAMPLE_SIZE);
+            int status = mBuffer[0];
+            if (mHasSample && (status & (LPS25H_STATUS_P_DA | LPS25H_STATUS_T_DA)) == 0) {
+                // No new data since the last read
+                return;
+            }
+            int rawPressure = (mBuffer[3] << 16) | ((mBuffer[2] & 0xff) << 8) | (mBuffer[1] & 0xff);
+            int rawTemperature = (short) ((mBuffer[5] << 8) | (mBuffer[4] & 0xff));
+            mPressure = convertPressure(rawPressure);
+            mTemperature = convertTemperature(rawTemperature);
+            mHasSample = true;
+        }
+    }
+
+    @VisibleForTesting
+    static float convertPressure(int rawPressure) {
+        return rawPressure / 4096f;
+    }
+
+    @VisibleForTesting
+    static float convertTemperature(int rawTemperature) {
+        return 42.5f + rawTemperature / 480f;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.hardware.Sensor;
+
+import com.google.android.things.userdriver.UserDriverManager;
+import com.google.android.things.userdriver.sensor.UserSensor;
+import com.google.android.things.userdriver.sensor.UserSensorDriver;
+import com.google.android.things.userdriver.sensor.UserSensorReading;
+
+import java.io.IOException;
+import java.util.UUID;
+
+public class Lps25hSensorDriver implements AutoCloseable {
+    // DRIVER parameters
+    // documented at https://source.android.com/devices/sensors/hal-interface.html#sensor_t
+    private static final String DRIVER_VENDOR = "STMicroelectronics";
+    private static final String DRIVER_NAME = "LPS25H";
+    private static final int DRIVER_MIN_DELAY_US = Math.round(1000000.f / Lps25h.MAX_FREQ_HZ);
+    private static final int DRIVER_MAX_DELAY_US = Math.round(1000000.f / Lps25h.MIN_FREQ_HZ);
+    private static final float DRIVER_POWER = Lps25h.MAX_POWER_CONSUMPTION_UA / 1000.f;
+    private static final int DRIVER_VERSION = 1;
+
+    private Lps25h mDevice;
+
+    private PressureUserDriver mPressureUserDriver;
+    private TemperatureUserDriver mTemperatureUserDriver;
+
+    /**
+     * Create a new framework sensor driver connected on the given bus.
+     * The driver emits {@link android.hardware.Sensor} with pressure and temperature data when
+     * registered.
+     * @param bus I2C bus the sensor is connected to.
+     * @throws IOException
+     * @see #registerPressureSensor()
+     * @see #registerTemperatureSensor()
+     */
+    public Lps25hSensorDriver(String bus) throws IOException {
+        mDevice = new Lps25h(bus);
+    }
+
+    /**
+     * Close the driver and the underlying device.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        unregisterPressureSensor();
+        unregisterTemperatureSensor();
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+
+    /**
+     * Register a {@link UserSensor} that pipes pressure readings into the Android SensorManager.
+     * @see #unregisterPressureSensor()
+     */
+    public void registerPressureSensor() {
+        if (mDevice == null) {
+            throw new IllegalStateException("cannot register closed driver");
+        }
+
+        if (mPressureUserDriver == null) {
+            mPressureUserDriver = new PressureUserDriver();
+            UserDriverManager.getInstance().registerSensor(mPressureUserDriver.getUserSensor());
+        }
+    }
+
+    /**
+     * Register a {@link UserSensor} that pipes temperature readings into the Android SensorManager.
+     * @see #unregisterTemperatureSensor()
+     */
+    public void registerTemperatureSensor() {
+        if (mDevice == null) {
+            throw new IllegalStateException("cannot register closed driver");
+        }
+
+        if (mTemperatureUserDriver == null) {
+            mTemperatureUserDriver = new TemperatureUserDriver();
+            UserDriverManager.getInstance().registerSensor(mTemperatureUserDriver.getUserSensor());
+        }
+    }
+
+    /**
+     * Unregister the pressure {@link UserSensor}.
+     */
+    public void unregisterPressureSensor() {
+        if (mPressureUserDriver != null) {
+            UserDriverManager.getInstance().unregisterSensor(mPressureUserDriver.getUserSensor());
+            mPressureUserDriver = null;
+        }
+    }
+
+    /**
+     * Unregister the temperature {@link UserSensor}.
+     */
+    public void unregisterTemperatureSensor() {
+        if (mTemperatureUserDriver != null) {
+            UserDriverManager.getInstance().unregisterSensor(mTemperatureUserDriver.getUserSensor());
+            mTemperatureUserDriver = null;
+        }
+    }
+
+    private void maybeSleep() throws IOException {
+        if ((mPressureUserDriver == null || !mPressureUserDriver.isEnabled()) &&
+            (mTemperatureUserDriver == null || !mTemperatureUserDriver.isEnabled())) {
+            mDevice.setMode(Lps25h.MODE_POWER_DOWN);
+        } else {
+            // Measure at the rate matching the advertised minimum delay
+            mDevice.setOutputDataRate(Lps25h.ODR_25_HZ);
+            mDevice.setMode(Lps25h.MODE_CONTINUOUS);
+        }
+    }
+
+    private class PressureUserDriver implements UserSensorDriver {
+        // DRIVER parameters
+        // documented at https://source.android.com/devices/sensors/hal-interface.html#sensor_t
+        private static final float DRIVER_MAX_RANGE = Lps25h.MAX_PRESSURE_HPA;
+        private static final float DRIVER_RESOLUTION = 0.00024f;
+
+        private boolean mEnabled;
+        private UserSensor mUserSensor;
+
+        private UserSensor getUserSensor() {
+            if (mUserSensor == null) {
+                mUserSensor = new UserSensor.Builder()
+                        .setType(Sensor.TYPE_PRESSURE)
+                        .setName(DRIVER_NAME)
+                        .setVendor(DRIVER_VENDOR)
+                        .setVersion(DRIVER_VERSION)
+                        .setMaxRange(DRIVER_MAX_RANGE)
+                        .setResolution(DRIVER_RESOLUTION)
+                        .setPower(DRIVER_POWER)
+                        .setMinDelay(DRIVER_MIN_DELAY_US)
+                        .setMaxDelay(DRIVER_MAX_DELAY_US)
+                        .setUuid(UUID.randomUUID())
+                        .setDriver(this)
+                        .build();
+            }
+            return mUserSensor;
+        }
+
+        @Override
+        public UserSensorReading read() throws IOException {
+            return new UserSensorReading(new float[]{mDevice.readPressure()});
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) throws IOException {
+            mEnabled = enabled;
+            maybeSleep();
+        }
+
+        private boolean isEnabled() {
+            return mEnabled;
+        }
+    }
+
+    private class TemperatureUserDriver implements UserSensorDriver {
+        // DRIVER parameters
+        // documented at https://source.android.com/devices/sensors/hal-interface.html#sensor_t
+        private static final float DRIVER_MAX_RANGE = Lps25h.MAX_TEMP_C;
+        private static final float DRIVER_RESOLUTION = 0.002f;
+
+        private boolean mEnabled;
+        private UserSensor mUserSensor;
+
+        private UserSensor getUserSensor() {
+            if (mUserSensor == null) {
+                mUserSensor = new UserSensor.Builder()
+                        .setType(Sensor.TYPE_AMBIENT_TEMPERATURE)
+                        .setName(DRIVER_NAME)
+                        .setVendor(DRIVER_VENDOR)
+                        .setVersion(DRIVER_VERSION)
+                        .setMaxRange(DRIVER_MAX_RANGE)
+                        .setResolution(DRIVER_RESOLUTION)
+                        .setPower(DRIVER_POWER)
+                        .setMinDelay(DRIVER_MIN_DELAY_US)
+                        .setMaxDelay(DRIVER_MAX_DELAY_US)
+                        .setUuid(UUID.randomUUID())
+                        .setDriver(this)
+                        .build();
+            }
+            return mUserSensor;
+        }
+
+        @Override
+        public UserSensorReading read() throws IOException {
+            return new UserSensorReading(new float[]{mDevice.readTemperature()});
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) throws IOException {
+            mEnabled = enabled;
+            maybeSleep();
+        }
+
+        private boolean isEnabled() {
+            return mEnabled;
+        }
+    }
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.I2cDevice;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Driver for the LSM9DS1 inertial module of the Sense HAT.
+ * <p>
+ * Accelerometer and gyroscope samples are queued in the on-chip FIFO. When the FIFO reaches its
+ * watermark, the whole backlog is drained with a single burst read, decoded into the primitive
+ * arrays of a reused {@link SampleBatch}, and delivered to the registered listeners.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class Lsm9ds1 implements AutoCloseable {
+    private static final String TAG = Lsm9ds1.class.getSimpleName();
+
+    /**
+     * I2C address of the accelerometer and gyroscope on the Sense HAT.
+     */
+    public static final int I2C_ADDRESS_ACCEL_GYRO = 0x6A;
+    /**
+     * I2C address of the magnetometer on the Sense HAT.
+     */
+    public static final int I2C_ADDRESS_MAG = 0x1C;
+
+    /**
+     * Number of samples the FIFO can hold.
+     */
+    public static final int FIFO_SIZE = 32;
+
+    /**
+     * Output data rate of the accelerometer and gyroscope.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ODR_14_9_HZ, ODR_59_5_HZ, ODR_119_HZ, ODR_238_HZ, ODR_476_HZ, ODR_952_HZ})
+    public @interface OutputDataRate {}
+    public static final int ODR_14_9_HZ = 0b001;
+    public static final int ODR_59_5_HZ = 0b010;
+    public static final int ODR_119_HZ = 0b011;
+    public static final int ODR_238_HZ = 0b100;
+    public static final int ODR_476_HZ = 0b101;
+    public static final int ODR_952_HZ = 0b110;
+
+    /**
+     * Accelerometer full scale range.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ACCEL_RANGE_2G, ACCEL_RANGE_4G, ACCEL_RANGE_8G, ACCEL_RANGE_16G})
+    public @interface AccelRange {}
+    public static final int ACCEL_RANGE_2G = 0b00;
+    public static final int ACCEL_RANGE_4G = 0b10;
+    public static final int ACCEL_RANGE_8G = 0b11;
+    public static final int ACCEL_RANGE_16G = 0b01;
+
+    /**
+     * Gyroscope full scale range.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({GYRO_RANGE_245_DPS, GYRO_RANGE_500_DPS, GYRO_RANGE_2000_DPS})
+    public @interface GyroRange {}
+    public static final int GYRO_RANGE_245_DPS = 0b00;
+    public static final int GYRO_RANGE_500_DPS = 0b01;
+    public static final int GYRO_RANGE_2000_DPS = 0b11;
+
+    // Accelerometer and gyroscope registers
+    private static final int AG_REG_WHO_AM_I = 0x0F;
+    @VisibleForTesting
+    static final int AG_REG_INT1_CTRL = 0x0C;
+    @VisibleForTesting
+    static final int AG_REG_CTRL1_G = 0x10;
+    @VisibleForTesting
+    static final int AG_REG_OUT_X_G = 0x18;
+    @VisibleForTesting
+    static final int AG_REG_CTRL6_XL = 0x20;
+    @VisibleForTesting
+    static final int AG_REG_CTRL8 = 0x22;
+    @VisibleForTesting
+    static final int AG_REG_CTRL9 = 0x23;
+    @VisibleForTesting
+    static final int AG_REG_FIFO_CTRL = 0x2E;
+    @VisibleForTesting
+    static final int AG_REG_FIFO_SRC = 0x2F;
+
+    private static final int AG_WHO_AM_I = 0x68;
+    private static final int AG_INT1_FTH = 1 << 3;
+    private static final int AG_CTRL8_IF_ADD_INC = 1 << 2;
+    private static final int AG_CTRL9_FIFO_EN = 1 << 1;
+    private static final int AG_FIFO_MODE_CONTINUOUS = 0b110 << 5;
+    private static final int AG_FIFO_SRC_OVRN = 1 << 6;
+    private static final int AG_FIFO_SRC_FSS_MASK = 0b111111;
+
+    // Magnetometer registers
+    private static final int M_REG_WHO_AM_I = 0x0F;
+    @VisibleForTesting
+    static final int M_REG_CTRL1 = 0x20;
+    @VisibleForTesting
+    static final int M_REG_CTRL3 = 0x22;
+    @VisibleForTesting
+    static final int M_REG_CTRL4 = 0x23;
+    @VisibleForTesting
+    static final int M_REG_STATUS = 0x27;
+    // Setting the MSB of the magnetometer register address enables address auto-increment.
+    @VisibleForTesting
+    static final int M_AUTO_INCREMENT = 0x80;
+
+    private static final int M_WHO_AM_I = 0x3D;
+    // Temperature compensation, ultra-high performance X/Y, 80 Hz
+    private static final int M_CTRL1_CONFIG = 0b11111100;
+    private static final int M_CTRL3_CONTINUOUS = 0b00;
+    // Ultra-high performance Z
+    private static final int M_CTRL4_CONFIG = 0b1100;
+    private static final int M_STATUS_ZYXDA = 1 << 3;
+
+    // Each FIFO slot holds the gyroscope and the accelerometer X/Y/Z outputs
+    private static final int FIFO_SLOT_SIZE = 12;
+    // STATUS_REG_M, OUT_X/Y/Z_L/H_M
+    private static final int MAG_SAMPLE_SIZE = 7;
+
+    // Sensitivity at +/-4 gauss, in uT/LSB
+    private static final float MAG_SENSITIVITY = 0.014f;
+
+    /**
+     * Batch of samples drained from the FIFO. The arrays are reused for every batch, so
+     * listeners must copy any values they need to keep after the callback returns.
+     */
+    public static final class SampleBatch {
+        /** Number of valid samples in this batch. */
+        public int size;
+        /** Reconstructed timestamp of each sample, in {@link SystemClock#elapsedRealtimeNanos()}. */
+        public final long[] timestamps = new long[FIFO_SIZE];
+        /** Acceleration in m/s^2, as X/Y/Z triplets. */
+        public final float[] acceleration = new float[FIFO_SIZE * 3];
+        /** Angular rate in rad/s, as X/Y/Z triplets. */
+        public final float[] angularRate = new float[FIFO_SIZE * 3];
+        /** Latest magnetic field in uT, as an X/Y/Z triplet. */
+        public final float[] magneticField = new float[3];
+        /** Timestamp of the latest magnetometer sample, or 0 if none has been read yet. */
+        public long magneticFieldTimestamp;
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when a batch of samples is available.
+     */
+    public interface OnSampleBatchListener {
+        /**
+         * Called when samples have been drained from the FIFO.
+         *
+         * @param imu the Lsm9ds1 the samples were read from
+         * @param batch the decoded samples, only valid for the duration of the call
+         */
+        void onSampleBatch(Lsm9ds1 imu, SampleBatch batch);
+    }
+
+    private I2cDevice mAccelGyroDevice;
+    private I2cDevice mMagDevice;
+    private Gpio mInterruptGpio;
+    private final CopyOnWriteArrayList<OnSampleBatchListener> mListeners =
+            new CopyOnWriteArrayList<>();
+
+    private final byte[] mFifoBuffer = new byte[FIFO_SIZE * FIFO_SLOT_SIZE];
+    private final byte[] mMagBuffer = new byte[MAG_SAMPLE_SIZE];
+    private final SampleBatch mBatch = new SampleBatch();
+
+    private int mCtrl1G;
+    private int mCtrl6Xl;
+    private int mWatermark;
+    private long mSamplePeriodNanos;
+    private float mAccelScale;
+    private float mGyroScale;
+    private long mLastTimestamp;
+    private int mOverrunCount;
+
+    /**
+     * Create a new LSM9DS1 driver connected on the given I2C bus and interrupt pin.
+     * @param bus I2C bus the Sense HAT is connected to.
+     * @param interruptPin GPIO pin connected to the INT1_A/G pin of the LSM9DS1, or null to
+     *                     drain the FIFO manually with {@link #drainFifo()}.
+     * @throws IOException
+     */
+    public Lsm9ds1(String bus, String interruptPin) throws IOException {
+        this(bus, interruptPin, null);
+    }
+
+    /**
+     * Create a new LSM9DS1 driver connected on the given I2C bus and interrupt pin.
+     * @param bus I2C bus the Sense HAT is connected to.
+     * @param interruptPin GPIO pin connected to the INT1_A/G pin of the LSM9DS1, or null to
+     *                     drain the FIFO manually with {@link #drainFifo()}.
+     * @param handler optional {@link Handler} for interrupt and callback events.
+     * @throws IOException
+     */
+    public Lsm9ds1(String bus, String interruptPin, Handler handler) throws IOException {
+        PeripheralManager pioService = PeripheralManager.getInstance();
+        try {
+            mAccelGyroDevice = pioService.openI2cDevice(bus, I2C_ADDRESS_ACCEL_GYRO);
+            mMagDevice = pioService.openI2cDevice(bus, I2C_ADDRESS_MAG);
+            if (interruptPin != null) {
+                mInterruptGpio = pioService.openGpio(interruptPin);
+            }
+            connect(handler);
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Constructor invoked from unit tests.
+     */
+    @VisibleForTesting
+    /*package*/ Lsm9ds1(I2cDevice accelGyroDevice, I2cDevice magDevice, Gpio interruptGpio,
+                        Handler handler) throws IOException {
+        mAccelGyroDevice = accelGyroDevice;
+        mMagDevice = magDevice;
+        mInterruptGpio = interruptGpio;
+        connect(handler);
+    }
+
+    private void connect(Handler handler) throws IOException {
+        int whoAmI = mAccelGyroDevice.readRegByte(AG_REG_WHO_AM_I) & 0xff;
+        if (whoAmI != AG_WHO_AM_I) {
+            throw new IOException("Unexpected LSM9DS1 accelerometer/gyroscope id " + whoAmI);
+        }
+        whoAmI = mMagDevice.readRegByte(M_REG_WHO_AM_I) & 0xff;
+        if (whoAmI != M_WHO_AM_I) {
+            throw new IOException("Unexpected LSM9DS1 magnetometer id " + whoAmI);
+        }
+
+        // Gyroscope and accelerometer share the gyroscope ODR when both are enabled
+        mCtrl1G = (ODR_119_HZ << 5) | (GYRO_RANGE_245_DPS << 3);
+        mCtrl6Xl = ACCEL_RANGE_2G << 3;
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL6_XL, (byte) mCtrl6Xl);
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL1_G, (byte) mCtrl1G);
+        updateScales();
+
+        // Register address auto-increment is required for burst reads
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL8, (byte) AG_CTRL8_IF_ADD_INC);
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL9, (byte) AG_CTRL9_FIFO_EN);
+        setWatermark(FIFO_SIZE / 2);
+        mAccelGyroDevice.writeRegByte(AG_REG_INT1_CTRL, (byte) AG_INT1_FTH);
+
+        mMagDevice.writeRegByte(M_REG_CTRL1, (byte) M_CTRL1_CONFIG);
+        mMagDevice.writeRegByte(M_REG_CTRL4, (byte) M_CTRL4_CONFIG);
+        mMagDevice.writeRegByte(M_REG_CTRL3, (byte) M_CTRL3_CONTINUOUS);
+
+        if (mInterruptGpio != null) {
+            mInterruptGpio.setDirection(Gpio.DIRECTION_IN);
+            mInterruptGpio.setEdgeTriggerType(Gpio.EDGE_RISING);
+            mInterruptGpio.registerGpioCallback(handler, mInterruptCallback);
+        }
+    }
+
+    /**
+     * Register a listener to be called when a batch of samples is available.
+     * @param listener listener to be invoked.
+     */
+    public void addOnSampleBatchListener(OnSampleBatchListener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Remove a previously registered listener.
+     * @param listener listener to remove.
+     */
+    public void removeOnSampleBatchListener(OnSampleBatchListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Set the output data rate of the accelerometer and gyroscope.
+     * @param rate output data rate.
+     * @throws IOException
+     */
+    public synchronized void setOutputDataRate(@OutputDataRate int rate) throws IOException {
+        if (rate < ODR_14_9_HZ || rate > ODR_952_HZ) {
+            throw new IllegalArgumentException("Invalid output data rate: " + rate);
+        }
+        writeCtrl1G((mCtrl1G & 0b00011111) | (rate << 5));
+    }
+
+    /**
+     * Set the full scale range of the accelerometer.
+     * @param range accelerometer range.
+     * @throws IOException
+     */
+    public synchronized void setAccelerometerRange(@AccelRange int range) throws IOException {
+        if (mAccelGyroDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        int value = (mCtrl6Xl & 0b11100111) | ((range & 0b11) << 3);
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL6_XL, (byte) value);
+        mCtrl6Xl = value;
+        updateScales();
+    }
+
+    /**
+     * Set the full scale range of the gyroscope.
+     * @param range gyroscope range.
+     * @throws IOException
+     */
+    public synchronized void setGyroscopeRange(@GyroRange int range) throws IOException {
+        if (range == 0b10) {
+            throw new IllegalArgumentException("Invalid gyroscope range: " + range);
+        }
+        writeCtrl1G((mCtrl1G & 0b11100111) | ((range & 0b11) << 3));
+    }
+
+    private void writeCtrl1G(int value) throws IOException {
+        if (mAccelGyroDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        mAccelGyroDevice.writeRegByte(AG_REG_CTRL1_G, (byte) value);
+        mCtrl1G = value;
+        updateScales();
+    }
+
+    /**
+     * Set the number of FIFO samples that triggers the watermark interrupt. Lower values reduce
+     * latency, higher values reduce the number of bus transactions.
+     * @param samples watermark level, between 1 and {@link #FIFO_SIZE} - 1.
+     * @throws IOException
+     */
+    public synchronized void setWatermark(int samples) throws IOException {
+        if (samples < 1 || samples >= FIFO_SIZE) {
+            throw new IllegalArgumentException("Watermark must be between 1 and "
+                    + (FIFO_SIZE - 1) + ": " + samples);
+        }
+        if (mAccelGyroDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        mAccelGyroDevice.writeRegByte(AG_REG_FIFO_CTRL,
+                (byte) (AG_FIFO_MODE_CONTINUOUS | samples));
+        mWatermark = samples;
+    }
+
+    /**
+     * @return the FIFO watermark level in samples.
+     */
+    public synchronized int getWatermark() {
+        return mWatermark;
+    }
+
+    /**
+     * @return the number of times the FIFO overflowed before it was drained, losing samples.
+     */
+    public synchronized int getOverrunCount() {
+        return mOverrunCount;
+    }
+
+    private void updateScales() {
+        final float sensitivityMg;
+        switch ((mCtrl6Xl >> 3) & 0b11) {
+            case ACCEL_RANGE_4G:
+                sensitivityMg = 0.122f;
+                break;
+            case ACCEL_RANGE_8G:
+                sensitivityMg = 0.244f;
+                break;
+            case ACCEL_RANGE_16G:
+                sensitivityMg = 0.732f;
+                break;
+            default:
+                sensitivityMg = 0.061f;
+                break;
+        }
+        mAccelScale = sensitivityMg / 1000f * SensorManager.GRAVITY_EARTH;
+
+        final float sensitivityMdps;
+        switch ((mCtrl1G >> 3) & 0b11) {
+            case GYRO_RANGE_500_DPS:
+                sensitivityMdps = 17.5f;
+                break;
+            case GYRO_RANGE_2000_DPS:
+                sensitivityMdps = 70f;
+                break;
+            default:
+                sensitivityMdps = 8.75f;
+                break;
+        }
+        mGyroScale = (float) Math.toRadians(sensitivityMdps / 1000f);
+
+        mSamplePeriodNanos = Math.round(1e9 / getOutputDataRateHz((mCtrl1G >> 5) & 0b111));
+    }
+
+    private static double getOutputDataRateHz(int rate) {
+        switch (rate) {
+            case ODR_14_9_HZ:
+                return 14.9;
+            case ODR_59_5_HZ:
+                return 59.5;
+            case ODR_119_HZ:
+                return 119;
+            case ODR_238_HZ:
+                return 238;
+            case ODR_476_HZ:
+                return 476;
+            default:
+                return 952;
+        }
+    }
+
+    /**
+     * Close the driver and the underlying devices.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mListeners.clear();
+        if (mInterruptGpio != null) {
+            mInterruptGpio.unregisterGpioCallback(mInterruptCallback);
+            try {
+                mInterruptGpio.close();
+            } finally {
+                mInterruptGpio = null;
+            }
+        }
+        try {
+            if (mAccelGyroDevice != null) {
+                try {
+                    mAccelGyroDevice.close();
+                } finally {
+                    mAccelGyroDevice = null;
+                }
+            }
+        } finally {
+            if (mMagDevice != null) {
+                try {
+                    mMagDevice.close();
+                } finally {
+                    mMagDevice = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Local callback draining the FIFO when the watermark interrupt fires.
+     */
+    private GpioCallback mInterruptCallback = new GpioCallback() {
+        @Override
+        public boolean onGpioEdge(Gpio gpio) {
+            synchronized (Lsm9ds1.this) {
+                if (mAccelGyroDevice == null || mMagDevice == null) {
+                    // Closed while the interrupt was pending
+                    return false;
+                }
+                try {
+                    drainFifo();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error draining LSM9DS1 FIFO", e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void onGpioError(Gpio gpio, int error) {
+            Log.w(TAG, "Error handling GPIO interrupt: " + error);
+        }
+    };
+
+    /**
+     * Read every sample currently queued in the FIFO and deliver them to the listeners. This is
+     * called automatically on watermark interrupts, and may be called periodically when no
+     * interrupt pin is used. Concurrent calls are serialized with the interrupt, and listeners
+     * are invoked while the driver lock is held.
+     * @return the number of samples drained.
+     * @throws IOException
+     */
+    public int drainFifo() throws IOException {
+        return drainFifo(SystemClock.elapsedRealtimeNanos());
+    }
+
+    @VisibleForTesting
+    /*package*/ synchronized int drainFifo(long nowNanos) throws IOException {
+        if (mAccelGyroDevice == null || mMagDevice == null) {
+            throw new IllegalStateException("I2C device not open");
+        }
+        int fifoSrc = mAccelGyroDevice.readRegByte(AG_REG_FIFO_SRC) & 0xff;
+        if ((fifoSrc & AG_FIFO_SRC_OVRN) != 0) {
+            mOverrunCount++;
+        }
+        int count = Math.min(fifoSrc & AG_FIFO_SRC_FSS_MASK, FIFO_SIZE);
+        if (count == 0) {
+            return 0;
+        }
+
+        final SampleBatch batch = mBatch;
+        // With the FIFO enabled, auto-increment wraps from OUT_Z_H_XL back to OUT_X_L_G, so the
+        // whole backlog is read gyroscope first, accelerometer second, in one transaction.
+        mAccelGyroDevice.readRegBuffer(AG_REG_OUT_X_G, mFifoBuffer, count * FIFO_SLOT_SIZE);
+        final byte[] buffer = mFifoBuffer;
+        for (int i = 0, offset = 0; i < count; i++, offset += FIFO_SLOT_SIZE) {
+            int axis = i * 3;
+            batch.angularRate[axis] = readShort(buffer, offset) * mGyroScale;
+            batch.angularRate[axis + 1] = readShort(buffer, offset + 2) * mGyroScale;
+            batch.angularRate[axis + 2] = readShort(buffer, offset + 4) * mGyroScale;
+            batch.acceleration[axis] = readShort(buffer, offset + 6) * mAccelScale;
+            batch.acceleration[axis + 1] = readShort(buffer, offset + 8) * mAccelScale;
+            batch.acceleration[axis + 2] = readShort(buffer, offset + 10) * mAccelScale;
+        }
+        batch.size = count;
+
+        // The newest sample was taken no later than now; space the older ones by the sample
+        // period, keeping timestamps strictly increasing across batches.
+        long first = nowNanos - (count - 1) * mSamplePeriodNanos;
+        if (mLastTimestamp != 0 && first <= mLastTimestamp) {
+            first = mLastTimestamp + 1;
+        }
+        long period = count > 1 ? Math.min(mSamplePeriodNanos,
+                Math.max(1, (nowNanos - first) / (count - 1))) : 0;
+        for (int i = 0; i < count; i++) {
+            batch.timestamps[i] = first + i * period;
+        }
+        mLastTimestamp = batch.timestamps[count - 1];
+
+        mMagDevice.readRegBuffer(M_REG_STATUS | M_AUTO_INCREMENT, mMagBuffer, MAG_SAMPLE_SIZE);
+        if ((mMagBuffer[0] & M_STATUS_ZYXDA) != 0) {
+            batch.magneticField[0] = readShort(mMagBuffer, 1) * MAG_SENSITIVITY;
+            batch.magneticField[1] = readShort(mMagBuffer, 3) * MAG_SENSITIVITY;
+            batch.magneticField[2] = readShort(mMagBuffer, 5) * MAG_SENSITIVITY;
+            batch.magneticFieldTimestamp = nowNanos;
+        }
+
+        for (OnSampleBatchListener listener : mListeners) {
+            listener.onSampleBatch(this, batch);
+        }
+        return count;
+    }
+
+    /**
+     * Read a signed little-endian 16 bit value.
+     */
+    private static int readShort(byte[] buffer, int offset) {
+        return (short) ((buffer[offset + 1] << 8) | (buffer[offset] & 0xff));
+    }
+}
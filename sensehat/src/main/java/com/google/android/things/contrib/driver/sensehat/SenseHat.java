@@ -25,10 +25,41 @@ import java.io.IOException;
 public class SenseHat {
     public static final int I2C_ADDRESS =  0x46;
     public static final String BUS_DISPLAY = "I2C1";
+    public static final String BUS_JOYSTICK = "I2C1";
+    public static final String GPIO_JOYSTICK_INTERRUPT = "BCM23";
+    public static final String BUS_SENSORS = "I2C1";
     public static final int DISPLAY_WIDTH = LedMatrix.WIDTH;
     public static final int DISPLAY_HEIGHT = LedMatrix.HEIGHT;
 
     public static LedMatrix openDisplay() throws IOException {
         return new LedMatrix(BUS_DISPLAY);
     }
+
+    public static Joystick openJoystick() throws IOException {
+        return new Joystick(BUS_JOYSTICK, GPIO_JOYSTICK_INTERRUPT);
+    }
+
+    public static JoystickInputDriver createJoystickInputDriver() throws IOException {
+        return new JoystickInputDriver(BUS_JOYSTICK, GPIO_JOYSTICK_INTERRUPT);
+    }
+
+    public static Hts221 openHumiditySensor() throws IOException {
+        return new Hts221(BUS_SENSORS);
+    }
+
+    public static Hts221SensorDriver createHumiditySensorDriver() throws IOException {
+        return new Hts221SensorDriver(BUS_SENSORS);
+    }
+
+    public static Lsm9ds1 openImu(String interruptPin) throws IOException {
+        return new Lsm9ds1(BUS_SENSORS, interruptPin);
+    }
+
+    public static Lps25h openPressureSensor() throws IOException {
+        return new Lps25h(BUS_SENSORS);
+    }
+
+    public static Lps25hSensorDriver createPressureSensorDriver() throws IOException {
+        return new Lps25hSensorDriver(BUS_SENSORS);
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+
+public class Hts221Test {
+
+    private static final int REG_WHO_AM_I = 0x0F;
+    private static final int REG_CALIB_BURST = 0x30 | Hts221.HTS221_AUTO_INCREMENT;
+    private static final int REG_STATUS_BURST = 0x27 | Hts221.HTS221_AUTO_INCREMENT;
+
+    // 20%RH..70%RH over 0..1000 counts, 10C..30C over 0..2000 counts
+    private static final int[] CALIBRATION = {
+            40, 140, 80, 240, 0, 0, 0, 0, 0, 0, 0xE8, 0x03, 0, 0, 0xD0, 0x07
+    };
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private static Answer<Void> fill(final int... data) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                for (int i = 0; i < data.length; i++) {
+                    buffer[i] = (byte) data[i];
+                }
+                return null;
+            }
+        };
+    }
+
+    @Before
+    public void setup() throws IOException {
+        Mockito.when(mI2c.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0xBC);
+        Mockito.doAnswer(fill(CALIBRATION)).when(mI2c)
+                .readRegBuffer(eq(REG_CALIB_BURST), any(byte[].class), eq(16));
+    }
+
+    @Test
+    public void connect_readsCalibrationInOneBurst() throws IOException {
+        new Hts221(mI2c);
+        Mockito.verify(mI2c).readRegBuffer(eq(REG_CALIB_BURST), any(byte[].class), eq(16));
+    }
+
+    @Test
+    public void connect_throwsOnUnexpectedId() throws IOException {
+        Mockito.when(mI2c.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0x00);
+        mExpectedException.expect(IOException.class);
+        new Hts221(mI2c);
+    }
+
+    @Test
+    public void readHumidityAndTemperature() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        hts221.setMode(Hts221.MODE_CONTINUOUS);
+        // status: both ready, humidity 500, temperature 1000
+        Mockito.doAnswer(fill(0x03, 0xF4, 0x01, 0xE8, 0x03)).when(mI2c)
+                .readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(5));
+
+        float[] values = hts221.readHumidityAndTemperature();
+        assertEquals(45f, values[0], 0.001f);
+        assertEquals(20f, values[1], 0.001f);
+        Mockito.verify(mI2c, times(1))
+                .readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(5));
+    }
+
+    @Test
+    public void read_keepsLastSampleWhenNoDataReady() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        hts221.setMode(Hts221.MODE_CONTINUOUS);
+        Mockito.doAnswer(fill(0x03, 0xF4, 0x01, 0xE8, 0x03))
+                .doAnswer(fill(0x00, 0, 0, 0, 0))
+                .when(mI2c).readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(5));
+
+        assertEquals(20f, hts221.readTemperature(), 0.001f);
+        assertEquals(20f, hts221.readTemperature(), 0.001f);
+    }
+
+    @Test
+    public void readHumidity_clamped() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        assertEquals(Hts221.MAX_HUM_RH, hts221.compensateHumidity(5000), 0f);
+        assertEquals(Hts221.MIN_HUM_RH, hts221.compensateHumidity(-5000), 0f);
+    }
+
+    @Test
+    public void read_throwsIfPoweredDown() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        mExpectedException.expect(IllegalStateException.class);
+        hts221.readHumidity();
+    }
+
+    @Test
+    public void read_throwsIfClosed() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        hts221.close();
+        mExpectedException.expect(IllegalStateException.class);
+        hts221.readHumidity();
+    }
+
+    @Test
+    public void setMode_skipsRedundantWrites() throws IOException {
+        Hts221 hts221 = new Hts221(mI2c);
+        Mockito.reset(mI2c);
+        hts221.setMode(Hts221.MODE_CONTINUOUS);
+        hts221.setMode(Hts221.MODE_CONTINUOUS);
+        Mockito.verify(mI2c, times(1)).writeRegByte(Hts221.HTS221_REG_CTRL1, (byte) 0x85);
+
+        hts221.setOutputDataRate(Hts221.ODR_12_5_HZ);
+        Mockito.verify(mI2c, times(1)).writeRegByte(Hts221.HTS221_REG_CTRL1, (byte) 0x87);
+        Mockito.verify(mI2c, times(2)).writeRegByte(anyInt(), anyByte());
+    }
+}
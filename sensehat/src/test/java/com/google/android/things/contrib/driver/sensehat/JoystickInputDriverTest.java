@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.view.KeyEvent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+
+public class JoystickInputDriverTest {
+
+    @Mock
+    Joystick mJoystick;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    @Test
+    public void getKeyCode() {
+        assertEquals(KeyEvent.KEYCODE_DPAD_UP, JoystickInputDriver.getKeyCode(Joystick.KEY_UP));
+        assertEquals(KeyEvent.KEYCODE_DPAD_DOWN,
+                JoystickInputDriver.getKeyCode(Joystick.KEY_DOWN));
+        assertEquals(KeyEvent.KEYCODE_DPAD_LEFT,
+                JoystickInputDriver.getKeyCode(Joystick.KEY_LEFT));
+        assertEquals(KeyEvent.KEYCODE_DPAD_RIGHT,
+                JoystickInputDriver.getKeyCode(Joystick.KEY_RIGHT));
+        assertEquals(KeyEvent.KEYCODE_DPAD_CENTER,
+                JoystickInputDriver.getKeyCode(Joystick.KEY_ENTER));
+    }
+
+    @Test
+    public void close() throws IOException {
+        JoystickInputDriver driver = new JoystickInputDriver(mJoystick);
+        driver.close();
+        Mockito.verify(mJoystick).close();
+    }
+
+    @Test
+    public void close_safeToCallTwice() throws IOException {
+        JoystickInputDriver driver = new JoystickInputDriver(mJoystick);
+        driver.close();
+        driver.close(); // should not throw
+        Mockito.verify(mJoystick, times(1)).close();
+    }
+
+    @Test
+    public void register_throwsIfClosed() throws IOException {
+        JoystickInputDriver driver = new JoystickInputDriver(mJoystick);
+        driver.close();
+        mExpectedException.expect(IllegalStateException.class);
+        driver.register();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.os.Handler;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+
+public class JoystickTest {
+
+    private static final int REGISTER_KEYS = 0xF2;
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Mock
+    Gpio mGpio;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private static class RecordingListener implements Joystick.OnJoystickEventListener {
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onJoystickEvent(Joystick joystick, int key, boolean pressed) {
+            mEvents.add(key + (pressed ? " down" : " up"));
+        }
+    }
+
+    private GpioCallback captureInterruptCallback() throws IOException {
+        ArgumentCaptor<GpioCallback> callback = ArgumentCaptor.forClass(GpioCallback.class);
+        Mockito.verify(mGpio).registerGpioCallback(any(Handler.class), callback.capture());
+        return callback.getValue();
+    }
+
+    @Test
+    public void connect_configuresInterrupt() throws IOException {
+        new Joystick(mI2c, mGpio, null);
+        Mockito.verify(mGpio).setDirection(Gpio.DIRECTION_IN);
+        Mockito.verify(mGpio).setEdgeTriggerType(Gpio.EDGE_RISING);
+        // the initial state is read once, without emitting events
+        Mockito.verify(mI2c, times(1)).readRegByte(REGISTER_KEYS);
+    }
+
+    @Test
+    public void interrupt_emitsChangedKeys() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        RecordingListener listener = new RecordingListener();
+        joystick.setOnJoystickEventListener(listener);
+        GpioCallback callback = captureInterruptCallback();
+
+        Mockito.when(mI2c.readRegByte(REGISTER_KEYS)).thenReturn((byte) Joystick.KEY_UP);
+        callback.onGpioEdge(mGpio);
+        Mockito.when(mI2c.readRegByte(REGISTER_KEYS))
+                .thenReturn((byte) (Joystick.KEY_UP | Joystick.KEY_ENTER));
+        callback.onGpioEdge(mGpio);
+        Mockito.when(mI2c.readRegByte(REGISTER_KEYS)).thenReturn((byte) 0);
+        callback.onGpioEdge(mGpio);
+
+        assertEquals(Arrays.asList(
+                Joystick.KEY_UP + " down",
+                Joystick.KEY_ENTER + " down",
+                Joystick.KEY_UP + " up",
+                Joystick.KEY_ENTER + " up"), listener.mEvents);
+    }
+
+    @Test
+    public void interrupt_ignoresUnchangedState() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        RecordingListener listener = new RecordingListener();
+        joystick.setOnJoystickEventListener(listener);
+
+        // unused high bits of the register are masked out
+        Mockito.when(mI2c.readRegByte(REGISTER_KEYS)).thenReturn((byte) 0xE0);
+        captureInterruptCallback().onGpioEdge(mGpio);
+        assertTrue(listener.mEvents.isEmpty());
+    }
+
+    @Test
+    public void interrupt_emitsEventDuringEachEdge() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        RecordingListener listener = new RecordingListener();
+        joystick.setOnJoystickEventListener(listener);
+        GpioCallback callback = captureInterruptCallback();
+
+        // each edge reads the keys once and reports the change before returning
+        final int presses = 10;
+        for (int i = 0; i < presses; i++) {
+            boolean pressed = (i % 2 == 0);
+            Mockito.when(mI2c.readRegByte(REGISTER_KEYS))
+                    .thenReturn((byte) (pressed ? Joystick.KEY_LEFT : 0));
+            callback.onGpioEdge(mGpio);
+            assertEquals(i + 1, listener.mEvents.size());
+            assertEquals(Joystick.KEY_LEFT + (pressed ? " down" : " up"),
+                    listener.mEvents.get(i));
+        }
+        // plus the initial read when connecting
+        Mockito.verify(mI2c, times(presses + 1)).readRegByte(REGISTER_KEYS);
+    }
+
+    @Test
+    public void close() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        GpioCallback callback = captureInterruptCallback();
+        joystick.close();
+        Mockito.verify(mGpio).unregisterGpioCallback(callback);
+        Mockito.verify(mGpio).close();
+        Mockito.verify(mI2c).close();
+    }
+
+    @Test
+    public void close_safeToCallTwice() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        joystick.close();
+        joystick.close(); // should not throw
+        Mockito.verify(mGpio, times(1)).close();
+        Mockito.verify(mI2c, times(1)).close();
+    }
+
+    @Test
+    public void readKeys_throwsIfClosed() throws IOException {
+        Joystick joystick = new Joystick(mI2c, mGpio, null);
+        joystick.close();
+        mExpectedException.expect(IllegalStateException.class);
+        joystick.readKeys();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+
+public class LedMatrixAnimationPlayerTest {
+
+    private static final int PIXEL_COUNT = LedMatrix.WIDTH * LedMatrix.HEIGHT;
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private static LedMatrixAnimation solidColors(int... colors) {
+        List<int[]> frames = new ArrayList<>();
+        for (int color : colors) {
+            int[] pixels = new int[PIXEL_COUNT];
+            Arrays.fill(pixels, color);
+            frames.add(pixels);
+        }
+        return LedMatrixAnimation.fromPixels(frames);
+    }
+
+    @Test
+    public void fromPixels_throwsIfWrongSize() {
+        mExpectedException.expect(IllegalArgumentException.class);
+        LedMatrixAnimation.fromPixels(Arrays.asList(new int[PIXEL_COUNT - 1]));
+    }
+
+    @Test
+    public void play_writesEachFrameOnce() throws Exception {
+        LedMatrixAnimation animation = solidColors(0xFFFFFFFF, 0xFF000000, 0xFFFFFFFF);
+        assertEquals(3, animation.getFrameCount());
+
+        final CountDownLatch finished = new CountDownLatch(1);
+        LedMatrixAnimationPlayer player = new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        player.setPlaybackListener(new LedMatrixAnimationPlayer.PlaybackListener() {
+            @Override
+            public void onDeadlineMissed(int frame, long lateNanos) {
+            }
+
+            @Override
+            public void onPlaybackFinished() {
+                finished.countDown();
+            }
+        });
+        player.play(animation, 100, false);
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        player.close();
+
+        // every frame changes all LEDs, so each one is a full framebuffer write
+        Mockito.verify(mI2c, times(3)).write(any(byte[].class), eq(LedMatrix.FRAME_SIZE + 1));
+        Mockito.verify(mI2c, Mockito.never()).writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+    }
+
+    @Test
+    public void play_reportsMissedDeadlines() throws Exception {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(10); // slower than the 1 ms frame period
+                return null;
+            }
+        }).when(mI2c).write(any(byte[].class), anyInt());
+
+        final CountDownLatch missed = new CountDownLatch(1);
+        LedMatrixAnimationPlayer player = new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        player.setPlaybackListener(new LedMatrixAnimationPlayer.PlaybackListener() {
+            @Override
+            public void onDeadlineMissed(int frame, long lateNanos) {
+                if (lateNanos > 0) {
+                    missed.countDown();
+                }
+            }
+
+            @Override
+            public void onPlaybackFinished() {
+            }
+        });
+        player.play(solidColors(0xFFFFFFFF, 0xFF000000), 1000, true);
+        assertTrue(missed.await(1, TimeUnit.SECONDS));
+        assertTrue(player.isPlaying());
+        player.stop();
+        assertFalse(player.isPlaying());
+    }
+
+    @Test
+    public void stop_fromListenerDoesNotBlock() throws Exception {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(10); // slower than the 1 ms frame period
+                return null;
+            }
+        }).when(mI2c).write(any(byte[].class), anyInt());
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final LedMatrixAnimationPlayer player =
+                new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        player.setPlaybackListener(new LedMatrixAnimationPlayer.PlaybackListener() {
+            @Override
+            public void onDeadlineMissed(int frame, long lateNanos) {
+                player.stop();
+                stopped.countDown();
+            }
+
+            @Override
+            public void onPlaybackFinished() {
+            }
+        });
+        player.play(solidColors(0xFFFFFFFF, 0xFF000000), 1000, true);
+        assertTrue(stopped.await(1, TimeUnit.SECONDS));
+        assertFalse(player.isPlaying());
+    }
+
+    @Test
+    public void play_fromListenerRestartsPlayback() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(2);
+        final LedMatrixAnimation animation = solidColors(0xFFFFFFFF, 0xFF000000);
+        final LedMatrixAnimationPlayer player =
+                new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        player.setPlaybackListener(new LedMatrixAnimationPlayer.PlaybackListener() {
+            @Override
+            public void onDeadlineMissed(int frame, long lateNanos) {
+            }
+
+            @Override
+            public void onPlaybackFinished() {
+                finished.countDown();
+                if (finished.getCount() > 0) {
+                    player.play(animation, 100, false);
+                }
+            }
+        });
+        player.play(animation, 100, false);
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        player.close();
+
+        // both frames are written again by the second playback
+        Mockito.verify(mI2c, times(4)).write(any(byte[].class), eq(LedMatrix.FRAME_SIZE + 1));
+    }
+
+    @Test
+    public void stop_whileListenerRestartsPlayback() throws Exception {
+        final CountDownLatch finishing = new CountDownLatch(1);
+        final CountDownLatch stopping = new CountDownLatch(1);
+        final LedMatrixAnimation animation = solidColors(0xFFFFFFFF);
+        final LedMatrixAnimationPlayer player =
+                new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        player.setPlaybackListener(new LedMatrixAnimationPlayer.PlaybackListener() {
+            @Override
+            public void onDeadlineMissed(int frame, long lateNanos) {
+            }
+
+            @Override
+            public void onPlaybackFinished() {
+                if (finishing.getCount() == 0) {
+                    return;
+                }
+                finishing.countDown();
+                try {
+                    // let stop() start waiting for this thread
+                    stopping.await(1, TimeUnit.SECONDS);
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                player.play(animation, 100, false);
+            }
+        });
+        player.play(animation, 100, false);
+        assertTrue(finishing.await(1, TimeUnit.SECONDS));
+
+        Thread stopThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stopping.countDown();
+                player.stop();
+            }
+        });
+        stopThread.start();
+        stopThread.join(TimeUnit.SECONDS.toMillis(1));
+        assertFalse(stopThread.isAlive());
+        player.close();
+    }
+
+    @Test
+    public void play_throwsIfInvalidFrameRate() throws IOException {
+        LedMatrixAnimationPlayer player = new LedMatrixAnimationPlayer(new LedMatrix(mI2c));
+        mExpectedException.expect(IllegalArgumentException.class);
+        player.play(solidColors(0xFFFFFFFF), 0, false);
+    }
+}
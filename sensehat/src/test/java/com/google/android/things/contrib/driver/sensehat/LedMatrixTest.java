@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+
+public class LedMatrixTest {
+
+    private static final int FRAME_SIZE = LedMatrix.WIDTH * LedMatrix.HEIGHT * 3;
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Test
+    public void encode() {
+        int[] pixels = new int[LedMatrix.WIDTH * LedMatrix.HEIGHT];
+        pixels[0] = 0xFFFF0000; // opaque red
+        pixels[9] = 0xFF00FF00; // opaque green at (1, 1)
+        pixels[63] = 0x800000FF; // half transparent blue at (7, 7)
+        byte[] out = new byte[FRAME_SIZE];
+        LedMatrix.encode(pixels, out, 0);
+
+        byte[] expected = new byte[FRAME_SIZE];
+        expected[0] = 31;
+        expected[24 + 1 + 8] = 31;
+        expected[7 * 24 + 7 + 16] = (byte) ((int) (255 * (128 / 255.f)) >> 3);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void drawColor_firstFrameWritesEverything() throws IOException {
+        LedMatrix matrix = new LedMatrix(mI2c);
+        matrix.draw(0xFFFFFFFF);
+
+        byte[] expected = new byte[FRAME_SIZE + 1];
+        Arrays.fill(expected, 1, expected.length, (byte) 31);
+        Mockito.verify(mI2c).write(aryEq(expected), eq(expected.length));
+        Mockito.verify(mI2c, never()).writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+    }
+
+    @Test
+    public void drawColor_unchangedFrameWritesNothing() throws IOException {
+        LedMatrix matrix = new LedMatrix(mI2c);
+        matrix.draw(0xFF102030);
+        Mockito.reset(mI2c);
+
+        matrix.draw(0xFF102030);
+        Mockito.verifyZeroInteractions(mI2c);
+    }
+
+    @Test
+    public void drawColor_changedFrameWritesEverything() throws IOException {
+        LedMatrix matrix = new LedMatrix(mI2c);
+        matrix.draw(0xFF000000);
+        Mockito.reset(mI2c);
+
+        matrix.draw(0xFFFFFFFF);
+        Mockito.verify(mI2c).write(any(byte[].class), eq(FRAME_SIZE + 1));
+        Mockito.verify(mI2c, never()).writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+    }
+
+    @Test
+    public void drawPixels_writesChangedSpans() throws IOException {
+        LedMatrix matrix = new LedMatrix(mI2c);
+        matrix.draw(0xFF000000);
+        Mockito.reset(mI2c);
+        final List<byte[]> spans = new ArrayList<>();
+        final List<Integer> offsets = new ArrayList<>();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                // the span buffer is reused, so copy it as seen at call time
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                int length = (Integer) invocation.getArguments()[2];
+                offsets.add((Integer) invocation.getArguments()[0]);
+                spans.add(Arrays.copyOf(buffer, length));
+                return null;
+            }
+        }).when(mI2c).writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+
+        // Red pixels at (2, 0) and (5, 0) are close enough to share a write,
+        // the blue pixel at (0, 5) gets its own.
+        int[] pixels = new int[LedMatrix.WIDTH * LedMatrix.HEIGHT];
+        Arrays.fill(pixels, 0xFF000000);
+        pixels[2] = 0xFFFF0000;
+        pixels[5] = 0xFFFF0000;
+        pixels[5 * LedMatrix.WIDTH] = 0xFF0000FF;
+        matrix.drawPixels(pixels);
+
+        assertEquals(Arrays.asList(2, 5 * 24 + 16), offsets);
+        assertArrayEquals(new byte[]{31, 0, 0, 31}, spans.get(0));
+        assertArrayEquals(new byte[]{31}, spans.get(1));
+        Mockito.verify(mI2c, never()).write(any(byte[].class), anyInt());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+
+public class Lps25hTest {
+
+    private static final int REG_WHO_AM_I = 0x0F;
+    private static final int REG_STATUS_BURST = 0x27 | Lps25h.LPS25H_AUTO_INCREMENT;
+
+    @Mock
+    I2cDevice mI2c;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private static Answer<Void> fill(final int... data) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                for (int i = 0; i < data.length; i++) {
+                    buffer[i] = (byte) data[i];
+                }
+                return null;
+            }
+        };
+    }
+
+    @Before
+    public void setup() throws IOException {
+        Mockito.when(mI2c.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0xBD);
+    }
+
+    @Test
+    public void connect_throwsOnUnexpectedId() throws IOException {
+        Mockito.when(mI2c.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0x00);
+        mExpectedException.expect(IOException.class);
+        new Lps25h(mI2c);
+    }
+
+    @Test
+    public void readPressureAndTemperature() throws IOException {
+        Lps25h lps25h = new Lps25h(mI2c);
+        lps25h.setMode(Lps25h.MODE_CONTINUOUS);
+        // status: both ready, pressure 0x3F8000 (1016 hPa), temperature -4800 (32.5 C)
+        Mockito.doAnswer(fill(0x03, 0x00, 0x80, 0x3F, 0x40, 0xED))
+                .when(mI2c).readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(6));
+
+        float[] values = lps25h.readPressureAndTemperature();
+        assertEquals(1016f, values[0], 0.001f);
+        assertEquals(32.5f, values[1], 0.001f);
+        Mockito.verify(mI2c, times(1))
+                .readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(6));
+    }
+
+    @Test
+    public void read_keepsLastSampleWhenNoDataReady() throws IOException {
+        Lps25h lps25h = new Lps25h(mI2c);
+        lps25h.setMode(Lps25h.MODE_CONTINUOUS);
+        Mockito.doAnswer(fill(0x03, 0x00, 0x80, 0x3F, 0x40, 0xED))
+                .doAnswer(fill(0x00, 0, 0, 0, 0, 0))
+                .when(mI2c).readRegBuffer(eq(REG_STATUS_BURST), any(byte[].class), eq(6));
+
+        assertEquals(1016f, lps25h.readPressure(), 0.001f);
+        assertEquals(1016f, lps25h.readPressure(), 0.001f);
+    }
+
+    @Test
+    public void convertPressure_signed() {
+        assertEquals(-1f, Lps25h.convertPressure(-4096), 0f);
+    }
+
+    @Test
+    public void read_throwsIfPoweredDown() throws IOException {
+        Lps25h lps25h = new Lps25h(mI2c);
+        mExpectedException.expect(IllegalStateException.class);
+        lps25h.readPressure();
+    }
+
+    @Test
+    public void setOutputDataRate() throws IOException {
+        Lps25h lps25h = new Lps25h(mI2c);
+        lps25h.setMode(Lps25h.MODE_CONTINUOUS);
+        lps25h.setOutputDataRate(Lps25h.ODR_25_HZ);
+        Mockito.verify(mI2c).writeRegByte(Lps25h.LPS25H_REG_CTRL1, (byte) 0xC4);
+    }
+}
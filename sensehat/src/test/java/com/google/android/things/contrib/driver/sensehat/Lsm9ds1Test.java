@@ -0,0 +1,288 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.sensehat;
+
+import android.hardware.SensorManager;
+import android.os.Handler;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+import com.google.android.things.pio.I2cDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class Lsm9ds1Test {
+
+    private static final int REG_WHO_AM_I = 0x0F;
+    private static final long PERIOD_119_HZ = Math.round(1e9 / 119);
+
+    @Mock
+    I2cDevice mAccelGyro;
+
+    @Mock
+    I2cDevice mMag;
+
+    @Mock
+    Gpio mGpio;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    private static class RecordingListener implements Lsm9ds1.OnSampleBatchListener {
+        int mBatches;
+        int mSize;
+        long[] mTimestamps;
+        float[] mAcceleration;
+        float[] mAngularRate;
+
+        @Override
+        public void onSampleBatch(Lsm9ds1 imu, Lsm9ds1.SampleBatch batch) {
+            mBatches++;
+            mSize = batch.size;
+            mTimestamps = batch.timestamps.clone();
+            mAcceleration = batch.acceleration.clone();
+            mAngularRate = batch.angularRate.clone();
+        }
+    }
+
+    /**
+     * Answer filling the FIFO burst with {@code count} slots, where slot i holds i + 1 in every
+     * gyroscope axis and 1000 * (i + 1) in every accelerometer axis.
+     */
+    private static Answer<Void> fillFifo(final int count) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] buffer = (byte[]) invocation.getArguments()[1];
+                assertEquals(count * 12, invocation.getArguments()[2]);
+                for (int i = 0; i < count; i++) {
+                    for (int axis = 0; axis < 6; axis++) {
+                        int value = axis < 3 ? i + 1 : 1000 * (i + 1);
+                        buffer[i * 12 + axis * 2] = (byte) value;
+                        buffer[i * 12 + axis * 2 + 1] = (byte) (value >> 8);
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    @Before
+    public void setup() throws IOException {
+        Mockito.when(mAccelGyro.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0x68);
+        Mockito.when(mMag.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0x3D);
+    }
+
+    @Test
+    public void connect_configuresFifoAndInterrupt() throws IOException {
+        new Lsm9ds1(mAccelGyro, mMag, mGpio, null);
+        Mockito.verify(mAccelGyro).writeRegByte(Lsm9ds1.AG_REG_CTRL9, (byte) 0x02);
+        // continuous mode, watermark 16
+        Mockito.verify(mAccelGyro).writeRegByte(Lsm9ds1.AG_REG_FIFO_CTRL, (byte) 0xD0);
+        Mockito.verify(mAccelGyro).writeRegByte(Lsm9ds1.AG_REG_INT1_CTRL, (byte) 0x08);
+        Mockito.verify(mGpio).setEdgeTriggerType(Gpio.EDGE_RISING);
+        Mockito.verify(mGpio).registerGpioCallback(any(Handler.class), any(GpioCallback.class));
+    }
+
+    @Test
+    public void connect_throwsOnUnexpectedId() throws IOException {
+        Mockito.when(mMag.readRegByte(REG_WHO_AM_I)).thenReturn((byte) 0x00);
+        mExpectedException.expect(IOException.class);
+        new Lsm9ds1(mAccelGyro, mMag, null, null);
+    }
+
+    @Test
+    public void drainFifo_singleBurst() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        RecordingListener listener = new RecordingListener();
+        imu.addOnSampleBatchListener(listener);
+        Mockito.when(mAccelGyro.readRegByte(Lsm9ds1.AG_REG_FIFO_SRC)).thenReturn((byte) 3);
+        Mockito.doAnswer(fillFifo(3)).when(mAccelGyro)
+                .readRegBuffer(eq(Lsm9ds1.AG_REG_OUT_X_G), any(byte[].class), anyInt());
+
+        assertEquals(3, imu.drainFifo(1_000_000_000L));
+
+        Mockito.verify(mAccelGyro, times(1)).readRegBuffer(anyInt(), any(byte[].class), anyInt());
+        assertEquals(1, listener.mBatches);
+        assertEquals(3, listener.mSize);
+        float accelScale = 0.061f / 1000f * SensorManager.GRAVITY_EARTH;
+        float gyroScale = (float) Math.toRadians(8.75f / 1000f);
+        for (int i = 0; i < 3; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals((i + 1) * gyroScale, listener.mAngularRate[i * 3 + axis], 1e-6f);
+                assertEquals(1000 * (i + 1) * accelScale, listener.mAcceleration[i * 3 + axis],
+                        1e-4f);
+            }
+        }
+        assertEquals(1_000_000_000L - 2 * PERIOD_119_HZ, listener.mTimestamps[0]);
+        assertEquals(1_000_000_000L - PERIOD_119_HZ, listener.mTimestamps[1]);
+        assertEquals(1_000_000_000L, listener.mTimestamps[2]);
+    }
+
+    @Test
+    public void drainFifo_timestampsIncreaseAcrossBatches() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        RecordingListener listener = new RecordingListener();
+        imu.addOnSampleBatchListener(listener);
+        Mockito.when(mAccelGyro.readRegByte(Lsm9ds1.AG_REG_FIFO_SRC)).thenReturn((byte) 4);
+        Mockito.doAnswer(fillFifo(4)).when(mAccelGyro)
+                .readRegBuffer(eq(Lsm9ds1.AG_REG_OUT_X_G), any(byte[].class), anyInt());
+
+        imu.drainFifo(1_000_000_000L);
+        long last = listener.mTimestamps[3];
+        // Second batch arrives earlier than its nominal span allows
+        imu.drainFifo(1_000_000_000L + PERIOD_119_HZ);
+        assertTrue(listener.mTimestamps[0] > last);
+        for (int i = 1; i < 4; i++) {
+            assertTrue(listener.mTimestamps[i] > listener.mTimestamps[i - 1]);
+        }
+    }
+
+    @Test
+    public void drainFifo_emptyFifo() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        RecordingListener listener = new RecordingListener();
+        imu.addOnSampleBatchListener(listener);
+        Mockito.when(mAccelGyro.readRegByte(Lsm9ds1.AG_REG_FIFO_SRC)).thenReturn((byte) 0);
+
+        assertEquals(0, imu.drainFifo(1_000_000_000L));
+        Mockito.verify(mAccelGyro, never()).readRegBuffer(anyInt(), any(byte[].class), anyInt());
+        assertEquals(0, listener.mBatches);
+    }
+
+    @Test
+    public void drainFifo_countsOverrun() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        // OVRN set, 32 unread samples
+        Mockito.when(mAccelGyro.readRegByte(Lsm9ds1.AG_REG_FIFO_SRC)).thenReturn((byte) 0x60);
+        Mockito.doAnswer(fillFifo(32)).when(mAccelGyro)
+                .readRegBuffer(eq(Lsm9ds1.AG_REG_OUT_X_G), any(byte[].class), anyInt());
+
+        assertEquals(32, imu.drainFifo(1_000_000_000L));
+        assertEquals(1, imu.getOverrunCount());
+    }
+
+    @Test
+    public void interrupt_drainsFifo() throws IOException {
+        new Lsm9ds1(mAccelGyro, mMag, mGpio, null);
+        ArgumentCaptor<GpioCallback> callback = ArgumentCaptor.forClass(GpioCallback.class);
+        Mockito.verify(mGpio).registerGpioCallback(any(Handler.class), callback.capture());
+
+        callback.getValue().onGpioEdge(mGpio);
+        Mockito.verify(mAccelGyro).readRegByte(Lsm9ds1.AG_REG_FIFO_SRC);
+    }
+
+    @Test
+    public void interrupt_ignoredAfterClose() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, mGpio, null);
+        ArgumentCaptor<GpioCallback> callback = ArgumentCaptor.forClass(GpioCallback.class);
+        Mockito.verify(mGpio).registerGpioCallback(any(Handler.class), callback.capture());
+        imu.close();
+
+        assertFalse(callback.getValue().onGpioEdge(mGpio));
+        Mockito.verify(mAccelGyro, never()).readRegByte(Lsm9ds1.AG_REG_FIFO_SRC);
+    }
+
+    @Test
+    public void drainFifo_serializesConcurrentCalls() throws Exception {
+        final Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        final AtomicInteger draining = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        Mockito.when(mAccelGyro.readRegByte(Lsm9ds1.AG_REG_FIFO_SRC)).thenAnswer(
+                new Answer<Byte>() {
+                    @Override
+                    public Byte answer(InvocationOnMock invocation) {
+                        if (draining.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        return (byte) 3;
+                    }
+                });
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(1);
+                fillFifo(3).answer(invocation);
+                draining.decrementAndGet();
+                return null;
+            }
+        }).when(mAccelGyro).readRegBuffer(eq(Lsm9ds1.AG_REG_OUT_X_G), any(byte[].class), anyInt());
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            imu.drainFifo();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void setWatermark_invalidValue() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, null, null);
+        mExpectedException.expect(IllegalArgumentException.class);
+        imu.setWatermark(Lsm9ds1.FIFO_SIZE);
+    }
+
+    @Test
+    public void close() throws IOException {
+        Lsm9ds1 imu = new Lsm9ds1(mAccelGyro, mMag, mGpio, null);
+        imu.close();
+        Mockito.verify(mAccelGyro).close();
+        Mockito.verify(mMag).close();
+        Mockito.verify(mGpio).close();
+        mExpectedException.expect(IllegalStateException.class);
+        imu.drainFifo();
+    }
+}
@@ -72,12 +72,14 @@ public class Ssd1306 implements Closeable {
     private static final int INIT_CHARGE_PUMP = 0x8D;
     private static final int INIT_CLK_DIV = 0xD5;
     private static final int INIT_COMSCAN_DEC = 0xC8;
+    private static final int INIT_COMSCAN_INC = 0xC0;
     private static final int INIT_DISPLAY_NO_OFFSET = 0x0;
     private static final int INIT_DISPLAY_OFFSET = 0xD3;
     private static final int INIT_DUTY_CYCLE_1_64 = 0x3F;
     private static final int INIT_MEMORY_ADDRESSING_HORIZ = 0x0;
     private static final int INIT_RESISTER_RATIO = 0x80;
     private static final int INIT_SEGREMAP = 0xA1;
+    private static final int INIT_SEGREMAP_NONE = 0xA0;
     private static final int INIT_SET_MEMORY_ADDRESSING_MODE = 0x20;
 
     private static final byte SSD1306_DISPLAY_WRITE = (byte) 0xA4;
@@ -104,6 +106,19 @@ public class Ssd1306 implements Closeable {
     };
 
 
+    /**
+     * Orientation flag mirroring the display contents horizontally (column 0 on the right side).
+     */
+    public static final int FLIP_HORIZONTAL = 1;
+    /**
+     * Orientation flag mirroring the display contents vertically (row 0 on the bottom side).
+     */
+    public static final int FLIP_VERTICAL = 1 << 1;
+    /**
+     * Orientation for a display mounted upside down. Equivalent to flipping both axes.
+     */
+    public static final int ROTATE_180 = FLIP_HORIZONTAL | FLIP_VERTICAL;
+
     public enum ScrollMode {
         RightHorizontal,
         LeftHorizontal,
@@ -118,6 +133,9 @@ public class Ssd1306 implements Closeable {
     // Holds the i2c payload.
     private byte[] mBuffer;
 
+    // Current orientation flags.
+    private int mOrientation;
+
     /**
      * Create a new Ssd1306 driver connected to the named I2C bus
      * @param i2cName I2C bus name the display is connected to
@@ -272,6 +290,49 @@ public class Ssd1306 implements Closeable {
     }
 
 
+    /**
+     * Sets the orientation of the display by reprogramming the segment remap and COM scan
+     * direction of the controller. Mirroring and rotating this way is done by the hardware and
+     * costs nothing per frame.
+     * <p>
+     * The segment remap only applies to data written after this call, so call {@link #show()}
+     * afterwards to redraw the current pixel data with the new orientation.
+     *
+     * @param orientation A combination of {@link #FLIP_HORIZONTAL} and {@link #FLIP_VERTICAL},
+     *                    or 0 for the default orientation.
+     * @throws IOException
+     * @throws IllegalStateException
+     * @throws IllegalArgumentException
+     * @see #ROTATE_180
+     */
+    public void setOrientation(int orientation)
+            throws IOException, IllegalStateException, IllegalArgumentException {
+        if (mI2cDevice == null) {
+            throw new IllegalStateException("I2C Device not open");
+        }
+        if ((orientation & ~ROTATE_180) != 0) {
+            throw new IllegalArgumentException("Invalid orientation " + orientation);
+        }
+        int segmentRemap = (orientation & FLIP_HORIZONTAL) != 0
+                ? INIT_SEGREMAP_NONE : INIT_SEGREMAP;
+        int comScan = (orientation & FLIP_VERTICAL) != 0
+                ? INIT_COMSCAN_INC : INIT_COMSCAN_DEC;
+        byte[] payload = new byte[]{
+                0, (byte) segmentRemap,
+                0, (byte) comScan
+        };
+        mI2cDevice.write(payload, payload.length);
+        mOrientation = orientation;
+    }
+
+    /**
+     * @return the current orientation flags of the display.
+     * @see #setOrientation(int)
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
     /**
      * Turns the display on and off.
      *
@@ -17,6 +17,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.withSettings;
 import static org.powermock.api.mockito.PowerMockito.mock;
@@ -75,4 +78,35 @@ public class Ssd1306Test {
         mExpectedException.expectMessage("I2C Device not open");
         ssd1306.setContrast(44);
     }
+
+    @Test
+    public void setOrientation() throws IOException {
+        mockStatic(BitmapHelper.class);
+        mockStatic(Bitmap.class);
+        Ssd1306 ssd1306 = new Ssd1306(mI2c);
+
+        ssd1306.setOrientation(Ssd1306.ROTATE_180);
+        Mockito.verify(mI2c).write(aryEq(new byte[]{0, (byte) 0xA0, 0, (byte) 0xC0}), eq(4));
+        assertEquals(Ssd1306.ROTATE_180, ssd1306.getOrientation());
+
+        ssd1306.setOrientation(Ssd1306.FLIP_HORIZONTAL);
+        Mockito.verify(mI2c).write(aryEq(new byte[]{0, (byte) 0xA0, 0, (byte) 0xC8}), eq(4));
+
+        ssd1306.setOrientation(Ssd1306.FLIP_VERTICAL);
+        Mockito.verify(mI2c).write(aryEq(new byte[]{0, (byte) 0xA1, 0, (byte) 0xC0}), eq(4));
+
+        ssd1306.setOrientation(0);
+        Mockito.verify(mI2c).write(aryEq(new byte[]{0, (byte) 0xA1, 0, (byte) 0xC8}), eq(4));
+        assertEquals(0, ssd1306.getOrientation());
+    }
+
+    @Test
+    public void setOrientationInvalidValue() throws IOException {
+        mockStatic(BitmapHelper.class);
+        mockStatic(Bitmap.class);
+        Ssd1306 ssd1306 = new Ssd1306(mI2c);
+
+        mExpectedException.expect(IllegalArgumentException.class);
+        ssd1306.setOrientation(1 << 2);
+    }
 }
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.things.contrib.driver.tm1637;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.PeripheralManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+/**
+ * Two-wire serial bus bit-banged over a data GPIO and a clock GPIO, for chips such as the TM1637,
+ * TM1638, MY9221 or HX711 that do not speak a standard protocol.
+ * <p>
+ * A message is first planned as a list of pin operations, then driven in one pass by
+ * {@link #run()}. Planning tracks the state of both pins, so only actual level changes turn into
+ * GPIO calls, and the state carries over from one message to the next. Protocol specific framing,
+ * such as start and stop conditions, is built by the caller from {@link #planData(boolean)} and
+ * {@link #planClock(boolean)}:
+ * <pre>
+ * bus.setBitOrder(BitBangBus.LSB_FIRST);
+ * bus.planClock(true);
+ * bus.planData(false);
+ * bus.planWriteBits(command, 8);
+ * bus.planAck();
+ * bus.run();
+ * </pre>
+ */
+public class BitBangBus implements Closeable {
+
+    /**
+     * Order in which the bits of a value are shifted on the bus.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LSB_FIRST, MSB_FIRST})
+    public @interface BitOrder {}
+    public static final int LSB_FIRST = 0;
+    public static final int MSB_FIRST = 1;
+
+    /**
+     * Clock edge on which data is latched, relative to the clock idle level.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LATCH_TRAILING_EDGE, LATCH_LEADING_EDGE})
+    public @interface LatchEdge {}
+    /** Data is set up while the clock is away from its idle level, and latched on its return. */
+    public static final int LATCH_TRAILING_EDGE = 0;
+    /** Data is set up while the clock is idle, and latched when the clock leaves it. */
+    public static final int LATCH_LEADING_EDGE = 1;
+
+    /**
+     * Number of clock toggles timed by {@link #calibrate()}.
+     */
+    public static final int CALIBRATION_TOGGLES = 64;
+
+    // Planned operations
+    private static final byte OP_DATA_LOW = 0;
+    private static final byte OP_DATA_HIGH = 1;
+    private static final byte OP_CLOCK_LOW = 2;
+    private static final byte OP_CLOCK_HIGH = 3;
+    private static final byte OP_DATA_INPUT = 4;
+    private static final byte OP_DATA_OUTPUT = 5;
+    private static final byte OP_SAMPLE_ACK = 6;
+    private static final byte OP_SAMPLE_BIT_LSB = 7;
+    private static final byte OP_SAMPLE_BIT_MSB = 8;
+
+    // Data pin states
+    private static final int DATA_LOW = 0;
+    private static final int DATA_HIGH = 1;
+    private static final int DATA_INPUT = 2;
+
+    private Gpio mData;
+    private Gpio mClock;
+
+    private int mBitOrder = LSB_FIRST;
+    private boolean mClockIdleLevel = true;
+    private int mLatchEdge = LATCH_TRAILING_EDGE;
+    private long mSetupNanos;
+    private long mHoldNanos;
+    private long mGpioNanos;
+
+    // Pin states after the last driven operation
+    private int mDataState = DATA_LOW;
+    private boolean mClockLevel;
+    // Pin states at the end of the plan being built
+    private int mPlanDataState = DATA_LOW;
+    private boolean mPlanClockLevel;
+    private byte[] mPlan = new byte[256];
+    private int mPlanSize;
+    private long mReadValue;
+
+    private long mGpioOperationCount;
+
+    /**
+     * Create a new bus on the given GPIO pins. Both pins start as outputs driven low.
+     * @param dataPin GPIO pin of the data line
+     * @param clockPin GPIO pin of the clock line
+     * @throws IOException
+     */
+    public BitBangBus(String dataPin, String clockPin) throws IOException {
+        PeripheralManager pioService = PeripheralManager.getInstance();
+        try {
+            mData = pioService.openGpio(dataPin);
+            mData.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+            mClock = pioService.openGpio(clockPin);
+            mClock.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+        } catch (IOException|RuntimeException e) {
+            try {
+                close();
+            } catch (IOException|RuntimeException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    @VisibleForTesting
+    /*package*/ BitBangBus(Gpio data, Gpio clock) throws IOException {
+        mData = data;
+        mData.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+        mClock = clock;
+        mClock.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+    }
+
+    /**
+     * Close the bus and release both GPIO pins.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mData != null) {
+            try {
+                mData.close();
+            } finally {
+                mData = null;
+            }
+        }
+        if (mClock != null) {
+            try {
+                mClock.close();
+            } finally {
+                mClock = null;
+            }
+        }
+    }
+
+    /**
+     * Set the order in which {@link #planWriteBits} and {@link #planReadBits} shift bits.
+     * The default is {@link #LSB_FIRST}.
+     */
+    public void setBitOrder(@BitOrder int bitOrder) {
+        if (bitOrder != LSB_FIRST && bitOrder != MSB_FIRST) {
+            throw new IllegalArgumentException("Invalid bit order: " + bitOrder);
+        }
+        mBitOrder = bitOrder;
+    }
+
+    /**
+     * Set the clock polarity. The default is high.
+     * @param level idle level of the clock line
+     * @see #setLatchEdge(int)
+     */
+    public void setClockIdleLevel(boolean level) {
+        mClockIdleLevel = level;
+    }
+
+    /**
+     * Set the clock phase. The default is {@link #LATCH_TRAILING_EDGE}, which with the default
+     * idle level latches data on the rising edge. A chip with an idle low clock that latches on
+     * the rising edge, such as the HX711, uses {@link #LATCH_LEADING_EDGE}.
+     * @param edge clock edge on which data is latched
+     */
+    public void setLatchEdge(@LatchEdge int edge) {
+        if (edge != LATCH_TRAILING_EDGE && edge != LATCH_LEADING_EDGE) {
+            throw new IllegalArgumentException("Invalid latch edge: " + edge);
+        }
+        mLatchEdge = edge;
+    }
+
+    /**
+     * Set the minimum time data must be stable before and after the latching clock edge. Delays
+     * shorter than a GPIO call, as measured by {@link #calibrate()}, cost nothing, since the GPIO
+     * calls themselves already take that long.
+     * @param setupNanos setup time, in nanoseconds
+     * @param holdNanos hold time, in nanoseconds
+     */
+    public void setDelays(long setupNanos, long holdNanos) {
+        if (setupNanos < 0 || holdNanos < 0) {
+            throw new IllegalArgumentException("delays cannot be negative");
+        }
+        mSetupNanos = setupNanos;
+        mHoldNanos = holdNanos;
+    }
+
+    /**
+     * Measure how long a GPIO write takes on the running board, by toggling the clock line
+     * {@link #CALIBRATION_TOGGLES} times. Call it while no message is in progress: the clock ends
+     * at its current level, and the data line is left untouched.
+     * @return the average duration of a GPIO write, in nanoseconds
+     */
+    public long calibrate() throws IOException {
+        checkOpen();
+        boolean level = mClockLevel;
+        long start = System.nanoTime();
+        for (int i = 0; i < CALIBRATION_TOGGLES; i++) {
+            level = !level;
+            mClock.setValue(level);
+        }
+        long elapsed = System.nanoTime() - start;
+        mClockLevel = level;
+        mPlanClockLevel = level;
+        mGpioOperationCount += CALIBRATION_TOGGLES;
+        mGpioNanos = elapsed / CALIBRATION_TOGGLES;
+        return mGpioNanos;
+    }
+
+    /**
+     * Plan the data line to be driven at the given level.
+     */
+    public void planData(boolean level) {
+        if (mPlanDataState == DATA_INPUT) {
+            plan(OP_DATA_OUTPUT);
+            mPlanDataState = DATA_LOW;
+        }
+        int state = level ? DATA_HIGH : DATA_LOW;
+        if (state != mPlanDataState) {
+            plan(level ? OP_DATA_HIGH : OP_DATA_LOW);
+            mPlanDataState = state;
+        }
+    }
+
+    /**
+     * Return whether the data line is driven high at the end of the plan built so far.
+     */
+    public boolean isDataPlannedHigh() {
+        return mPlanDataState == DATA_HIGH;
+    }
+
+    /**
+     * Plan the data line to be released, so the chip can drive it.
+     */
+    private void planDataInput() {
+        if (mPlanDataState != DATA_INPUT) {
+            plan(OP_DATA_INPUT);
+            mPlanDataState = DATA_INPUT;
+        }
+    }
+
+    /**
+     * Plan the clock line to be driven at the given level.
+     */
+    public void planClock(boolean level) {
+        if (level != mPlanClockLevel) {
+            plan(level ? OP_CLOCK_HIGH : OP_CLOCK_LOW);
+            mPlanClockLevel = level;
+        }
+    }
+
+    /**
+     * Plan the given bits to be shifted out, in the configured bit order.
+     * @param value bits to send
+     * @param count number of bits to send, up to 64
+     */
+    public void planWriteBits(long value, int count) {
+        for (int i = 0; i < count; i++) {
+            int bit = mBitOrder == LSB_FIRST ? i : count - 1 - i;
+            planSetupClock();
+            planData((value & (1L << bit)) != 0);
+            planLatchClock();
+        }
+        planClock(mClockIdleLevel);
+    }
+
+    /**
+     * Plan an ACK cycle: release the data line and check that the chip pulls it low after the
+     * latching clock edge. {@link #run()} throws if it does not.
+     */
+    public void planAck() {
+        planSetupClock();
+        planDataInput();
+        planLatchClock();
+        plan(OP_SAMPLE_ACK);
+        planClock(mClockIdleLevel);
+    }
+
+    /**
+     * Plan the given number of bits to be shifted in, in the configured bit order, sampling the
+     * data line after each latching clock edge. The result is returned by
+     * {@link #getReadValue()}.
+     * @param count number of bits to read, up to 64 for the whole message
+     */
+    public void planReadBits(int count) {
+        planDataInput();
+        for (int i = 0; i < count; i++) {
+            planSetupClock();
+            planLatchClock();
+            plan(mBitOrder == LSB_FIRST ? OP_SAMPLE_BIT_LSB : OP_SAMPLE_BIT_MSB);
+        }
+        planClock(mClockIdleLevel);
+    }
+
+    /**
+     * Plan the clock level at which the next bit is set up.
+     */
+    private void planSetupClock() {
+        planClock(mLatchEdge == LATCH_TRAILING_EDGE ? !mClockIdleLevel : mClockIdleLevel);
+    }
+
+    /**
+     * Plan the clock edge latching the current bit.
+     */
+    private void planLatchClock() {
+        planClock(mLatchEdge == LATCH_TRAILING_EDGE ? mClockIdleLevel : !mClockIdleLevel);
+    }
+
+    /**
+     * Drive all the planned operations, then start a new plan.
+     * @throws IOException if a GPIO call fails, or if the chip did not acknowledge an ACK cycle
+     */
+    public void run() throws IOException {
+        checkOpen();
+        int size = mPlanSize;
+        // the next plan starts from the current pin states, whatever happens
+        mPlanSize = 0;
+        mReadValue = 0;
+        int readBits = 0;
+        // Only read the time when a delay is longer than the GPIO calls themselves
+        boolean waitSetup = mSetupNanos > mGpioNanos;
+        boolean waitHold = mHoldNanos > mGpioNanos;
+        boolean timed = waitSetup || waitHold;
+        long lastData = 0;
+        long lastClock = 0;
+        try {
+            for (int i = 0; i < size; i++) {
+                byte op = mPlan[i];
+                mGpioOperationCount++;
+                switch (op) {
+                    case OP_DATA_LOW:
+                    case OP_DATA_HIGH:
+                        if (waitHold) {
+                            waitUntil(lastClock + mHoldNanos);
+                        }
+                        mData.setValue(op == OP_DATA_HIGH);
+                        mDataState = op == OP_DATA_HIGH ? DATA_HIGH : DATA_LOW;
+                        if (timed) {
+                            lastData = System.nanoTime();
+                        }
+                        break;
+                    case OP_CLOCK_LOW:
+                    case OP_CLOCK_HIGH:
+                        if (waitSetup) {
+                            waitUntil(lastData + mSetupNanos);
+                        }
+                        mClockLevel = op == OP_CLOCK_HIGH;
+                        mClock.setValue(mClockLevel);
+                        if (timed) {
+                            lastClock = System.nanoTime();
+                        }
+                        break;
+                    case OP_DATA_INPUT:
+                        mData.setDirection(Gpio.DIRECTION_IN);
+                        mDataState = DATA_INPUT;
+                        break;
+                    case OP_DATA_OUTPUT:
+                        mData.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+                        mDataState = DATA_LOW;
+                        break;
+                    case OP_SAMPLE_ACK:
+                        if (mData.getValue()) {
+                            throw new IOException("Device did not acknowledge");
+                        }
+                        break;
+                    case OP_SAMPLE_BIT_LSB:
+                        if (mData.getValue()) {
+                            mReadValue |= 1L << readBits;
+                        }
+                        readBits++;
+                        break;
+                    case OP_SAMPLE_BIT_MSB:
+                        mReadValue = mReadValue << 1 | (mData.getValue() ? 1 : 0);
+                        break;
+                }
+            }
+        } finally {
+            mPlanDataState = mDataState;
+            mPlanClockLevel = mClockLevel;
+        }
+    }
+
+    /**
+     * Return the bits sampled by the last {@link #run()}.
+     */
+    public long getReadValue() {
+        return mReadValue;
+    }
+
+    /**
+     * Return the number of GPIO operations driven since the bus was opened.
+     */
+    @VisibleForTesting
+    /*package*/ long getGpioOperationCount() {
+        return mGpioOperationCount;
+    }
+
+    private void plan(byte op) {
+        if (mPlanSize == mPlan.length) {
+            mPlan = Arrays.copyOf(mPlan, mPlan.length * 2);
+        }
+        mPlan[mPlanSize++] = op;
+    }
+
+    private static void waitUntil(long deadline) {
+        while (System.nanoTime() - deadline < 0) {
+            // busy wait, delays are far below the scheduler resolution
+        }
+    }
+
+    private void checkOpen() {
+        if (mData == null || mClock == null) {
+            throw new IllegalStateException("GPIO not opened");
+        }
+    }
+}
@@ -45,5 +45,7 @@ class Font {
     static final byte DATA[] =
             {0x3f, 0x06, 0x5b, 0x4f, 0x66, 0x6d, 0x7d, 0x07, 0x7f, 0x6f};
     static final byte COLON = (byte) 0x80;
+    // Decimal point segment, on modules wired with a dot after each digit
+    static final byte DOT = (byte) 0x80;
     static final byte HYPHEN = (byte) 0x40;
 }
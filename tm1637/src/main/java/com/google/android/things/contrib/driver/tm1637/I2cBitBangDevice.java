@@ -41,96 +41,169 @@
 
 package com.google.android.things.contrib.driver.tm1637;
 
+import android.support.annotation.VisibleForTesting;
+
 import com.google.android.things.pio.Gpio;
-import com.google.android.things.pio.PeripheralManager;
 
 import java.io.Closeable;
 import java.io.IOException;
 
+/**
+ * TM1637 framing on top of a {@link BitBangBus}: start and stop conditions, bytes sent LSB first
+ * and latched on the rising clock edge, and an ACK checked after each byte. Each message is planned
+ * in full, then driven in one pass.
+ */
 class I2cBitBangDevice implements Closeable {
+
     private int mAddress;
-    private Gpio mData;
-    private Gpio mClock;
+    private BitBangBus mBus;
 
     public I2cBitBangDevice(int i2cAddress, String pinData, String pinClock) throws IOException {
+        this(i2cAddress, new BitBangBus(pinData, pinClock));
+    }
+
+    @VisibleForTesting
+    /*package*/ I2cBitBangDevice(int i2cAddress, Gpio data, Gpio clock) throws IOException {
+        this(i2cAddress, new BitBangBus(data, clock));
+    }
+
+    private I2cBitBangDevice(int i2cAddress, BitBangBus bus) {
         mAddress = i2cAddress;
-        PeripheralManager pioService = PeripheralManager.getInstance();
-        try {
-            mData = pioService.openGpio(pinData);
-            mData.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
-            mClock = pioService.openGpio(pinClock);
-            mClock.setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
-        } catch (IOException|RuntimeException e) {
-            try {
-                close();
-            } catch (IOException|RuntimeException ignored) {
-            }
-            throw e;
-        }
+        mBus = bus;
+        mBus.setBitOrder(BitBangBus.LSB_FIRST);
+        mBus.setClockIdleLevel(true);
     }
 
     @Override
     public void close() throws IOException {
-        if (mData != null) {
+        if (mBus != null) {
             try {
-                mData.close();
+                mBus.close();
             } finally {
-                mData = null;
-            }
-        }
-        if (mClock != null) {
-            try {
-                mClock.close();
-            } finally {
-                mClock = null;
+                mBus = null;
             }
         }
     }
 
+    /**
+     * Return the underlying bus, to tune its delays or calibrate it.
+     */
+    public BitBangBus getBus() {
+        return mBus;
+    }
+
     public void write(byte[] buffer, int size) throws IOException {
-        start();
-        writeByte(mAddress);
-        stop();
-        start();
+        planStart();
+        planByte(mAddress);
+        planStop();
+        planStart();
         for (int i = 0; i < size; i++) {
-            writeByte(buffer[i]);
+            planByte(buffer[i]);
         }
-        stop();
+        planStop();
+        run();
     }
 
     public void writeRegBuffer(int reg, byte[] buffer, int size) throws IOException {
-        start();
-        writeByte(mAddress);
-        stop();
-        start();
-        writeByte(reg);
+        writeRegBuffer(reg, buffer, 0, size);
+    }
+
+    public void writeRegBuffer(int reg, byte[] buffer, int offset, int size) throws IOException {
+        planStart();
+        planByte(mAddress);
+        planStop();
+        planStart();
+        planByte(reg);
         for (int i = 0; i < size; i++) {
-            writeByte(buffer[i]);
+            planByte(buffer[offset + i]);
+        }
+        planStop();
+        run();
+    }
+
+    /**
+     * Send the given command, then one frame per register holding its address and value.
+     */
+    public void writeRegBytes(int command, int[] regs, byte[] values, int count)
+            throws IOException {
+        planStart();
+        planByte(command);
+        planStop();
+        for (int i = 0; i < count; i++) {
+            planStart();
+            planByte(regs[i]);
+            planByte(values[i]);
+            planStop();
         }
-        stop();
+        run();
     }
 
-    void start() throws IOException {
-        mClock.setValue(true);
-        mData.setValue(true);
-        mData.setValue(false);
+    /**
+     * Send the given read command and return the byte the chip sends back.
+     */
+    public int readRegByte(int command) throws IOException {
+        planStart();
+        planByte(command);
+        mBus.planReadBits(8);
+        // the chip does not drive the ACK cycle of the byte it sends
+        mBus.planClock(false);
+        mBus.planClock(true);
+        planStop();
+        run();
+        return (int) mBus.getReadValue();
     }
 
-    void writeByte(int data) throws IOException {
-        for (int i = 0; i < 8; i++) {
-            mClock.setValue(false);
-            mData.setValue((data & (1 << i)) != 0);
-            mClock.setValue(true);
+    /**
+     * Return the number of GPIO operations driven since the device was opened.
+     */
+    @VisibleForTesting
+    /*package*/ long getGpioOperationCount() {
+        return mBus.getGpioOperationCount();
+    }
+
+    /**
+     * Data falls while the clock is high. The data line must be raised with the clock low first,
+     * so it does not look like a stop condition.
+     */
+    private void planStart() {
+        checkOpen();
+        if (!mBus.isDataPlannedHigh()) {
+            mBus.planClock(false);
+            mBus.planData(true);
         }
-        mClock.setValue(false);
-        mClock.setValue(true);
-        mData.setValue(false);
+        mBus.planClock(true);
+        mBus.planData(false);
+    }
+
+    private void planByte(int data) {
+        mBus.planWriteBits(data & 0xFF, 8);
+        mBus.planAck();
     }
 
-    void stop() throws IOException {
-        mClock.setValue(false);
-        mData.setValue(false);
-        mClock.setValue(true);
-        mData.setValue(true);
+    /**
+     * Data rises while the clock is high.
+     */
+    private void planStop() {
+        mBus.planClock(false);
+        mBus.planData(false);
+        mBus.planClock(true);
+        mBus.planData(true);
+    }
+
+    private void run() throws IOException {
+        try {
+            mBus.run();
+        } catch (IOException e) {
+            // release the bus before reporting the error
+            planStop();
+            mBus.run();
+            throw e;
+        }
+    }
+
+    private void checkOpen() {
+        if (mBus == null) {
+            throw new IllegalStateException("GPIO not opened");
+        }
     }
 }
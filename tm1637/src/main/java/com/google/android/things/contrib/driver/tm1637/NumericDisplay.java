@@ -27,7 +27,15 @@ import java.nio.ByteBuffer;
  */
 public class NumericDisplay extends Tm1637 {
 
-    private ByteBuffer mBuffer = ByteBuffer.allocate(4);
+    /**
+     * The maximum number of decimals accepted by the fixed-point display methods. The decimal
+     * point must fall on one of the displayed digits.
+     */
+    public static final int MAX_DECIMALS = MAX_DATA_LENGTH - 1;
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000};
+
+    private ByteBuffer mBuffer = ByteBuffer.allocate(MAX_DATA_LENGTH);
+    private final byte[] mBlank = new byte[MAX_DATA_LENGTH];
     private boolean mColonEnabled = false;
 
     /**
@@ -47,7 +55,7 @@ public class NumericDisplay extends Tm1637 {
      * Clear the display
      */
     public void clear() throws IOException {
-        writeData(new byte[4]);
+        writeData(mBlank);
     }
 
     /**
@@ -66,11 +74,76 @@ public class NumericDisplay extends Tm1637 {
     }
 
     /**
-     * Display an integer number
+     * Display an integer number. Numbers that do not fit are truncated to their first 4
+     * characters.
      * @param n number value
      */
     public void display(int n) throws IOException {
-        display(String.format("%4s", n));
+        display((long) n, 0);
+    }
+
+    /**
+     * Display a fixed-point number, using the decimal point segment of each digit. For example,
+     * {@code display(1234, 2)} shows "12.34". Numbers that do not fit are truncated to their first
+     * 4 characters.
+     * @param n number value, scaled by 10^decimals
+     * @param decimals number of digits after the decimal point
+     */
+    public void display(long n, int decimals) throws IOException {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS);
+        }
+        // negated, so Long.MIN_VALUE does not overflow
+        boolean negative = n < 0;
+        long value = negative ? n : -n;
+        int digitCount = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digitCount++;
+        }
+        digitCount = Math.max(digitCount, decimals + 1);
+        // truncate to the first 4 characters
+        int digit = 0;
+        for (int length = negative ? digitCount + 1 : digitCount; length > MAX_DATA_LENGTH;
+                length--) {
+            value /= 10;
+            digit++;
+        }
+        byte[] data = mBuffer.array();
+        for (int i = MAX_DATA_LENGTH - 1; i >= 0; i--) {
+            byte fontData = 0;
+            if (digit < digitCount) {
+                fontData = Font.DATA[(int) -(value % 10)];
+                if (decimals > 0 && digit == decimals) {
+                    fontData |= Font.DOT;
+                }
+                value /= 10;
+                digit++;
+            } else if (negative) {
+                fontData = Font.HYPHEN;
+                negative = false;
+            }
+            data[i] = fontData;
+        }
+        if (mColonEnabled) {
+            data[1] |= Font.COLON;
+        }
+        writeData(data);
+    }
+
+    /**
+     * Display a decimal number rounded to the given number of decimals, using the decimal point
+     * segment of each digit.
+     * @param n number value
+     * @param decimals number of digits after the decimal point
+     */
+    public void display(float n, int decimals) throws IOException {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS);
+        }
+        if (Float.isNaN(n) || Float.isInfinite(n)) {
+            throw new IllegalArgumentException("cannot display " + n);
+        }
+        display(Math.round((double) n * POWERS_OF_TEN[decimals]), decimals);
     }
 
     /**
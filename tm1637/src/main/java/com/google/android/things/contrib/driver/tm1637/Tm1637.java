@@ -28,6 +28,8 @@ import java.io.IOException;
 public class Tm1637 implements Closeable {
 
     private static final int TM1637_ADDR = 0x40;
+    private static final int TM1637_ADDR_FIXED = 0x44;
+    private static final int TM1637_READ_KEYS = 0x42;
     private static final int TM1637_REG = 0xc0;
     private static final int TM1637_CMD = 0x88;
 
@@ -41,7 +43,31 @@ public class Tm1637 implements Closeable {
      */
     public static final int MAX_DATA_LENGTH = 4;
 
+    /**
+     * Number of keys the chip can scan, on the K1 and K2 lines for each of SG1-8.
+     */
+    public static final int KEY_COUNT = 16;
+
+    /**
+     * Key value when no key is pressed.
+     */
+    public static final int KEY_NONE = -1;
+
+    // Key scan data for K1 SG1-8, then K2 SG1-8
+    private static final int[] KEY_CODES = {
+            0xEF, 0x6F, 0xAF, 0x2F, 0xCF, 0x4F, 0x8F, 0x0F,
+            0xF7, 0x77, 0xB7, 0x37, 0xD7, 0x57, 0x97, 0x17
+    };
+
     I2cBitBangDevice mDevice;
+    private int mKey = KEY_NONE;
+
+    // Last known content of the digit registers, with one valid bit per digit
+    private final byte[] mShadow = new byte[MAX_DATA_LENGTH];
+    private int mShadowValid;
+    private final int[] mFixedRegs = new int[MAX_DATA_LENGTH];
+    private final byte[] mFixedValues = new byte[MAX_DATA_LENGTH];
+    private int mAvoidedWriteCount;
 
     /**
      * Create a new driver for a TM1637 peripheral connected on the given GPIO pins.
@@ -60,6 +86,7 @@ public class Tm1637 implements Closeable {
      */
     @Override
     public void close() throws IOException {
+        mShadowValid = 0;
         if (mDevice != null) {
             try {
                 mDevice.close();
@@ -94,7 +121,9 @@ public class Tm1637 implements Closeable {
     }
 
     /**
-     * Write up to {@link #MAX_DATA_LENGTH} bytes of LED data.
+     * Write up to {@link #MAX_DATA_LENGTH} bytes of LED data, starting from the first digit.
+     * Only the digits that differ from the last written content are sent, and nothing is sent if
+     * the content is unchanged.
      */
     public void writeData(byte[] data) throws IOException {
         if (mDevice == null) {
@@ -103,6 +132,107 @@ public class Tm1637 implements Closeable {
         if (data.length > MAX_DATA_LENGTH) {
             throw new IllegalArgumentException("data size should be less than " + MAX_DATA_LENGTH);
         }
-        mDevice.writeRegBuffer(TM1637_REG, data, data.length);
+        int first = -1;
+        int last = -1;
+        int changed = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (!isShadowed(i, data[i])) {
+                mFixedRegs[changed] = TM1637_REG + i;
+                mFixedValues[changed] = data[i];
+                changed++;
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (changed == 0) {
+            mAvoidedWriteCount++;
+            return;
+        }
+        // Fixed address mode costs an address byte per digit, auto increment mode costs the
+        // digits in between. Pick whichever sends fewer bytes.
+        int span = last - first + 1;
+        if (2 * changed < span + 1) {
+            mDevice.writeRegBytes(TM1637_ADDR_FIXED, mFixedRegs, mFixedValues, changed);
+        } else if (first == 0 && span == data.length) {
+            mDevice.writeRegBuffer(TM1637_REG, data, data.length);
+        } else {
+            mDevice.writeRegBuffer(TM1637_REG + first, data, first, span);
+        }
+        for (int i = first; i <= last; i++) {
+            mShadow[i] = data[i];
+            mShadowValid |= 1 << i;
+        }
+    }
+
+    /**
+     * Measure how long a GPIO write takes on the running board, so that bus delays shorter than
+     * that are skipped. The chip ignores the clock pulses sent while measuring.
+     * @return the average duration of a GPIO write, in nanoseconds
+     */
+    public long calibrate() throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("Device not opened");
+        }
+        return mDevice.getBus().calibrate();
+    }
+
+    /**
+     * Read the key currently pressed. The chip reports a single key at a time.
+     * @return the key index, {@code k * 8 + sg} where k is 0 for K1 and 1 for K2, and sg is 0 for
+     *         SG1 through 7 for SG8, or {@link #KEY_NONE}
+     */
+    public int readKey() throws IOException {
+        if (mDevice == null) {
+            throw new IllegalStateException("Device not opened");
+        }
+        int code = mDevice.readRegByte(TM1637_READ_KEYS);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            if (KEY_CODES[i] == code) {
+                return i;
+            }
+        }
+        return KEY_NONE;
+    }
+
+    /**
+     * Read the key currently pressed and compare it to the result of the previous poll.
+     * @return true if the pressed key changed since the previous poll
+     * @see #getKey()
+     */
+    public boolean pollKey() throws IOException {
+        int key = readKey();
+        if (key == mKey) {
+            return false;
+        }
+        mKey = key;
+        return true;
+    }
+
+    /**
+     * Return the key pressed at the last {@link #pollKey()}, or {@link #KEY_NONE}.
+     */
+    public int getKey() {
+        return mKey;
+    }
+
+    /**
+     * Return the number of writes that were skipped because the display already showed the
+     * requested content.
+     */
+    public int getAvoidedWriteCount() {
+        return mAvoidedWriteCount;
+    }
+
+    /**
+     * Forget the cached digit content, so the next write is sent in full.
+     */
+    public void invalidateShadow() {
+        mShadowValid = 0;
+    }
+
+    private boolean isShadowed(int digit, byte data) {
+        return (mShadowValid & (1 << digit)) != 0 && mShadow[digit] == data;
     }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.tm1637;
+
+import com.google.android.things.pio.Gpio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class BitBangBusTest {
+
+    @Mock
+    Gpio mData;
+
+    @Mock
+    Gpio mClock;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Rule
+    public ExpectedException mExpectedException = ExpectedException.none();
+
+    @Test
+    public void planWriteBits_msbFirstIdleLow() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.setBitOrder(BitBangBus.MSB_FIRST);
+        bus.setClockIdleLevel(false);
+        bus.planWriteBits(0b10, 2);
+        bus.run();
+
+        InOrder inOrder = Mockito.inOrder(mData, mClock);
+        // each bit is set up while the clock is high, and latched when it falls back to idle
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mData).setValue(true);
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mData).setValue(false);
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void planWriteBits_idleLowLeadingEdge() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.setBitOrder(BitBangBus.MSB_FIRST);
+        bus.setClockIdleLevel(false);
+        bus.setLatchEdge(BitBangBus.LATCH_LEADING_EDGE);
+        bus.planWriteBits(0b10, 2);
+        bus.run();
+
+        InOrder inOrder = Mockito.inOrder(mData, mClock);
+        // each bit is set up while the clock is low, and latched when it rises
+        inOrder.verify(mData).setValue(true);
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verify(mData).setValue(false);
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void planReadBits_idleLowLeadingEdge() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.setBitOrder(BitBangBus.MSB_FIRST);
+        bus.setClockIdleLevel(false);
+        bus.setLatchEdge(BitBangBus.LATCH_LEADING_EDGE);
+        Mockito.when(mData.getValue()).thenReturn(true, false);
+        bus.planReadBits(2);
+        bus.run();
+        assertEquals(0b10, bus.getReadValue());
+
+        InOrder inOrder = Mockito.inOrder(mData, mClock);
+        // each bit is sampled while the clock is high
+        inOrder.verify(mData).setDirection(Gpio.DIRECTION_IN);
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mData).getValue();
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verify(mClock).setValue(true);
+        inOrder.verify(mData).getValue();
+        inOrder.verify(mClock).setValue(false);
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void setLatchEdge_invalidValue() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        mExpectedException.expect(IllegalArgumentException.class);
+        bus.setLatchEdge(2);
+    }
+
+    @Test
+    public void planData_skipsRedundantTransitions() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.planData(false);
+        bus.planClock(false);
+        bus.planData(true);
+        bus.planData(true);
+        bus.run();
+        bus.planData(true);
+        bus.run();
+        Mockito.verify(mData, times(1)).setValue(anyBoolean());
+        Mockito.verify(mClock, never()).setValue(anyBoolean());
+        assertEquals(1, bus.getGpioOperationCount());
+    }
+
+    @Test
+    public void planReadBits_msbFirst() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.setBitOrder(BitBangBus.MSB_FIRST);
+        Mockito.when(mData.getValue()).thenReturn(true, false, true, true);
+        bus.planReadBits(4);
+        bus.run();
+        assertEquals(0b1011, bus.getReadValue());
+        Mockito.verify(mData).setDirection(Gpio.DIRECTION_IN);
+    }
+
+    @Test
+    public void planReadBits_lsbFirst() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        Mockito.when(mData.getValue()).thenReturn(true, false, true, true);
+        bus.planReadBits(4);
+        bus.run();
+        assertEquals(0b1101, bus.getReadValue());
+    }
+
+    @Test
+    public void planAck_throwsOnNack() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        Mockito.when(mData.getValue()).thenReturn(true);
+        bus.planAck();
+        mExpectedException.expect(IOException.class);
+        bus.run();
+    }
+
+    @Test
+    public void planData_drivesAgainAfterInput() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.planAck();
+        bus.planData(true);
+        bus.run();
+        InOrder inOrder = Mockito.inOrder(mData);
+        inOrder.verify(mData).setDirection(Gpio.DIRECTION_IN);
+        inOrder.verify(mData).getValue();
+        inOrder.verify(mData).setDirection(Gpio.DIRECTION_OUT_INITIALLY_LOW);
+        inOrder.verify(mData).setValue(true);
+    }
+
+    @Test
+    public void calibrate_restoresClockLevel() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        assertTrue(bus.calibrate() >= 0);
+        Mockito.verify(mClock, times(BitBangBus.CALIBRATION_TOGGLES / 2)).setValue(true);
+        Mockito.verify(mClock, times(BitBangBus.CALIBRATION_TOGGLES / 2)).setValue(false);
+        Mockito.verify(mData, never()).setValue(anyBoolean());
+
+        // the clock is known to be low again
+        bus.planClock(false);
+        bus.run();
+        Mockito.verify(mClock, times(BitBangBus.CALIBRATION_TOGGLES)).setValue(anyBoolean());
+    }
+
+    @Test
+    public void setDelays_waitsBeforeLatching() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        final long setup = 2_000_000;
+        bus.setDelays(setup, 0);
+        bus.planData(true);
+        bus.planClock(true);
+        long start = System.nanoTime();
+        bus.run();
+        assertTrue(System.nanoTime() - start >= setup);
+    }
+
+    @Test
+    public void setDelays_negative() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        mExpectedException.expect(IllegalArgumentException.class);
+        bus.setDelays(-1, 0);
+    }
+
+    @Test
+    public void run_throwsIfClosed() throws IOException {
+        BitBangBus bus = new BitBangBus(mData, mClock);
+        bus.close();
+        mExpectedException.expect(IllegalStateException.class);
+        bus.run();
+    }
+}
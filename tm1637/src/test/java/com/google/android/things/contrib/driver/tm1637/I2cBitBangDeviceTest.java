@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.tm1637;
+
+import com.google.android.things.pio.Gpio;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class I2cBitBangDeviceTest {
+
+    @Mock
+    Gpio mData;
+
+    @Mock
+    Gpio mClock;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    private Tm1637Bus mBus;
+
+    @Before
+    public void setup() throws IOException {
+        mBus = Tm1637Bus.attach(mData, mClock);
+    }
+
+    @Test
+    public void writeRegBuffer_frames() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        device.writeRegBuffer(0xC0, new byte[]{(byte) 0xCA, (byte) 0xFE, 0x01, (byte) 0x80}, 4);
+        assertEquals(Arrays.asList(Arrays.asList(0x40),
+                Arrays.asList(0xC0, 0xCA, 0xFE, 0x01, 0x80)), mBus.getFrames());
+    }
+
+    @Test
+    public void write_frames() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        device.write(new byte[]{(byte) 0x8F}, 1);
+        assertEquals(Arrays.asList(Arrays.asList(0x40), Arrays.asList(0x8F)), mBus.getFrames());
+    }
+
+    @Test
+    public void writeRegBuffer_offset() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        device.writeRegBuffer(0xC2, new byte[]{1, 2, 3, 4}, 2, 2);
+        assertEquals(Arrays.asList(Arrays.asList(0x40), Arrays.asList(0xC2, 3, 4)),
+                mBus.getFrames());
+    }
+
+    @Test
+    public void writeRegBytes_frames() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        device.writeRegBytes(0x44, new int[]{0xC0, 0xC3}, new byte[]{5, 6}, 2);
+        assertEquals(Arrays.asList(Arrays.asList(0x44), Arrays.asList(0xC0, 5),
+                Arrays.asList(0xC3, 6)), mBus.getFrames());
+    }
+
+    @Test
+    public void write_throwsOnNack() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        mBus.setNack(true);
+        try {
+            device.write(new byte[]{(byte) 0x8F}, 1);
+            fail("NACK not reported");
+        } catch (IOException expected) {
+        }
+        // the bus was released with a stop condition
+        assertEquals(Arrays.asList(Arrays.asList(0x40)), mBus.getFrames());
+
+        mBus.setNack(false);
+        mBus.clear();
+        device.write(new byte[]{(byte) 0x8F}, 1);
+        assertEquals(Arrays.asList(Arrays.asList(0x40), Arrays.asList(0x8F)), mBus.getFrames());
+    }
+
+    @Test
+    public void readRegByte() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        mBus.setKeyData(0xB7);
+        assertEquals(0xB7, device.readRegByte(0x42));
+        assertEquals(Arrays.asList(Arrays.asList(0x42, 0xB7)), mBus.getFrames());
+
+        // the data pin is driven again for the next write
+        mBus.clear();
+        device.writeRegBuffer(0xC0, new byte[]{0x3F}, 1);
+        assertEquals(Arrays.asList(Arrays.asList(0x40), Arrays.asList(0xC0, 0x3F)),
+                mBus.getFrames());
+    }
+
+    @Test
+    public void writeRegBuffer_gpioOperationsPerFrame() throws IOException {
+        I2cBitBangDevice device = new I2cBitBangDevice(0x40, mData, mClock);
+        byte[] digits = {0x3F, 0x06, 0x5B, 0x4F};
+        mBus.clear();
+        device.writeRegBuffer(0xC0, digits, digits.length);
+        int first = mBus.getOperationCount();
+        // Writing every pin for every bit costs 176 GPIO writes for this update, without checking
+        // ACKs. The 6 bytes need 108 clock edges and 18 operations to sample their ACK, so what
+        // is left are data changes and start/stop conditions.
+        assertTrue("too many GPIO operations: " + first, first <= 153);
+        assertEquals(first, device.getGpioOperationCount());
+
+        // Pin levels carry over to the next message, so it costs no more than the first one
+        mBus.clear();
+        device.writeRegBuffer(0xC0, digits, digits.length);
+        assertTrue(mBus.getOperationCount() <= first);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.tm1637;
+
+import android.os.Handler;
+
+import com.google.android.things.pio.Gpio;
+import com.google.android.things.pio.GpioCallback;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation checks for the numeric display paths, down to the GPIO writes. These run without
+ * PowerMock, whose class loader instruments the code under test, and on plain fake pins, as
+ * Mockito records every call to a mock.
+ */
+public class NumericDisplayAllocationTest {
+
+    @Test
+    public void displayNumbers_doNotAllocate() throws IOException {
+        NumericDisplay display = new NumericDisplay(
+                new I2cBitBangDevice(0x40, new FakeGpio(), new FakeGpio()));
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        // warm up, so class loading, compilation and the bus plan growth are not measured
+        for (int i = 0; i < 20000; i++) {
+            renderNumbers(display, i);
+        }
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20000; i++) {
+            renderNumbers(display, i);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        // allow for the measurement call itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void renderNumbers(NumericDisplay display, int i) throws IOException {
+        // each value is shown twice, so both the changed and the unchanged content are written
+        display.display(i);
+        display.display(i);
+        display.display(-i * 7L, 2);
+        display.display(-i * 7L, 2);
+        display.display(i / 7f, 1);
+        display.display(i / 7f, 1);
+    }
+
+    /**
+     * A pin that reads low, so every byte is acknowledged.
+     */
+    private static class FakeGpio implements Gpio {
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public void setDirection(int direction) {
+        }
+
+        @Override
+        public void setEdgeTriggerType(int type) {
+        }
+
+        @Override
+        public void setActiveType(int type) {
+        }
+
+        @Override
+        public void setValue(boolean value) {
+        }
+
+        @Override
+        public boolean getValue() {
+            return false;
+        }
+
+        @Override
+        public void registerGpioCallback(Handler handler, GpioCallback callback) {
+        }
+
+        @Override
+        public void unregisterGpioCallback(GpioCallback callback) {
+        }
+    }
+}
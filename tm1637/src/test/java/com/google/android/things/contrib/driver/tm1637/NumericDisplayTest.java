@@ -67,7 +67,8 @@ public class NumericDisplayTest {
         display.setColonEnabled(false);
         assertFalse(display.getColonEnabled());
         display.display("0000");
-        Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(expected), eq(4));
+        // only the digit holding the colon changed
+        Mockito.verify(mDevice).writeRegBuffer(eq(0xc1), aryEq(expected), eq(1), eq(1));
     }
 
     @Test
@@ -112,6 +113,45 @@ public class NumericDisplayTest {
                 aryEq(new byte[]{Font.DATA[8], Font.DATA[6], Font.DATA[7], Font.DATA[5]}), eq(4));
     }
 
+    @Test
+    public void displayFixedPoint() throws IOException {
+        NumericDisplay display = new NumericDisplay(mDevice);
+        display.display(1234L, 2);
+        Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(new byte[]{Font.DATA[1],
+                (byte) (Font.DATA[2] | Font.DOT), Font.DATA[3], Font.DATA[4]}), eq(4));
+    }
+
+    @Test
+    public void displayFixedPoint_leadingZero() throws IOException {
+        NumericDisplay display = new NumericDisplay(mDevice);
+        display.display(-5L, 1);
+        Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(new byte[]{0, Font.HYPHEN,
+                (byte) (Font.DATA[0] | Font.DOT), Font.DATA[5]}), eq(4));
+    }
+
+    @Test
+    public void displayFixedPoint_throwsIfInvalidDecimals() throws IOException {
+        NumericDisplay display = new NumericDisplay(mDevice);
+        mExpectedException.expect(IllegalArgumentException.class);
+        display.display(1L, NumericDisplay.MAX_DECIMALS + 1);
+    }
+
+    @Test
+    public void displayFloat() throws IOException {
+        NumericDisplay display = new NumericDisplay(mDevice);
+        display.display(3.14159f, 3);
+        Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(new byte[]{
+                (byte) (Font.DATA[3] | Font.DOT), Font.DATA[1], Font.DATA[4], Font.DATA[2]}),
+                eq(4));
+    }
+
+    @Test
+    public void displayFloat_throwsIfNaN() throws IOException {
+        NumericDisplay display = new NumericDisplay(mDevice);
+        mExpectedException.expect(IllegalArgumentException.class);
+        display.display(Float.NaN, 1);
+    }
+
     @Test
     public void displayInt_throwsIfClosed() throws IOException {
         TextUtilsMock.mockStatic();
@@ -159,8 +199,9 @@ public class NumericDisplayTest {
 
         Mockito.reset(mDevice);
 
+        // already blank, nothing to send
         display.display("");
-        Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(new byte[]{0,0,0,0}), eq(4));
+        Mockito.verifyZeroInteractions(mDevice);
     }
 
     @Test
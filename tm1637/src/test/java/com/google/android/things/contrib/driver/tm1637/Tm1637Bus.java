@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.things.contrib.driver.tm1637;
+
+import com.google.android.things.pio.Gpio;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+
+/**
+ * Simulates a TM1637 on a pair of mock GPIOs. It decodes the frames driven by the host,
+ * acknowledges every byte unless told otherwise, and answers key scan reads. Every GPIO write is
+ * expected to change the pin level.
+ */
+public class Tm1637Bus {
+
+    private static final int READ_KEYS = 0x42;
+
+    private boolean mHostDrivesData = true;
+    private boolean mHostData;
+    private boolean mClock;
+    private boolean mInFrame;
+    private boolean mInAck;
+    private boolean mReading;
+    private boolean mReadNext;
+    private int mBitCount;
+    private int mCurrentByte;
+    private List<Integer> mCurrentFrame;
+    private final List<List<Integer>> mFrames = new ArrayList<>();
+    private int mOperationCount;
+
+    private boolean mNack;
+    private int mKeyData = 0xFF;
+
+    public static Tm1637Bus attach(Gpio data, Gpio clock) throws IOException {
+        final Tm1637Bus bus = new Tm1637Bus();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                bus.onData((Boolean) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(data).setValue(anyBoolean());
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                bus.onDataDirection((Integer) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(data).setDirection(anyInt());
+        Mockito.doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                assertTrue("data pin read while driven", !bus.mHostDrivesData);
+                bus.mOperationCount++;
+                return bus.getBusData();
+            }
+        }).when(data).getValue();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                bus.onClock((Boolean) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(clock).setValue(anyBoolean());
+        return bus;
+    }
+
+    /**
+     * Stop acknowledging bytes, as a disconnected chip would.
+     */
+    public void setNack(boolean nack) {
+        mNack = nack;
+    }
+
+    /**
+     * Set the byte answered to key scan reads.
+     */
+    public void setKeyData(int keyData) {
+        mKeyData = keyData;
+    }
+
+    private boolean getBusData() {
+        if (mHostDrivesData) {
+            return mHostData;
+        }
+        if (mInAck && !mReading) {
+            return mNack;
+        }
+        if (mReading && mBitCount > 0) {
+            return (mKeyData & (1 << (mBitCount - 1))) != 0;
+        }
+        // pulled up
+        return true;
+    }
+
+    private void onData(boolean level) {
+        assertTrue("data pin written while input", mHostDrivesData);
+        assertNotEquals("redundant data transition", mHostData, level);
+        mOperationCount++;
+        boolean previous = getBusData();
+        mHostData = level;
+        onBusData(previous);
+    }
+
+    private void onDataDirection(int direction) {
+        mOperationCount++;
+        boolean previous = getBusData();
+        if (direction == Gpio.DIRECTION_IN) {
+            mHostDrivesData = false;
+        } else {
+            mHostDrivesData = true;
+            mHostData = direction == Gpio.DIRECTION_OUT_INITIALLY_HIGH;
+        }
+        onBusData(previous);
+    }
+
+    private void onBusData(boolean previous) {
+        boolean level = getBusData();
+        if (!mClock || level == previous) {
+            return;
+        }
+        if (!level) {
+            // start condition
+            mInFrame = true;
+            mReading = false;
+            mReadNext = false;
+            mBitCount = 0;
+            mCurrentByte = 0;
+            mCurrentFrame = new ArrayList<>();
+        } else if (mInFrame) {
+            // stop condition
+            mInFrame = false;
+            mFrames.add(mCurrentFrame);
+        }
+    }
+
+    private void onClock(boolean level) {
+        assertNotEquals("redundant clock transition", mClock, level);
+        mOperationCount++;
+        mClock = level;
+        if (!level) {
+            if (mInAck) {
+                // the byte after a key scan command is sent by the chip
+                mInAck = false;
+                mReading = mReadNext;
+                mReadNext = false;
+            }
+            return;
+        }
+        if (!mInFrame) {
+            return;
+        }
+        if (mBitCount < 8) {
+            mBitCount++;
+            if (!mReading) {
+                mCurrentByte |= (mHostData ? 1 : 0) << (mBitCount - 1);
+            }
+        } else {
+            // ACK cycle
+            int value = mReading ? mKeyData : mCurrentByte;
+            mCurrentFrame.add(value);
+            mReadNext = !mReading && value == READ_KEYS && mCurrentFrame.size() == 1;
+            mInAck = true;
+            mBitCount = 0;
+            mCurrentByte = 0;
+        }
+    }
+
+    public int getOperationCount() {
+        return mOperationCount;
+    }
+
+    public List<List<Integer>> getFrames() {
+        return mFrames;
+    }
+
+    public void clear() {
+        mOperationCount = 0;
+        mFrames.clear();
+    }
+}
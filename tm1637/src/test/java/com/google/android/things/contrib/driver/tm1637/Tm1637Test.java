@@ -18,14 +18,22 @@ package com.google.android.things.contrib.driver.tm1637;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import java.io.IOException;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 
@@ -109,6 +117,46 @@ public class Tm1637Test {
         Mockito.verify(mDevice).writeRegBuffer(eq(0xc0), aryEq(expected), eq(4));
     }
 
+    @Test
+    public void writeData_skipsUnchangedData() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        tm1637.writeData(new byte[] {1, 2, 3, 4});
+        tm1637.writeData(new byte[] {1, 2, 3, 4});
+        Mockito.verify(mDevice, times(1)).writeRegBuffer(anyInt(), any(byte[].class), anyInt());
+        assertEquals(1, tm1637.getAvoidedWriteCount());
+    }
+
+    @Test
+    public void writeData_sendsChangedSpan() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        tm1637.writeData(new byte[] {1, 2, 3, 4});
+        final byte[] expected = new byte[] {1, 5, 6, 4};
+        tm1637.writeData(expected);
+        Mockito.verify(mDevice).writeRegBuffer(eq(0xc1), aryEq(expected), eq(1), eq(2));
+    }
+
+    @Test
+    public void writeData_usesFixedAddressForScatteredDigits() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        tm1637.writeData(new byte[] {1, 2, 3, 4});
+        tm1637.writeData(new byte[] {5, 2, 3, 6});
+        ArgumentCaptor<int[]> regs = ArgumentCaptor.forClass(int[].class);
+        ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(mDevice).writeRegBytes(eq(0x44), regs.capture(), values.capture(), eq(2));
+        assertArrayEquals(new int[] {0xc0, 0xc3}, Arrays.copyOf(regs.getValue(), 2));
+        assertArrayEquals(new byte[] {5, 6}, Arrays.copyOf(values.getValue(), 2));
+    }
+
+    @Test
+    public void writeData_rewritesAfterInvalidate() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        final byte[] expected = new byte[] {1, 2, 3, 4};
+        tm1637.writeData(expected);
+        tm1637.invalidateShadow();
+        tm1637.writeData(expected);
+        Mockito.verify(mDevice, times(2)).writeRegBuffer(eq(0xc0), aryEq(expected), eq(4));
+    }
+
     @Test
     public void writeData_throwsIfArrayTooLarge() throws IOException {
         Tm1637 tm1637 = new Tm1637(mDevice);
@@ -124,6 +172,45 @@ public class Tm1637Test {
         tm1637.writeData(new byte[4]);
     }
 
+    @Test
+    public void calibrate() throws IOException {
+        BitBangBus bus = Mockito.mock(BitBangBus.class);
+        Mockito.when(mDevice.getBus()).thenReturn(bus);
+        Mockito.when(bus.calibrate()).thenReturn(1500L);
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        assertEquals(1500L, tm1637.calibrate());
+    }
+
+    @Test
+    public void readKey() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        Mockito.when(mDevice.readRegByte(0x42)).thenReturn(0xEF, 0x17, 0xFF);
+        // K1 SG1, K2 SG8, then no key
+        assertEquals(0, tm1637.readKey());
+        assertEquals(15, tm1637.readKey());
+        assertEquals(Tm1637.KEY_NONE, tm1637.readKey());
+    }
+
+    @Test
+    public void readKey_throwsIfClosed() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        tm1637.close();
+        mExpectedException.expect(IllegalStateException.class);
+        tm1637.readKey();
+    }
+
+    @Test
+    public void pollKey_reportsChangesOnly() throws IOException {
+        Tm1637 tm1637 = new Tm1637(mDevice);
+        Mockito.when(mDevice.readRegByte(0x42)).thenReturn(0xFF, 0x6F, 0x6F, 0xFF);
+        assertFalse(tm1637.pollKey());
+        assertTrue(tm1637.pollKey());
+        assertEquals(1, tm1637.getKey());
+        assertFalse(tm1637.pollKey());
+        assertTrue(tm1637.pollKey());
+        assertEquals(Tm1637.KEY_NONE, tm1637.getKey());
+    }
+
     @Test
     public void close() throws IOException {
         Tm1637 tm1637 = new Tm1637(mDevice);